@@ -0,0 +1,135 @@
+package com.itdl.util;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Record;
+import lombok.Data;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @Description 基准测试使用的合成数据 列类型按bigint、string、double、boolean循环，string列中夹带\N空值
+ * @Author itdl
+ * @Date 2026/10/17 03:32
+ */
+final class BenchmarkFixtures {
+    private static final OdpsType[] TYPES = {OdpsType.BIGINT, OdpsType.STRING, OdpsType.DOUBLE, OdpsType.BOOLEAN};
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * 指定列数的表结构 可附带分区列
+     */
+    static TableSchema schema(int width, int partitions) {
+        TableSchema schema = new TableSchema();
+        for (int i = 0; i < width; i++) {
+            schema.addColumn(new Column("c" + i, TYPES[i % TYPES.length], i % 3 == 0 ? "第" + i + "列" : null));
+        }
+        for (int i = 0; i < partitions; i++) {
+            schema.addPartitionColumn(new Column("pt" + i, OdpsType.STRING, "分区" + i));
+        }
+        return schema;
+    }
+
+    /**
+     * 按表结构生成行数据 固定随机种子保证每次运行数据一致
+     */
+    static Object[][] rows(TableSchema schema, int rows) {
+        final List<Column> columns = schema.getColumns();
+        final Random random = new Random(42);
+        Object[][] data = new Object[rows][columns.size()];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns.size(); c++) {
+                switch (columns.get(c).getTypeInfo().getOdpsType()) {
+                    case BIGINT:
+                        data[r][c] = random.nextLong();
+                        break;
+                    case DOUBLE:
+                        data[r][c] = random.nextDouble();
+                        break;
+                    case BOOLEAN:
+                        data[r][c] = random.nextBoolean();
+                        break;
+                    default:
+                        data[r][c] = random.nextInt(10) == 0 ? "\\N" : "value_" + random.nextInt(100000);
+                }
+            }
+        }
+        return data;
+    }
+
+    /**
+     * 生成maxCompute记录
+     */
+    static List<Record> records(TableSchema schema, Object[][] rows) {
+        final Column[] columns = schema.getColumns().toArray(new Column[0]);
+        List<Record> records = new ArrayList<>(rows.length);
+        for (Object[] row : rows) {
+            final ArrayRecord record = new ArrayRecord(columns);
+            for (int c = 0; c < row.length; c++) {
+                record.set(c, row[c]);
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * 基于内存数据的ResultSet 只实现结果转换用到的方法
+     * 每次调用返回新的游标，动态代理的调用开销对不同实现是相同的
+     */
+    static ResultSet resultSet(TableSchema schema, Object[][] rows) {
+        final List<Column> columns = schema.getColumns();
+        final ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(
+                BenchmarkFixtures.class.getClassLoader(), new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getColumnCount":
+                            return columns.size();
+                        case "getColumnName":
+                        case "getColumnLabel":
+                            return columns.get((Integer) args[0] - 1).getName();
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        final int[] cursor = {-1};
+        return (ResultSet) Proxy.newProxyInstance(
+                BenchmarkFixtures.class.getClassLoader(), new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            return ++cursor[0] < rows.length;
+                        case "getObject":
+                            return rows[cursor[0]][(Integer) args[0] - 1];
+                        case "getMetaData":
+                            return metaData;
+                        case "close":
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * 分页查询转换的目标实体 字段与schema(8, 0)的前8列对应
+     */
+    @Data
+    public static class Row {
+        private Long c0;
+        private String c1;
+        private Double c2;
+        private Boolean c3;
+        private Long c4;
+        private String c5;
+        private Double c6;
+        private Boolean c7;
+    }
+}
@@ -0,0 +1,37 @@
+package com.itdl.util;
+
+import com.aliyun.odps.TableSchema;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Description 根据表结构拼接建表语句的吞吐量
+ * @Author itdl
+ * @Date 2026/10/17 03:32
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CreateDdlBenchmark {
+    @Param({"8", "64", "512"})
+    private int width;
+
+    @Param({"0", "2"})
+    private int partitions;
+
+    private TableSchema schema;
+
+    @Setup
+    public void setUp() {
+        schema = BenchmarkFixtures.schema(width, partitions);
+    }
+
+    @Benchmark
+    public String buildCreateDdl() {
+        return MaxComputeSdkUtil.buildCreateDdl("ods_benchmark", schema);
+    }
+}
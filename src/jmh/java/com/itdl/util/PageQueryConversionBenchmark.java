@@ -0,0 +1,59 @@
+package com.itdl.util;
+
+import com.alibaba.fastjson.JSONObject;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.data.Record;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Description 分页查询结果转换为实体的吞吐量 fastjson序列化再反序列化的旧做法作为基线
+ * @Author itdl
+ * @Date 2026/10/17 03:32
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PageQueryConversionBenchmark {
+    @Param({"10", "1000"})
+    private int rows;
+
+    private TableSchema schema;
+    private Object[][] data;
+    private List<Record> records;
+
+    @Setup
+    public void setUp() {
+        schema = BenchmarkFixtures.schema(8, 0);
+        data = BenchmarkFixtures.rows(schema, rows);
+        records = BenchmarkFixtures.records(schema, data);
+    }
+
+    @Benchmark
+    public List<BenchmarkFixtures.Row> fastjsonRoundTrip() {
+        final List<Map<String, Object>> maps = MaxComputeSdkUtil.buildMapByRecords(records);
+        List<BenchmarkFixtures.Row> result = new ArrayList<>(maps.size());
+        for (Map<String, Object> map : maps) {
+            result.add(JSONObject.parseObject(JSONObject.toJSONString(map), BenchmarkFixtures.Row.class));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<BenchmarkFixtures.Row> buildBeansByRecords() {
+        return MaxComputeSdkUtil.buildBeansByRecords(records, BenchmarkFixtures.Row.class);
+    }
+
+    @Benchmark
+    public List<BenchmarkFixtures.Row> buildBeansByRs() throws SQLException {
+        return MaxComputeJdbcUtil.buildBeansByRs(BenchmarkFixtures.resultSet(schema, data), BenchmarkFixtures.Row.class);
+    }
+}
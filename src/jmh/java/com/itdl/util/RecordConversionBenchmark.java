@@ -0,0 +1,40 @@
+package com.itdl.util;
+
+import com.aliyun.odps.data.Record;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Description SDK查询结果List<Record>转换为List<Map>的吞吐量
+ * @Author itdl
+ * @Date 2026/10/17 03:32
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordConversionBenchmark {
+    @Param({"8", "32", "128"})
+    private int width;
+
+    @Param({"100", "10000"})
+    private int rows;
+
+    private List<Record> records;
+
+    @Setup
+    public void setUp() {
+        final Object[][] data = BenchmarkFixtures.rows(BenchmarkFixtures.schema(width, 0), rows);
+        records = BenchmarkFixtures.records(BenchmarkFixtures.schema(width, 0), data);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> buildMapByRecords() {
+        return MaxComputeSdkUtil.buildMapByRecords(records);
+    }
+}
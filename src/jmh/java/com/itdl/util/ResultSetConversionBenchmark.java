@@ -0,0 +1,45 @@
+package com.itdl.util;
+
+import com.aliyun.odps.TableSchema;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Description JDBC查询结果ResultSet转换为List<Map>的吞吐量
+ * @Author itdl
+ * @Date 2026/10/17 03:32
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultSetConversionBenchmark {
+    @Param({"8", "32", "128"})
+    private int width;
+
+    @Param({"100", "10000"})
+    private int rows;
+
+    private TableSchema schema;
+    private Object[][] data;
+
+    @Setup
+    public void setUp() {
+        schema = BenchmarkFixtures.schema(width, 0);
+        data = BenchmarkFixtures.rows(schema, rows);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> buildMapByRs() throws SQLException {
+        List<Map<String, Object>> resultList = new ArrayList<>(rows);
+        MaxComputeJdbcUtil.buildMapByRs(resultList, BenchmarkFixtures.resultSet(schema, data));
+        return resultList;
+    }
+}
@@ -20,6 +20,12 @@ public enum ResultCode implements BaseEnums<String, String> {
     MAX_COMPUTE_JDBC_DRIVE_LOAD_ERR("TEST-000006", "MaxCompute JDBC驱动加载失败"),
     DATA_WORKS_ENDPOINT_ERR("TEST-000007", "DataWorks API地址错误"),
     DATA_WORKS_ENGINE_SUPPORT_ERR("TEST-000008", "DataWorks 引擎目前只支持ODPS"),
+    MAX_COMPUTE_TUNNEL_READ_ERR("TEST-000009", "MaxCompute Tunnel读取结果出错"),
+    ROW_MAPPING_ERR("TEST-000010", "查询结果转换为对象出错"),
+    MAX_COMPUTE_TUNNEL_WRITE_ERR("TEST-000011", "MaxCompute Tunnel上传数据出错"),
+    EXPORT_FILE_ERR("TEST-000012", "查询结果导出文件出错"),
+    QUERY_ENGINE_NOT_CONFIGURED_ERR("TEST-000013", "查询方式不支持或未配置连接参数"),
+    QUERY_SQL_NOT_ALLOWED_ERR("TEST-000014", "查询sql为空或不是只读查询"),
     SYSTEM_INNER_ERR("TEST-100000", "系统内部错误"),
     ;
 
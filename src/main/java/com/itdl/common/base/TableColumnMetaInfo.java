@@ -19,4 +19,14 @@ public class TableColumnMetaInfo {
     private String fieldName;
     /**表注释*/
     private String comment;
+    /**字段类型 如bigint、string、decimal(10,2)*/
+    private String dataType;
+    /**字段在表中的位置 从1开始*/
+    private Integer ordinalPosition;
+
+    public TableColumnMetaInfo(String tableName, String fieldName, String comment) {
+        this.tableName = tableName;
+        this.fieldName = fieldName;
+        this.comment = comment;
+    }
 }
@@ -0,0 +1,282 @@
+package com.itdl.common.base.columnar;
+
+import java.util.Arrays;
+
+/**
+ * @Description 列式结果中的一列，基本类型使用原生数组存储，空值使用位图记录
+ * @Author itdl
+ * @Date 2026/10/17 03:16
+ */
+public abstract class ColumnVector {
+    /**列名*/
+    private final String name;
+    /**空值位图 每个long记录64行*/
+    private long[] nulls;
+    /**当前行数*/
+    protected int size;
+
+    protected ColumnVector(String name, int capacity) {
+        this.name = name;
+        this.nulls = new long[(capacity >> 6) + 1];
+    }
+
+    /**
+     * 按列的类型创建列
+     * @param name 列名
+     * @param kind 列的存储类型
+     * @param capacity 初始容量
+     */
+    public static ColumnVector create(String name, Kind kind, int capacity) {
+        capacity = Math.max(capacity, 16);
+        switch (kind) {
+            case LONG:
+                return new LongVector(name, capacity);
+            case DOUBLE:
+                return new DoubleVector(name, capacity);
+            case BOOLEAN:
+                return new BooleanVector(name, capacity);
+            default:
+                return new ObjectVector(name, capacity);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 第row行是否为空
+     */
+    public boolean isNull(int row) {
+        return (nulls[row >> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * 追加一个空值
+     */
+    public void appendNull() {
+        ensureCapacity(size + 1);
+        nulls[size >> 6] |= 1L << size;
+        size++;
+    }
+
+    /**
+     * 追加一个值 null追加为空值，其他按列类型转换
+     */
+    public abstract void append(Object value);
+
+    /**
+     * 获取第row行的值 空值返回null，基本类型会装箱
+     */
+    public abstract Object get(int row);
+
+    /**
+     * 列的存储类型
+     */
+    public abstract Kind getKind();
+
+    /**
+     * 扩容数据数组到至少minCapacity
+     */
+    protected abstract void growValues(int minCapacity);
+
+    protected void ensureCapacity(int minCapacity) {
+        growValues(minCapacity);
+        if ((minCapacity >> 6) >= nulls.length) {
+            nulls = Arrays.copyOf(nulls, Math.max(nulls.length << 1, (minCapacity >> 6) + 1));
+        }
+    }
+
+    protected static int newLength(int oldLength, int minCapacity) {
+        return Math.max(oldLength + (oldLength >> 1), minCapacity);
+    }
+
+    public enum Kind {
+        /**整数类型 bigint int smallint tinyint*/
+        LONG,
+        /**浮点类型 double float*/
+        DOUBLE,
+        /**布尔类型*/
+        BOOLEAN,
+        /**其他类型 字符串 时间 decimal 复杂类型等*/
+        OBJECT
+    }
+
+    public static final class LongVector extends ColumnVector {
+        private long[] values;
+
+        LongVector(String name, int capacity) {
+            super(name, capacity);
+            this.values = new long[capacity];
+        }
+
+        public long getLong(int row) {
+            return values[row];
+        }
+
+        public void appendLong(long value) {
+            ensureCapacity(size + 1);
+            values[size++] = value;
+        }
+
+        @Override
+        public void append(Object value) {
+            if (value == null) {
+                appendNull();
+            } else if (value instanceof Number) {
+                appendLong(((Number) value).longValue());
+            } else {
+                appendLong(Long.parseLong(value.toString()));
+            }
+        }
+
+        @Override
+        public Object get(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        @Override
+        public Kind getKind() {
+            return Kind.LONG;
+        }
+
+        @Override
+        protected void growValues(int minCapacity) {
+            if (minCapacity > values.length) {
+                values = Arrays.copyOf(values, newLength(values.length, minCapacity));
+            }
+        }
+    }
+
+    public static final class DoubleVector extends ColumnVector {
+        private double[] values;
+
+        DoubleVector(String name, int capacity) {
+            super(name, capacity);
+            this.values = new double[capacity];
+        }
+
+        public double getDouble(int row) {
+            return values[row];
+        }
+
+        public void appendDouble(double value) {
+            ensureCapacity(size + 1);
+            values[size++] = value;
+        }
+
+        @Override
+        public void append(Object value) {
+            if (value == null) {
+                appendNull();
+            } else if (value instanceof Number) {
+                appendDouble(((Number) value).doubleValue());
+            } else {
+                appendDouble(Double.parseDouble(value.toString()));
+            }
+        }
+
+        @Override
+        public Object get(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        @Override
+        public Kind getKind() {
+            return Kind.DOUBLE;
+        }
+
+        @Override
+        protected void growValues(int minCapacity) {
+            if (minCapacity > values.length) {
+                values = Arrays.copyOf(values, newLength(values.length, minCapacity));
+            }
+        }
+    }
+
+    public static final class BooleanVector extends ColumnVector {
+        private boolean[] values;
+
+        BooleanVector(String name, int capacity) {
+            super(name, capacity);
+            this.values = new boolean[capacity];
+        }
+
+        public boolean getBoolean(int row) {
+            return values[row];
+        }
+
+        public void appendBoolean(boolean value) {
+            ensureCapacity(size + 1);
+            values[size++] = value;
+        }
+
+        @Override
+        public void append(Object value) {
+            if (value == null) {
+                appendNull();
+            } else if (value instanceof Boolean) {
+                appendBoolean((Boolean) value);
+            } else {
+                appendBoolean(Boolean.parseBoolean(value.toString()));
+            }
+        }
+
+        @Override
+        public Object get(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        @Override
+        public Kind getKind() {
+            return Kind.BOOLEAN;
+        }
+
+        @Override
+        protected void growValues(int minCapacity) {
+            if (minCapacity > values.length) {
+                values = Arrays.copyOf(values, newLength(values.length, minCapacity));
+            }
+        }
+    }
+
+    public static final class ObjectVector extends ColumnVector {
+        private Object[] values;
+
+        ObjectVector(String name, int capacity) {
+            super(name, capacity);
+            this.values = new Object[capacity];
+        }
+
+        @Override
+        public void append(Object value) {
+            if (value == null) {
+                appendNull();
+                return;
+            }
+            ensureCapacity(size + 1);
+            values[size++] = value;
+        }
+
+        @Override
+        public Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        public Kind getKind() {
+            return Kind.OBJECT;
+        }
+
+        @Override
+        protected void growValues(int minCapacity) {
+            if (minCapacity > values.length) {
+                values = Arrays.copyOf(values, newLength(values.length, minCapacity));
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.itdl.common.base.columnar;
+
+import java.util.*;
+
+/**
+ * @Description 列式查询结果，列名只保存一份，每列使用对应类型的ColumnVector存储
+ * 需要兼容原有List<Map>的地方可以使用asMaps()，行视图按需从列中读取，不会复制数据
+ * @Author itdl
+ * @Date 2026/10/17 03:16
+ */
+public class ColumnarResult {
+    /**列名 所有行共用*/
+    private final List<String> columnNames;
+    /**列名到列下标的索引*/
+    private final Map<String, Integer> columnIndex;
+    /**列数据*/
+    private final ColumnVector[] vectors;
+
+    public ColumnarResult(ColumnVector[] vectors) {
+        this.vectors = vectors;
+        List<String> names = new ArrayList<>(vectors.length);
+        Map<String, Integer> index = new HashMap<>(vectors.length * 2);
+        for (int i = 0; i < vectors.length; i++) {
+            names.add(vectors[i].getName());
+            index.put(vectors[i].getName(), i);
+        }
+        this.columnNames = Collections.unmodifiableList(names);
+        this.columnIndex = index;
+    }
+
+    /**
+     * 按列名和列类型创建一个空结果 用于逐行追加
+     * @param names 列名
+     * @param kinds 列的存储类型
+     * @param capacity 预估行数
+     */
+    public static ColumnarResult create(List<String> names, List<ColumnVector.Kind> kinds, int capacity) {
+        ColumnVector[] vectors = new ColumnVector[names.size()];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = ColumnVector.create(names.get(i), kinds.get(i), capacity);
+        }
+        return new ColumnarResult(vectors);
+    }
+
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    public int getColumnCount() {
+        return vectors.length;
+    }
+
+    /**
+     * 总行数
+     */
+    public int getRowCount() {
+        return vectors.length == 0 ? 0 : vectors[0].size();
+    }
+
+    /**
+     * 获取列下标 列不存在返回-1
+     */
+    public int indexOf(String columnName) {
+        final Integer index = columnIndex.get(columnName);
+        return index == null ? -1 : index;
+    }
+
+    public ColumnVector getVector(int columnIndex) {
+        return vectors[columnIndex];
+    }
+
+    public ColumnVector getVector(String columnName) {
+        final int index = indexOf(columnName);
+        return index < 0 ? null : vectors[index];
+    }
+
+    /**
+     * 获取某一行某一列的值 空值返回null
+     */
+    public Object get(int row, int column) {
+        return vectors[column].get(row);
+    }
+
+    /**
+     * 以List<Map>的形式查看结果 行和Map都是视图，按需从列中读取
+     */
+    public List<Map<String, Object>> asMaps() {
+        return new AbstractList<Map<String, Object>>() {
+            @Override
+            public Map<String, Object> get(int row) {
+                if (row < 0 || row >= getRowCount()) {
+                    throw new IndexOutOfBoundsException("row: " + row);
+                }
+                return new RowView(row);
+            }
+
+            @Override
+            public int size() {
+                return getRowCount();
+            }
+        };
+    }
+
+    /**
+     * 某一行的Map视图 按列顺序迭代
+     */
+    private class RowView extends AbstractMap<String, Object> {
+        private final int row;
+
+        RowView(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public Object get(Object key) {
+            final Integer index = columnIndex.get(key);
+            return index == null ? null : vectors[index].get(row);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return columnIndex.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return vectors.length;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<Entry<String, Object>>() {
+                        private int column;
+
+                        @Override
+                        public boolean hasNext() {
+                            return column < vectors.length;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            final ColumnVector vector = vectors[column++];
+                            return new SimpleImmutableEntry<>(vector.getName(), vector.get(row));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return vectors.length;
+                }
+            };
+        }
+    }
+}
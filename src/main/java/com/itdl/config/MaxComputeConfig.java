@@ -0,0 +1,45 @@
+package com.itdl.config;
+
+import com.itdl.conn.param.MaxComputeJdbcConnParam;
+import com.itdl.conn.param.MaxComputeSdkConnParam;
+import com.itdl.util.MaxComputeJdbcUtil;
+import com.itdl.util.MaxComputeSdkUtil;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @Description maxCompute工具类配置 配置了对应的项目名称才会创建，未配置时应用也能正常启动
+ * @Author itdl
+ * @Date 2026/10/17 03:27
+ */
+@Configuration
+public class MaxComputeConfig {
+
+    @Bean
+    @ConfigurationProperties(prefix = "max-compute.sdk")
+    @ConditionalOnProperty(prefix = "max-compute.sdk", name = "project-name")
+    public MaxComputeSdkConnParam maxComputeSdkConnParam() {
+        return new MaxComputeSdkConnParam();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "max-compute.sdk", name = "project-name")
+    public MaxComputeSdkUtil maxComputeSdkUtil(MaxComputeSdkConnParam maxComputeSdkConnParam) {
+        return new MaxComputeSdkUtil(maxComputeSdkConnParam);
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "max-compute.jdbc")
+    @ConditionalOnProperty(prefix = "max-compute.jdbc", name = "project-name")
+    public MaxComputeJdbcConnParam maxComputeJdbcConnParam() {
+        return new MaxComputeJdbcConnParam();
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "max-compute.jdbc", name = "project-name")
+    public MaxComputeJdbcUtil maxComputeJdbcUtil(MaxComputeJdbcConnParam maxComputeJdbcConnParam) {
+        return new MaxComputeJdbcUtil(maxComputeJdbcConnParam);
+    }
+}
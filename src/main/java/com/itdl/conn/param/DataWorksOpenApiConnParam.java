@@ -42,4 +42,44 @@ public class DataWorksOpenApiConnParam {
      * 项目环境 dev  prod
      */
     private String projectEnv;
+
+    /**
+     * 分页接口拉取第二页及之后的页时的并发数
+     */
+    private Integer pageConcurrency = 4;
+
+    /**
+     * 请求的初始速率 每秒请求数，同一账号同一区域的请求共享，0表示不限流
+     */
+    private Double rateLimitPermitsPerSecond = 10.0;
+
+    /**
+     * 被限流后速率最低降到多少 每秒请求数
+     */
+    private Double rateLimitMinPermitsPerSecond = 1.0;
+
+    /**
+     * 速率最高升到多少 每秒请求数
+     */
+    private Double rateLimitMaxPermitsPerSecond = 50.0;
+
+    /**
+     * 被限流或服务暂时不可用时的最大重试次数
+     */
+    private Integer throttleRetryTimes = 5;
+
+    /**
+     * 增量同步文件时并发获取文件内容的线程数
+     */
+    private Integer fileSyncConcurrency = 8;
+
+    /**
+     * 批量校验表是否存在时使用的表名索引的存活时间 单位秒，超过后重新拉取表列表
+     */
+    private Long tableIndexTtlSeconds = 300L;
+
+    /**
+     * 批量校验表是否存在时 回退到逐个调用接口的并发数
+     */
+    private Integer tableCheckConcurrency = 8;
 }
@@ -17,4 +17,26 @@ public class MaxComputeJdbcConnParam {
     private String endpoint;
     /**项目名称*/
     private String projectName;
-}
\ No newline at end of file
+    /**元数据缓存的存活时间 单位秒 默认5分钟*/
+    private Long metaCacheTtlSeconds = 300L;
+    /**最多缓存多少张表的字段*/
+    private Integer metaCacheMaxSize = 1000;
+    /**查询结果缓存最多占用的内存字节数 按结果内容估算，0表示不开启结果缓存，开启后查询返回的结果是只读的*/
+    private Long resultCacheMaxBytes = 0L;
+    /**查询结果缓存检查表数据修改时间的间隔 单位秒 间隔内直接返回缓存*/
+    private Long resultCacheFreshnessSeconds = 60L;
+    /**连接池最大连接数*/
+    private Integer poolMaxSize = 8;
+    /**连接空闲超过该时间后关闭 单位秒*/
+    private Long poolIdleTimeoutSeconds = 600L;
+    /**连接最大存活时间 超过后不再复用 单位秒 0表示不限制*/
+    private Long poolMaxLifetimeSeconds = 1800L;
+    /**连接全部被占用时获取连接最多等待的时间 单位毫秒*/
+    private Long poolBorrowTimeoutMillis = 30000L;
+    /**查询结果每批从服务端拉取的行数 0表示使用驱动默认值*/
+    private Integer fetchSize = 10000;
+    /**元数据快照文件路径 为空表示不开启快照，开启后表和字段优先从本地快照读取*/
+    private String catalogSnapshotPath;
+    /**元数据快照后台刷新间隔 单位秒*/
+    private Long catalogSnapshotRefreshSeconds = 3600L;
+}
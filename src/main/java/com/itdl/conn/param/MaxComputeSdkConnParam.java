@@ -17,4 +17,16 @@ public class MaxComputeSdkConnParam {
     private String maxComputeEndpoint;
     /**项目名称*/
     private String projectName;
-}
\ No newline at end of file
+    /**分页查询缓存实例的存活时间 单位秒 默认30分钟*/
+    private Long pageInstanceTtlSeconds = 1800L;
+    /**分页查询最多缓存的实例数量*/
+    private Integer pageInstanceMaxSize = 100;
+    /**元数据缓存的存活时间 单位秒 默认5分钟*/
+    private Long metaCacheTtlSeconds = 300L;
+    /**最多缓存多少张表的字段*/
+    private Integer metaCacheMaxSize = 1000;
+    /**查询结果缓存最多占用的内存字节数 按结果内容估算，0表示不开启结果缓存，开启后查询返回的结果是只读的*/
+    private Long resultCacheMaxBytes = 0L;
+    /**查询结果缓存检查表数据修改时间的间隔 单位秒 间隔内直接返回缓存*/
+    private Long resultCacheFreshnessSeconds = 60L;
+}
@@ -0,0 +1,179 @@
+package com.itdl.controller;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.aliyun.odps.Column;
+import com.aliyun.odps.data.Record;
+import com.itdl.common.base.ResultCode;
+import com.itdl.common.exception.BizException;
+import com.itdl.controller.param.StreamQueryParam;
+import com.itdl.util.MaxComputeJdbcUtil;
+import com.itdl.util.MaxComputeSdkUtil;
+import com.itdl.util.cache.SqlNormalizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @Description 流式返回查询结果 每行一个JSON(NDJSON)，使用chunked编码边查边写，服务端不缓存整个结果集
+ * 写响应是阻塞的，客户端读得慢时读取结果的线程也会被阻塞，从而不会继续从maxCompute拉取数据
+ * 最后一行固定为结束标记 成功时为{"_end":"ok","rows":行数}，中途出错时为{"_end":"error","code":错误码,"message":错误信息,"rows":已写入行数}，
+ * 响应头发出后无法再修改状态码，客户端没有读到结束标记时应视为结果被截断
+ * @Author itdl
+ * @Date 2026/10/17 03:27
+ */
+@Slf4j
+@RestController
+@RequestMapping("/query")
+public class QueryStreamController {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson;charset=UTF-8");
+    /**结束标记的字段名*/
+    private static final String END_KEY = "_end";
+    /**每写多少行刷新一次响应*/
+    private static final int FLUSH_ROWS = 500;
+    /**距上次刷新超过多少毫秒时刷新响应 保证慢查询也能尽快看到数据*/
+    private static final long FLUSH_INTERVAL_MILLIS = 1000L;
+
+    private final ObjectProvider<MaxComputeSdkUtil> sdkUtil;
+    private final ObjectProvider<MaxComputeJdbcUtil> jdbcUtil;
+
+    public QueryStreamController(ObjectProvider<MaxComputeSdkUtil> sdkUtil, ObjectProvider<MaxComputeJdbcUtil> jdbcUtil) {
+        this.sdkUtil = sdkUtil;
+        this.jdbcUtil = jdbcUtil;
+    }
+
+    /**
+     * 流式查询
+     * @param param 查询参数
+     * @return NDJSON格式的响应 每行一条记录
+     */
+    @PostMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> stream(@RequestBody StreamQueryParam param) {
+        // 只允许单条只读查询 在提交任务之前拒绝
+        if (!SqlNormalizer.isReadOnlyQuery(param.getSql())) {
+            log.warn("===>>拒绝执行的流式查询sql：{}", param.getSql());
+            throw new BizException(ResultCode.QUERY_SQL_NOT_ALLOWED_ERR);
+        }
+        final StreamingResponseBody body;
+        if ("jdbc".equalsIgnoreCase(param.getEngine())) {
+            final MaxComputeJdbcUtil util = jdbcUtil.getIfAvailable();
+            if (util == null) {
+                throw new BizException(ResultCode.QUERY_ENGINE_NOT_CONFIGURED_ERR);
+            }
+            body = out -> {
+                final RowWriter writer = new RowWriter(out);
+                writer.run(() -> util.queryData(param.getSql(), writer::write));
+            };
+        } else {
+            final MaxComputeSdkUtil util = sdkUtil.getIfAvailable();
+            if (util == null) {
+                throw new BizException(ResultCode.QUERY_ENGINE_NOT_CONFIGURED_ERR);
+            }
+            body = out -> {
+                final RowWriter writer = new RowWriter(out);
+                writer.run(() -> util.queryData(param.getSql(), param.isFullScan(), record -> writer.write(toMap(record))));
+            };
+        }
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    /**
+     * tunnel读取的记录中空值就是null，字符串"\N"是正常的值，原样返回
+     */
+    private static Map<String, Object> toMap(Record record) {
+        final Column[] columns = record.getColumns();
+        Map<String, Object> map = new LinkedHashMap<>(columns.length * 4 / 3 + 1);
+        for (int i = 0; i < columns.length; i++) {
+            Object value = record.get(i);
+            if (value instanceof byte[]) {
+                value = new String((byte[]) value, StandardCharsets.UTF_8);
+            }
+            map.put(columns[i].getName(), value);
+        }
+        return map;
+    }
+
+    /**
+     * 按行写入响应 第一行立即刷新，之后按行数或时间间隔刷新
+     * 客户端断开时写入会抛出异常，异常向上传递后中断读取并释放连接
+     */
+    private static class RowWriter {
+        private final OutputStream out;
+        private long rows;
+        private long lastFlush = System.currentTimeMillis();
+
+        RowWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        void write(Map<String, Object> row) {
+            try {
+                JSON.writeJSONString(out, row, SerializerFeature.WriteMapNullValue);
+                out.write('\n');
+                rows++;
+                final long now = System.currentTimeMillis();
+                if (rows == 1 || rows % FLUSH_ROWS == 0 || now - lastFlush >= FLUSH_INTERVAL_MILLIS) {
+                    out.flush();
+                    lastFlush = now;
+                }
+            } catch (IOException e) {
+                log.warn("===>>写入响应失败，客户端可能已断开，已写入{}行", rows);
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * 执行查询并在最后写入结束标记 查询出错时写入错误标记，客户端断开时不再写入
+         */
+        void run(Query query) throws IOException {
+            final long total;
+            try {
+                total = query.execute();
+            } catch (UncheckedIOException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                log.error("===>>流式查询出错，已写入{}行", rows, e);
+                final BizException bizException = e instanceof BizException ? (BizException) e : new BizException(ResultCode.SYSTEM_INNER_ERR);
+                Map<String, Object> end = new LinkedHashMap<>();
+                end.put(END_KEY, "error");
+                end.put("code", bizException.getCode());
+                end.put("message", bizException.getMessage());
+                end.put("rows", rows);
+                writeEnd(end);
+                return;
+            }
+            Map<String, Object> end = new LinkedHashMap<>();
+            end.put(END_KEY, "ok");
+            end.put("rows", total);
+            writeEnd(end);
+            log.info("===>>流式查询完成，共写入{}行", total);
+        }
+
+        private void writeEnd(Map<String, Object> end) throws IOException {
+            JSON.writeJSONString(out, end);
+            out.write('\n');
+            out.flush();
+        }
+    }
+
+    private interface Query {
+        /**
+         * 执行查询
+         * @return 读取的总行数
+         */
+        long execute();
+    }
+}
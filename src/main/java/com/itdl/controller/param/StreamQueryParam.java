@@ -0,0 +1,18 @@
+package com.itdl.controller.param;
+
+import lombok.Data;
+
+/**
+ * @Description 流式查询请求参数
+ * @Author itdl
+ * @Date 2026/10/17 03:27
+ */
+@Data
+public class StreamQueryParam {
+    /**查询sql*/
+    private String sql;
+    /**使用的查询方式 sdk或jdbc 默认sdk*/
+    private String engine = "sdk";
+    /**是否开启全表扫描 只对sdk方式生效*/
+    private boolean fullScan = false;
+}
@@ -1,6 +1,8 @@
 package com.itdl.util;
 
 import com.aliyuncs.DefaultAcsClient;
+import com.aliyuncs.AcsRequest;
+import com.aliyuncs.AcsResponse;
 import com.aliyuncs.IAcsClient;
 import com.aliyuncs.dataworks_public.model.v20200518.*;
 import com.aliyuncs.exceptions.ClientException;
@@ -11,19 +13,50 @@ import com.itdl.common.exception.BizException;
 import com.itdl.conn.param.DataWorksOpenApiConnParam;
 import com.itdl.conn.param.MaxComputeJdbcConnParam;
 import com.itdl.conn.param.MaxComputeSdkConnParam;
+import com.itdl.util.async.ParallelTaskRunner;
+import com.itdl.util.cache.TableNameIndex;
+import com.itdl.util.limit.AdaptiveRateLimiter;
+import com.itdl.util.sync.FileSyncCheckpoint;
+import com.itdl.util.sync.FileSyncResult;
+import com.itdl.util.metrics.CallMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.DigestUtils;
 import org.springframework.util.ObjectUtils;
 
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @Description dataworks open api util
  * @Author itdl
  * @Date 2022/08/09 15:18
  */
+@Slf4j
 public class DataWorksOpenApiUtil {
     private static final String MAX_COMPUTE_JDBC_URL_FORMAT = "http://service.%s.maxcompute.aliyun.com/api";
     /**默认的odps接口地址 在Odps中也可以看到该变量*/
     private static final String defaultEndpoint = "http://service.odps.aliyun.com/api";
+    /**被限流后重试的基础等待时间 实际等待时间在0到基础时间乘2的重试次数次方之间随机*/
+    private static final long THROTTLE_BACKOFF_BASE_MILLIS = 500L;
+    /**被限流后重试的最大等待时间*/
+    private static final long THROTTLE_BACKOFF_MAX_MILLIS = 20000L;
+    /**限流器每秒约增加的速率*/
+    private static final double RATE_INCREASE_STEP = 1.0;
+    /**被限流的错误码前缀 如Throttling.User、Throttling.Api*/
+    private static final String THROTTLING_ERR_CODE_PREFIX = "Throttling";
+    /**服务暂时不可用的错误码 可以重试但不降低速率*/
+    private static final Set<String> TRANSIENT_ERR_CODES = new HashSet<>(Arrays.asList(
+            "ServiceUnavailable", "InternalError", "SDK.ServerUnreachable"));
+    /**表名索引构建失败后的基础等待时间 每次连续失败翻倍，最长为索引的有效期*/
+    private static final long TABLE_INDEX_RETRY_BASE_MILLIS = 5000L;
+    /**限流器 同一账号同一区域共享，key为accessId@region*/
+    private static final Map<String, AdaptiveRateLimiter> RATE_LIMITERS = new ConcurrentHashMap<>();
     /**
      * dataworks连接参数
      *
@@ -45,9 +78,30 @@ public class DataWorksOpenApiUtil {
      */
     private final IAcsClient client;
 
+    /**
+     * 限流器 不限流时为null
+     */
+    private final AdaptiveRateLimiter rateLimiter;
+
+    /**
+     * 当前项目的表名索引 批量校验表是否存在时按需构建
+     */
+    private volatile TableNameIndex tableNameIndex;
+
+    /**
+     * 表名索引构建失败后 在这个时间之前不再重新构建，直接回退到接口校验
+     */
+    private volatile long tableNameIndexRetryAt;
+
+    /**
+     * 表名索引连续构建失败的次数
+     */
+    private int tableNameIndexFailures;
+
     public DataWorksOpenApiUtil(DataWorksOpenApiConnParam connParam, boolean odpsSdk) {
         this.connParam = connParam;
         this.client = buildClient();
+        this.rateLimiter = buildRateLimiter();
         this.odpsSdk = odpsSdk;
         if (odpsSdk){
             this.maxComputeJdbcUtil = null;
@@ -119,6 +173,95 @@ public class DataWorksOpenApiUtil {
     }
 
 
+    /**
+     * 获取共享的限流器 同一账号同一区域的所有工具类实例共用
+     * @return 限流器 初始速率不大于0时不限流，返回null
+     */
+    private AdaptiveRateLimiter buildRateLimiter() {
+        final Double permitsPerSecond = connParam.getRateLimitPermitsPerSecond();
+        if (permitsPerSecond == null || permitsPerSecond <= 0){
+            return null;
+        }
+        final String key = connParam.getAliyunAccessId() + "@" + connParam.getRegion();
+        return RATE_LIMITERS.computeIfAbsent(key, k -> new AdaptiveRateLimiter(permitsPerSecond,
+                connParam.getRateLimitMinPermitsPerSecond(), connParam.getRateLimitMaxPermitsPerSecond(), RATE_INCREASE_STEP));
+    }
+
+    /**
+     * 发起open api请求 先经过限流器，被限流或服务暂时不可用时按随机退避重试
+     * @param request 请求
+     * @return 响应
+     */
+    private <T extends AcsResponse> T getAcsResponse(AcsRequest<T> request) throws ClientException {
+        final int retryTimes = Math.max(0, connParam.getThrottleRetryTimes());
+        for (int attempt = 0; ; attempt++) {
+            if (rateLimiter != null){
+                rateLimiter.acquire();
+            }
+            try {
+                final T response = doGetAcsResponse(request);
+                if (rateLimiter != null){
+                    rateLimiter.onSuccess();
+                }
+                return response;
+            } catch (ClientException e) {
+                if (isThrottled(e) && rateLimiter != null){
+                    rateLimiter.onThrottled();
+                }
+                if (attempt >= retryTimes || !isRetryable(e)){
+                    throw e;
+                }
+                // 全随机退避 避免多个线程同时重试
+                final long backoff = Math.min(THROTTLE_BACKOFF_MAX_MILLIS, THROTTLE_BACKOFF_BASE_MILLIS << Math.min(attempt, 16));
+                final long sleepMillis = ThreadLocalRandom.current().nextLong(backoff + 1);
+                log.warn("===>>请求{}失败：{}，{}ms后第{}次重试", request.getActionName(), e.getErrCode(), sleepMillis, attempt + 1);
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 是否被服务端限流
+     */
+    private static boolean isThrottled(ClientException e) {
+        return e.getErrCode() != null && e.getErrCode().startsWith(THROTTLING_ERR_CODE_PREFIX);
+    }
+
+    /**
+     * 是否为可以重试的临时错误 限流或服务暂时不可用
+     */
+    private static boolean isRetryable(ClientException e) {
+        return isThrottled(e) || TRANSIENT_ERR_CODES.contains(e.getErrCode());
+    }
+
+    /**
+     * 发起单次open api请求 按接口记录耗时、出错次数和正在执行的请求数
+     * @param request 请求
+     * @return 响应
+     */
+    private <T extends AcsResponse> T doGetAcsResponse(AcsRequest<T> request) throws ClientException {
+        final String operation = request.getActionName();
+        final AtomicInteger inFlight = CallMetrics.inFlight(CallMetrics.DATA_WORKS);
+        inFlight.incrementAndGet();
+        final long start = System.nanoTime();
+        try {
+            final T response = client.getAcsResponse(request);
+            CallMetrics.record(CallMetrics.DATA_WORKS, operation, start);
+            return response;
+        } catch (ClientException e) {
+            CallMetrics.error(CallMetrics.DATA_WORKS, operation, e.getErrCode());
+            throw e;
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+
     /**
      * 获取数据库信息
      */
@@ -131,7 +274,7 @@ public class DataWorksOpenApiUtil {
         request.setDataSourceType(connParam.getDatasourceType());
 
         // 使用客户端发起请求
-        GetMetaDBInfoResponse res = client.getAcsResponse(request);
+        GetMetaDBInfoResponse res = getAcsResponse(request);
 
         // 获取结果数据
         return res.getData();
@@ -150,22 +293,10 @@ public class DataWorksOpenApiUtil {
      * 获取数据库下的所有表信息 指定每页展示条数 条数最大为100
      */
     public List<GetMetaDBTableListResponse.Data.TableEntityListItem> getDbAllTableInfo(Integer pageSize) throws ClientException {
-        pageSize = setPageSize(pageSize);
-        GetMetaDBTableListRequest request = new GetMetaDBTableListRequest();
+        final int size = setPageSize(pageSize);
 
-        // 设置 app guid 格式为 odps.{projectName}
-        request.setAppGuid(String.join(".", connParam.getDatasourceType(), connParam.getProject()));
-        // 设置数据库类型
-        request.setDataSourceType(connParam.getDatasourceType());
-
-        //第1页
-        request.setPageNumber(1);
-
-        //每页大小
-        request.setPageSize(pageSize);
-
-        // 使用客户端发起请求
-        GetMetaDBTableListResponse res = client.getAcsResponse(request);
+        // 第1页 使用客户端发起请求
+        GetMetaDBTableListResponse res = getAcsResponse(buildTableListRequest(1, size));
 
         // 获取数据
         final GetMetaDBTableListResponse.Data data = res.getData();
@@ -176,29 +307,37 @@ public class DataWorksOpenApiUtil {
         List<GetMetaDBTableListResponse.Data.TableEntityListItem> resultList = data.getTableEntityList();
 
         // 计算能分几页
-        long pages = totalCount % pageSize == 0 ? (totalCount / pageSize) : (totalCount / pageSize) + 1;
+        long pages = totalCount % size == 0 ? (totalCount / size) : (totalCount / size) + 1;
         // 只有1页 直接返回
         if (pages <= 1){
             return resultList;
         }
 
-        // 分页数据 从第二页开始查询
-        for (int i = 2; i <= pages; i++) {
-            //第1页
-            request.setPageNumber(i);
-            //每页大小
-            request.setPageSize(pageSize);
-            // 发起请求
-            res = client.getAcsResponse(request);
-            final List<GetMetaDBTableListResponse.Data.TableEntityListItem> tableEntityList = res.getData().getTableEntityList();
-            if (!ObjectUtils.isEmpty(tableEntityList)){
-                resultList.addAll(tableEntityList);
-            }
-        }
+        // 分页数据 从第二页开始并发查询，按页码顺序合并
+        fetchRemainingPages(pages, true, "dataworks-table-page",
+                page -> getAcsResponse(buildTableListRequest(page, size)).getData().getTableEntityList(),
+                resultList::addAll);
 
         return resultList;
     }
 
+    /**
+     * 构建分页查询表列表的请求 每页单独构建，并发时不共享请求对象
+     */
+    private GetMetaDBTableListRequest buildTableListRequest(int pageNumber, int pageSize) {
+        GetMetaDBTableListRequest request = new GetMetaDBTableListRequest();
+
+        // 设置 app guid 格式为 odps.{projectName}
+        request.setAppGuid(String.join(".", connParam.getDatasourceType(), connParam.getProject()));
+        // 设置数据库类型
+        request.setDataSourceType(connParam.getDatasourceType());
+        // 页码
+        request.setPageNumber(pageNumber);
+        //每页大小
+        request.setPageSize(pageSize);
+        return request;
+    }
+
 
     /**
      * 校验表是否存在
@@ -212,7 +351,138 @@ public class DataWorksOpenApiUtil {
         //资源类型
         request.setDataSourceType(connParam.getDatasourceType());
         // 发起请求
-        CheckMetaTableResponse res = client.getAcsResponse(request);
+        CheckMetaTableResponse res = getAcsResponse(request);
+        //表是否存在
+        return res.getData();
+    }
+
+
+    /**
+     * 批量校验表是否存在 使用表列表构建的索引在本地判断，只有无法确定的才调用接口逐个校验
+     * 无法确定的情况：带其他项目前缀的表名、索引构建失败，以及需要校验否定结果时索引中不存在的表(可能是索引构建后新建的表)
+     * @param tableNames 表名
+     * @param verifyNegatives true索引中不存在的表再调用接口确认 false直接认为不存在
+     * @return key为传入的表名，value为是否存在
+     */
+    public Map<String, Boolean> checkTablesExist(Collection<String> tableNames, boolean verifyNegatives) throws ClientException {
+        final Map<String, Boolean> result = new LinkedHashMap<>();
+        final TableNameIndex index = getTableNameIndex();
+        final List<String> uncertain = new ArrayList<>();
+        final String projectPrefix = connParam.getProject() + ".";
+        for (String tableName : new LinkedHashSet<>(tableNames)) {
+            // 当前项目的前缀可以去掉 项目名和表名一样不区分大小写，其他项目的表不在索引中
+            final String localName = tableName.regionMatches(true, 0, projectPrefix, 0, projectPrefix.length())
+                    ? tableName.substring(projectPrefix.length()) : tableName;
+            if (index == null || localName.indexOf('.') >= 0){
+                uncertain.add(tableName);
+            } else if (index.contains(localName)){
+                result.put(tableName, true);
+            } else if (verifyNegatives){
+                uncertain.add(tableName);
+            } else {
+                result.put(tableName, false);
+            }
+        }
+        log.info("===>>批量校验表是否存在，表数量：{}，本地判断：{}，调用接口：{}", result.size() + uncertain.size(), result.size(), uncertain.size());
+        if (uncertain.isEmpty()){
+            return result;
+        }
+
+        final Exception[] failure = new Exception[1];
+        ParallelTaskRunner.run(uncertain, this::checkTableGuidExists, connParam.getTableCheckConcurrency(), false, "dataworks-table-check",
+                new ParallelTaskRunner.CallBack<String, Boolean>() {
+                    @Override
+                    public void onSuccess(String tableName, Boolean exists) {
+                        result.put(tableName, Boolean.TRUE.equals(exists));
+                    }
+
+                    @Override
+                    public void onError(String tableName, Exception e) {
+                        log.error("===>>校验表是否存在失败：{}", tableName, e);
+                        if (failure[0] == null){
+                            failure[0] = e;
+                        }
+                    }
+                });
+        if (failure[0] instanceof ClientException){
+            throw (ClientException) failure[0];
+        }
+        if (failure[0] instanceof RuntimeException){
+            throw (RuntimeException) failure[0];
+        }
+        if (failure[0] != null){
+            throw new BizException(ResultCode.SYSTEM_INNER_ERR);
+        }
+        return result;
+    }
+
+    /**
+     * 清空表名索引 下次批量校验时重新拉取表列表
+     */
+    public synchronized void invalidateTableNameIndex() {
+        tableNameIndex = null;
+        tableNameIndexRetryAt = 0L;
+        tableNameIndexFailures = 0;
+    }
+
+    /**
+     * 获取表名索引 不存在或过期时使用getDbAllTableInfo重新构建
+     * 构建失败后按指数退避等待，等待期间直接返回null，不再每次都拉取表列表
+     * @return 表名索引 构建失败或等待重试时返回null，由调用方回退到接口校验
+     */
+    private TableNameIndex getTableNameIndex() {
+        final long ttlMillis = connParam.getTableIndexTtlSeconds() * 1000;
+        TableNameIndex index = tableNameIndex;
+        if (index != null && System.currentTimeMillis() - index.getBuiltAt() <= ttlMillis){
+            return index;
+        }
+        if (System.currentTimeMillis() < tableNameIndexRetryAt){
+            return null;
+        }
+        synchronized (this) {
+            index = tableNameIndex;
+            if (index != null && System.currentTimeMillis() - index.getBuiltAt() <= ttlMillis){
+                return index;
+            }
+            if (System.currentTimeMillis() < tableNameIndexRetryAt){
+                return null;
+            }
+            try {
+                final List<GetMetaDBTableListResponse.Data.TableEntityListItem> tables = getDbAllTableInfo();
+                final List<String> names = new ArrayList<>(tables.size());
+                for (GetMetaDBTableListResponse.Data.TableEntityListItem table : tables) {
+                    names.add(table.getTableName());
+                }
+                index = new TableNameIndex(names);
+                tableNameIndex = index;
+                tableNameIndexFailures = 0;
+                tableNameIndexRetryAt = 0L;
+                log.info("===>>构建表名索引完成，表数量：{}", index.size());
+                return index;
+            } catch (Exception e) {
+                final long backoff = Math.min(ttlMillis, TABLE_INDEX_RETRY_BASE_MILLIS << Math.min(20, tableNameIndexFailures++));
+                tableNameIndexRetryAt = System.currentTimeMillis() + backoff;
+                log.error("===>>构建表名索引失败，{}ms内回退到逐个校验", backoff, e);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 调用接口校验表是否存在 表名可以带项目前缀
+     * @param tableName 表名 或 项目名.表名
+     */
+    private Boolean checkTableGuidExists(String tableName) throws ClientException {
+        if (tableName.indexOf('.') < 0){
+            return checkTableExists(tableName);
+        }
+        CheckMetaTableRequest request = new CheckMetaTableRequest();
+        //odps table  guid，格式odps.{projectName}.{tableName}
+        request.setTableGuid(String.join(".", connParam.getDatasourceType(), tableName));
+        //资源类型
+        request.setDataSourceType(connParam.getDatasourceType());
+        // 发起请求
+        CheckMetaTableResponse res = getAcsResponse(request);
         //表是否存在
         return res.getData();
     }
@@ -226,12 +496,65 @@ public class DataWorksOpenApiUtil {
      * @param fileTypes 设置文件代码类型 逗号分割 可不传
      */
     public void listAllFiles(Integer pageSize, String folderPath, String userType, String fileTypes, CallBack.FileCallBack callBack) throws ClientException {
-        pageSize = setPageSize(pageSize);
+        listAllFiles(pageSize, folderPath, userType, fileTypes, true, callBack);
+    }
+
+    /**
+     * 根据文件夹路径分页查询该路径下的文件（脚本） 第二页及之后的页并发拉取，回调在调用线程中执行
+     * @param pageSize 每页查询多少数据
+     * @param folderPath 文件所在目录
+     * @param userType 文件所属功能模块 可不传
+     * @param fileTypes 设置文件代码类型 逗号分割 可不传
+     * @param ordered true按页码顺序回调 false哪页先拉取完先回调
+     */
+    public void listAllFiles(Integer pageSize, String folderPath, String userType, String fileTypes, boolean ordered,
+                             CallBack.FileCallBack callBack) throws ClientException {
+        listFiles(pageSize, folderPath, userType, fileTypes, ordered, callBack);
+    }
+
+    /**
+     * 分页查询文件夹下的文件 返回第一页查询时的文件总数
+     * 分页期间有文件新增或删除时，后面的页会整体偏移，回调的文件数可能与总数不一致
+     * @return 文件总数
+     */
+    private int listFiles(Integer pageSize, String folderPath, String userType, String fileTypes, boolean ordered,
+                          CallBack.FileCallBack callBack) throws ClientException {
+        final int size = setPageSize(pageSize);
+
+        // 发起请求 第1页
+        ListFilesResponse res = getAcsResponse(buildListFilesRequest(1, size, folderPath, userType, fileTypes));
+
+        // 获取分页总数
+        final Integer totalCount = res.getData().getTotalCount();
+        // 返回结果
+        final List<ListFilesResponse.Data.File> resultList = res.getData().getFiles();
+        // 计算能分几页
+        long pages = totalCount % size == 0 ? (totalCount / size) : (totalCount / size) + 1;
+        // 只有1页 直接返回
+        if (pages <= 1){
+            callBack.handle(resultList);
+            return totalCount;
+        }
+
+        // 第一页执行回调
+        callBack.handle(resultList);
+
+        // 分页数据 从第二页开始并发拉取，每拉取完一页执行一次回调
+        fetchRemainingPages(pages, ordered, "dataworks-file-page",
+                page -> getAcsResponse(buildListFilesRequest(page, size, folderPath, userType, fileTypes)).getData().getFiles(),
+                callBack::handle);
+        return totalCount;
+    }
+
+    /**
+     * 构建分页查询文件的请求 每页单独构建，并发时不共享请求对象
+     */
+    private ListFilesRequest buildListFilesRequest(int pageNumber, int pageSize, String folderPath, String userType, String fileTypes) {
         // 创建请求
         final ListFilesRequest request = new ListFilesRequest();
 
         // 设置分页参数
-        request.setPageNumber(1);
+        request.setPageNumber(pageNumber);
         request.setPageSize(pageSize);
 
         // 设置上级文件夹
@@ -249,39 +572,170 @@ public class DataWorksOpenApiUtil {
         if (!ObjectUtils.isEmpty(fileTypes)){
             request.setFileTypes(fileTypes);
         }
+        return request;
+    }
 
-        // 发起请求
-        ListFilesResponse res = client.getAcsResponse(request);
-
-        // 获取分页总数
-        final Integer totalCount = res.getData().getTotalCount();
-        // 返回结果
-        final List<ListFilesResponse.Data.File> resultList = res.getData().getFiles();
-        // 计算能分几页
-        long pages = totalCount % pageSize == 0 ? (totalCount / pageSize) : (totalCount / pageSize) + 1;
-        // 只有1页 直接返回
-        if (pages <= 1){
-            callBack.handle(resultList);
-            return;
+    /**
+     * 并发拉取第2页到最后一页 临时错误在getAcsResponse中重试，重试后仍失败则不再拉取后面的页，等在途的页结束后抛出第一个异常
+     * @param pages 总页数
+     * @param ordered true按页码顺序回调 false按完成顺序回调
+     * @param threadPrefix 线程名前缀
+     * @param pageFetcher 拉取单页
+     * @param pageCallBack 每页的回调 在调用线程中执行，空页不回调
+     */
+    private <T> void fetchRemainingPages(long pages, boolean ordered, String threadPrefix, ParallelTaskRunner.Task<Integer, List<T>> pageFetcher,
+                                         CallBack.PageCallBack<T> pageCallBack) throws ClientException {
+        final List<Integer> pageNumbers = new ArrayList<>((int) pages - 1);
+        for (int i = 2; i <= pages; i++) {
+            pageNumbers.add(i);
+        }
+        // 工作线程中记录第一个失败 之后开始的页直接跳过，不再发起请求
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        ParallelTaskRunner.run(pageNumbers, page -> {
+                    if (failure.get() != null){
+                        return null;
+                    }
+                    try {
+                        return pageFetcher.execute(page);
+                    } catch (Exception e) {
+                        log.error("===>>拉取第{}页失败", page, e);
+                        failure.compareAndSet(null, e);
+                        throw e;
+                    }
+                }, connParam.getPageConcurrency(), ordered, threadPrefix,
+                new ParallelTaskRunner.CallBack<Integer, List<T>>() {
+                    @Override
+                    public void onSuccess(Integer page, List<T> rows) {
+                        if (failure.get() == null && !ObjectUtils.isEmpty(rows)){
+                            pageCallBack.handle(rows);
+                        }
+                    }
+
+                    @Override
+                    public void onError(Integer page, Exception e) {
+                        // 任务中已记录日志和异常
+                    }
+                });
+        final Exception e = failure.get();
+        if (e instanceof ClientException){
+            throw (ClientException) e;
         }
+        if (e instanceof RuntimeException){
+            throw (RuntimeException) e;
+        }
+        if (e != null){
+            throw new BizException(ResultCode.SYSTEM_INNER_ERR);
+        }
+    }
 
-        // 第一页执行回调
-        callBack.handle(resultList);
 
-        // 分页数据 从第二页开始查询 同步拉取，可以优化为多线程拉取
-        for (int i = 2; i <= pages; i++) {
-            //第1页
-            request.setPageNumber(i);
-            //每页大小
-            request.setPageSize(pageSize);
-            // 发起请求
-            res = client.getAcsResponse(request);
-            final List<ListFilesResponse.Data.File> tableEntityList = res.getData().getFiles();
-            if (!ObjectUtils.isEmpty(tableEntityList)){
-                // 执行回调函数
-                callBack.handle(tableEntityList);
+    /**
+     * 增量同步文件夹下的文件（脚本） 与本地检查点比较，只获取新增和修改过的文件内容，只回调有变化的文件
+     * 修改时间变化但内容摘要不变的文件不回调；获取内容失败的文件保留旧状态，下次同步时重试
+     * 所有回调执行完毕后才保存检查点，同步中途失败时下次从上一个检查点重新开始
+     * 只有列出的文件数与文件总数一致时才判断删除，分页期间文件有增删导致列表不完整时本次不回调删除
+     * @param checkpointPath 本地检查点文件路径
+     * @param pageSize 每页查询多少数据
+     * @param folderPath 文件所在目录
+     * @param userType 文件所属功能模块 可不传
+     * @param fileTypes 设置文件代码类型 逗号分割 可不传
+     * @param callBack 变化回调 在调用线程中执行，不需要线程安全
+     * @return 同步结果
+     */
+    public FileSyncResult syncFiles(String checkpointPath, Integer pageSize, String folderPath, String userType, String fileTypes,
+                                    CallBack.FileSyncCallBack callBack) throws ClientException {
+        final File checkpointFile = new File(checkpointPath);
+        final FileSyncCheckpoint checkpoint = FileSyncCheckpoint.load(checkpointFile, connParam.getProject(), folderPath, userType, fileTypes);
+        final Map<Long, FileSyncCheckpoint.FileState> previous = checkpoint.getFiles();
+
+        // 1、列出所有文件 只有元数据，分页并发拉取
+        final Map<Long, ListFilesResponse.Data.File> current = new LinkedHashMap<>();
+        final int totalCount = listFiles(pageSize, folderPath, userType, fileTypes, false, files -> {
+            for (ListFilesResponse.Data.File file : files) {
+                current.put(file.getFileId(), file);
+            }
+        });
+
+        // 2、新增和修改时间变化的文件需要获取内容
+        final List<ListFilesResponse.Data.File> candidates = new ArrayList<>();
+        for (ListFilesResponse.Data.File file : current.values()) {
+            final FileSyncCheckpoint.FileState state = previous.get(file.getFileId());
+            if (state == null || !Objects.equals(state.getLastEditTime(), file.getLastEditTime())){
+                candidates.add(file);
+            }
+        }
+
+        final FileSyncResult result = new FileSyncResult();
+        final Map<Long, FileSyncCheckpoint.FileState> next = new HashMap<>(previous);
+        // 3、并发获取文件内容 比较摘要后回调
+        ParallelTaskRunner.run(candidates, file -> getFileContent(file.getFileId()), connParam.getFileSyncConcurrency(), false, "dataworks-file-sync",
+                new ParallelTaskRunner.CallBack<ListFilesResponse.Data.File, String>() {
+                    @Override
+                    public void onSuccess(ListFilesResponse.Data.File file, String content) {
+                        final String contentHash = DigestUtils.md5DigestAsHex((content == null ? "" : content).getBytes(StandardCharsets.UTF_8));
+                        final FileSyncCheckpoint.FileState state = previous.get(file.getFileId());
+                        if (state == null){
+                            callBack.onAdded(file, content);
+                            result.setAdded(result.getAdded() + 1);
+                        } else if (!contentHash.equals(state.getContentHash())){
+                            callBack.onChanged(file, content);
+                            result.setChanged(result.getChanged() + 1);
+                        } else {
+                            result.setUnchanged(result.getUnchanged() + 1);
+                        }
+                        final FileSyncCheckpoint.FileState newState = new FileSyncCheckpoint.FileState();
+                        newState.setFileId(file.getFileId());
+                        newState.setFileName(file.getFileName());
+                        newState.setLastEditTime(file.getLastEditTime());
+                        newState.setContentHash(contentHash);
+                        next.put(file.getFileId(), newState);
+                    }
+
+                    @Override
+                    public void onError(ListFilesResponse.Data.File file, Exception e) {
+                        log.error("===>>获取文件内容失败：{}", file.getFileName(), e);
+                        result.setFailed(result.getFailed() + 1);
+                    }
+                });
+
+        // 4、检查点中有而当前没有的文件已被删除 列表不完整时无法区分删除和漏页，保留旧状态等下次同步
+        if (current.size() == totalCount){
+            for (FileSyncCheckpoint.FileState state : previous.values()) {
+                if (!current.containsKey(state.getFileId())){
+                    callBack.onDeleted(state);
+                    next.remove(state.getFileId());
+                    result.setDeleted(result.getDeleted() + 1);
+                }
             }
+        } else {
+            log.warn("===>>列出的文件数{}与文件总数{}不一致，分页期间文件有变化，本次不判断删除", current.size(), totalCount);
         }
+
+        // 5、保存检查点
+        checkpoint.setFiles(next);
+        checkpoint.setSyncedAt(System.currentTimeMillis());
+        try {
+            checkpoint.save(checkpointFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new BizException(ResultCode.SYSTEM_INNER_ERR);
+        }
+        log.info("===>>文件增量同步完成，文件总数：{}，{}", current.size(), result);
+        return result;
+    }
+
+    /**
+     * 获取文件内容
+     * @param fileId 文件id
+     * @return 文件内容
+     */
+    public String getFileContent(Long fileId) throws ClientException {
+        final GetFileRequest request = new GetFileRequest();
+        request.setProjectIdentifier(connParam.getProject());
+        request.setFileId(fileId);
+        // 发起请求
+        final GetFileResponse res = getAcsResponse(request);
+        return res.getData().getFile().getContent();
     }
 
 
@@ -301,6 +755,40 @@ public class DataWorksOpenApiUtil {
     }
 
 
+    /**
+     * 并发获取所有的DDL脚本 单张表失败不影响其他表
+     * @param concurrency 并发数
+     * @param ordered true按表列表顺序回调 false谁先完成先回调
+     * @param callBack 回调处理函数 在调用线程中执行，不需要线程安全
+     * @param errorCallBack 单张表获取失败的回调 可不传，不传只记录日志
+     */
+    public void listAllDdl(int concurrency, boolean ordered, CallBack.DdlCallBack callBack, CallBack.DdlErrorCallBack errorCallBack){
+        if (!odpsSdk){
+            return;
+        }
+        final List<TableMetaInfo> tableInfos = maxComputeSdkUtil.getTableInfos();
+        List<String> tableNames = new ArrayList<>(tableInfos.size());
+        for (TableMetaInfo tableInfo : tableInfos) {
+            tableNames.add(tableInfo.getTableName());
+        }
+        ParallelTaskRunner.run(tableNames, maxComputeSdkUtil::getSqlCreateDesc, concurrency, ordered, "ddl-export",
+                new ParallelTaskRunner.CallBack<String, String>() {
+                    @Override
+                    public void onSuccess(String tableName, String tableDdlContent) {
+                        callBack.handle(tableName, tableDdlContent);
+                    }
+
+                    @Override
+                    public void onError(String tableName, Exception e) {
+                        log.error("===>>获取建表语句失败：{}", tableName, e);
+                        if (errorCallBack != null){
+                            errorCallBack.handle(tableName, e);
+                        }
+                    }
+                });
+    }
+
+
     /**
      * 设置分页大小，防止分页参数传错误
      * @param pageSize 分页每页记录数  最大为100 最小为1
@@ -349,12 +837,46 @@ public class DataWorksOpenApiUtil {
         }
 
 
+        public interface PageCallBack<T> {
+            /**
+             * 分页拉取时每拉取完一页回调
+             */
+            void handle(List<T> rows);
+        }
+
+
+        public interface FileSyncCallBack {
+            /**
+             * 新增的文件
+             */
+            void onAdded(ListFilesResponse.Data.File file, String content);
+
+            /**
+             * 内容有变化的文件
+             */
+            void onChanged(ListFilesResponse.Data.File file, String content);
+
+            /**
+             * 已删除的文件 只有上次同步时记录的状态
+             */
+            void onDeleted(FileSyncCheckpoint.FileState state);
+        }
+
+
         public interface DdlCallBack {
             /**
              * 获取建表语句回调结果
              */
             void handle(String tableName, String tableDdlContent);
         }
+
+
+        public interface DdlErrorCallBack {
+            /**
+             * 获取建表语句失败回调
+             */
+            void handle(String tableName, Exception e);
+        }
     }
 
 
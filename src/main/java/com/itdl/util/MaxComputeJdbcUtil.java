@@ -2,20 +2,37 @@ package com.itdl.util;
 
 import com.alibaba.fastjson.JSONObject;
 import com.aliyun.odps.*;
+import com.aliyun.odps.account.AliyunAccount;
 import com.aliyun.odps.data.Record;
 import com.aliyun.odps.task.SQLTask;
 import com.itdl.common.base.PageResult;
 import com.itdl.common.base.ResultCode;
 import com.itdl.common.base.TableColumnMetaInfo;
 import com.itdl.common.base.TableMetaInfo;
+import com.itdl.common.base.columnar.ColumnVector;
+import com.itdl.common.base.columnar.ColumnarResult;
 import com.itdl.common.exception.BizException;
 import com.itdl.conn.param.MaxComputeJdbcConnParam;
+import com.itdl.util.cache.CatalogSnapshot;
+import com.itdl.util.cache.CatalogSnapshotStore;
+import com.itdl.util.cache.MetaCache;
+import com.itdl.util.cache.QueryResultCache;
+import com.itdl.util.export.ExportOption;
+import com.itdl.util.export.ExportResult;
+import com.itdl.util.export.PipelinedFileWriter;
+import com.itdl.util.jdbc.JdbcRowIterator;
+import com.itdl.util.mapper.BeanRowMapper;
+import com.itdl.util.metrics.CallMetrics;
+import com.itdl.util.pool.JdbcConnectionPool;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.ObjectUtils;
 
+import java.io.File;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @Description
@@ -27,31 +44,72 @@ public class MaxComputeJdbcUtil {
     /**JDBC 驱动名称*/
     private static final String DRIVER_NAME = "com.aliyun.odps.jdbc.OdpsDriver";
 
-    private static final String SELECT_ALL_TABLE_SQL = "select table_name, table_comment from Information_Schema.TABLES";
+    private static final String SELECT_ALL_TABLE_SQL = "select table_name, table_comment, last_modified_time from Information_Schema.TABLES";
 
-    private static final String SELECT_FIELD_BY_TABLE_SQL = "select column_name, column_comment from Information_Schema.COLUMNS where table_name = '%s'";
+    private static final String SELECT_FIELD_BY_TABLE_SQL = "select column_name, column_comment, data_type, ordinal_position from Information_Schema.COLUMNS where table_name = ?";
+    /**批量查询字段 一次返回所有表的字段*/
+    private static final String SELECT_ALL_FIELD_SQL = "select table_name, column_name, column_comment, data_type, ordinal_position from Information_Schema.COLUMNS";
+    /**批量查询指定表的字段 %s为占位符列表*/
+    private static final String SELECT_FIELD_BY_TABLES_SQL = SELECT_ALL_FIELD_SQL + " where table_name in (%s)";
+    /**批量查询指定表的字段时 每条sql最多包含的表数量，避免sql过长*/
+    private static final int MAX_TABLES_PER_QUERY = 1000;
     /**分页查询sql模板*/
     private static final String PAGE_SELECT_TEMPLATE_SQL = "select z.* from (%s) z limit %s, %s;";
+    /**分页查询同时统计总数时 总数所在的列名*/
+    private static final String PAGE_TOTAL_COLUMN = "z_page_total";
     /**分页查询统计数量模板SQL*/
     private static final String PAGE_COUNT_TEMPLATE_SQL = "select count(1) from (%s) z;";
-    /**连接*/
-    private final Connection conn;
+    /**分页查询同时统计总数的模板SQL 窗口函数在limit之前计算，得到的是总记录数*/
+    private static final String PAGE_WITH_COUNT_TEMPLATE_SQL = "select z.*, count(1) over () as " + PAGE_TOTAL_COLUMN + " from (%s) z limit %s, %s;";
+    /**maxCompute里面的空值 文本结果中使用\N表示*/
+    private static final String NULL_VALUE = "\\N";
+    /**连接池*/
+    private final JdbcConnectionPool pool;
 
     /**
      * 连接参数
      */
     private final MaxComputeJdbcConnParam connParam;
 
+    /**表列表缓存 key固定为项目名*/
+    private final MetaCache<String, List<TableMetaInfo>> tableCache;
+
+    /**表字段缓存 key为表名*/
+    private final MetaCache<String, List<TableColumnMetaInfo>> columnCache;
+
+    /**拉取表列表时记录的表最后修改时间 作为查询结果缓存和元数据快照的版本*/
+    private final Map<String, Long> tableVersions = new ConcurrentHashMap<>();
+
+    /**查询结果缓存 未开启时为null*/
+    private final QueryResultCache resultCache;
+
+    /**元数据快照 未开启时为null*/
+    private final CatalogSnapshotStore snapshotStore;
+
+    /**odps客户端 只用于获取表的元数据修改时间*/
+    private final Odps odps;
+
     public MaxComputeJdbcUtil(MaxComputeJdbcConnParam connParam) {
         this.connParam = connParam;
-        this.conn = buildConn();
+        this.pool = buildPool();
+        this.odps = buildOdps();
+        this.tableCache = new MetaCache<>(1, connParam.getMetaCacheTtlSeconds() * 1000);
+        this.columnCache = new MetaCache<>(connParam.getMetaCacheMaxSize(), connParam.getMetaCacheTtlSeconds() * 1000);
+        this.resultCache = connParam.getResultCacheMaxBytes() > 0
+                ? new QueryResultCache(connParam.getResultCacheMaxBytes(), connParam.getResultCacheFreshnessSeconds() * 1000, this::getTableDataVersion)
+                : null;
+        this.snapshotStore = ObjectUtils.isEmpty(connParam.getCatalogSnapshotPath())
+                ? null
+                : new CatalogSnapshotStore(new File(connParam.getCatalogSnapshotPath()), connParam.getProjectName(),
+                        connParam.getCatalogSnapshotRefreshSeconds() * 1000, this::loadCatalog,
+                        connParam.getMetaCacheTtlSeconds() * 1000, this::getTableMetaVersion).start();
     }
 
     /**
-     * 创建连接
-     * @return 数据库连接
+     * 创建连接池 启动时先创建一个连接，连接参数错误时尽早失败
+     * @return 连接池
      */
-    private Connection buildConn() {
+    private JdbcConnectionPool buildPool() {
         try {
             Class.forName(DRIVER_NAME);
         } catch (ClassNotFoundException e) {
@@ -59,39 +117,98 @@ public class MaxComputeJdbcUtil {
             throw new BizException(ResultCode.MAX_COMPUTE_JDBC_DRIVE_LOAD_ERR);
         }
 
+        final JdbcConnectionPool pool = new JdbcConnectionPool(this::buildConn, connParam.getPoolMaxSize(),
+                connParam.getPoolIdleTimeoutSeconds() * 1000, connParam.getPoolMaxLifetimeSeconds() * 1000,
+                connParam.getPoolBorrowTimeoutMillis());
         try {
-            // JDBCURL连接模板
-            String jdbcUrlTemplate = "jdbc:odps:%s?project=%s&useProjectTimeZone=true";
-            // 使用驱动管理器连接获取连接
-            return DriverManager.getConnection(
-                    String.format(jdbcUrlTemplate, connParam.getEndpoint(), connParam.getProjectName()),
-                    connParam.getAliyunAccessId(), connParam.getAliyunAccessKey());
+            pool.getConnection().close();
         } catch (SQLException e) {
             e.printStackTrace();
+            pool.close();
             throw new BizException(ResultCode.MAX_COMPUTE_JDBC_DRIVE_LOAD_ERR);
         }
+        return pool;
+    }
+
+    /**
+     * 创建连接 由连接池调用
+     * @return 数据库连接
+     */
+    private Connection buildConn() throws SQLException {
+        // JDBCURL连接模板
+        String jdbcUrlTemplate = "jdbc:odps:%s?project=%s&useProjectTimeZone=true";
+        // 使用驱动管理器连接获取连接
+        return DriverManager.getConnection(
+                String.format(jdbcUrlTemplate, connParam.getEndpoint(), connParam.getProjectName()),
+                connParam.getAliyunAccessId(), connParam.getAliyunAccessKey());
     }
 
 
     /**
-     * 获取表信息
+     * 获取表信息 开启元数据快照时直接从快照读取，否则结果会缓存，超过存活时间后重新查询
      * @return 表信息列表
      */
     public List<TableMetaInfo> getTableInfos(){
+        final CatalogSnapshot snapshot = snapshotStore == null ? null : snapshotStore.get();
+        if (snapshot != null){
+            return new ArrayList<>(snapshot.getTables());
+        }
+        return getCachedTableInfos();
+    }
+
+    /**
+     * 获取表信息 结果会缓存，超过存活时间后重新查询
+     * @return 表信息列表
+     */
+    private List<TableMetaInfo> getCachedTableInfos(){
+        final List<TableMetaInfo> cached = tableCache.get(connParam.getProjectName(),
+                k -> new MetaCache.Versioned<>(loadTableInfos(), null), null);
+        return new ArrayList<>(cached);
+    }
+
+    /**
+     * 构建odps客户端 与JDBC使用相同的账号、地址和项目
+     * @return odps客户端
+     */
+    private Odps buildOdps() {
+        final Odps odps = new Odps(new AliyunAccount(connParam.getAliyunAccessId(), connParam.getAliyunAccessKey()));
+        odps.setEndpoint(connParam.getEndpoint());
+        odps.setDefaultProject(connParam.getProjectName());
+        return odps;
+    }
+
+    /**
+     * 查询Information_Schema获取表信息 同时记录每张表的最后修改时间
+     * @return 表信息列表
+     */
+    private List<TableMetaInfo> loadTableInfos(){
         List<TableMetaInfo> resultList = new ArrayList<>();
+        Connection connection = null;
         Statement statement = null;
         ResultSet resultSet = null;
         try {
-            // 创建statement 使用SQL直接查询
-            statement = conn.createStatement();
+            // 使用PreparedStatement 驱动在客户端替换参数
+            connection = pool.getConnection();
+            final PreparedStatement prepared = connection.prepareStatement(SELECT_ALL_TABLE_SQL);
+            statement = prepared;
             // 执行查询语句
-            resultSet = statement.executeQuery(SELECT_ALL_TABLE_SQL);
+            resultSet = execute(prepared);
             while (resultSet.next()){
                 final String tableName = resultSet.getString("table_name");
                 final String tableComment = resultSet.getString("table_comment");
+                final Timestamp lastModifiedTime = resultSet.getTimestamp("last_modified_time");
                 final TableMetaInfo info = new TableMetaInfo(tableName, tableComment);
                 resultList.add(info);
+                if (lastModifiedTime != null){
+                    tableVersions.put(tableName, lastModifiedTime.getTime());
+                }
             }
+            // 移除已删除表的修改时间
+            final Set<String> tableNames = new HashSet<>();
+            for (TableMetaInfo info : resultList) {
+                tableNames.add(info.getTableName());
+            }
+            tableVersions.keySet().retainAll(tableNames);
 
             return resultList;
         } catch (SQLException e) {
@@ -102,29 +219,214 @@ public class MaxComputeJdbcUtil {
             closeResultSet(resultSet);
             // 关闭statement
             closeStatement(statement);
+            // 归还连接
+            closeConnection(connection);
         }
     }
 
     /**
-     * 根据表名称获取字段列表
+     * 根据表名称获取字段列表 开启元数据快照且快照中该表的修改时间与当前一致时直接从快照读取
+     * 否则结果会缓存，超过存活时间后只有表的元数据修改时间变化才重新查询
+     * 写入数据会改变表的最后修改时间，字段缓存使用元数据修改时间，不受写入影响
      * @return 表信息列表
      */
     public List<TableColumnMetaInfo> getFieldByTableName(String tableName){
+        final List<TableColumnMetaInfo> snapshotColumns = getSnapshotColumns(tableName);
+        if (snapshotColumns != null){
+            return snapshotColumns;
+        }
+        final List<TableColumnMetaInfo> cached = columnCache.get(tableName,
+                k -> new MetaCache.Versioned<>(loadFieldByTableName(k), getTableMetaVersion(k)), this::getTableMetaVersion);
+        return new ArrayList<>(cached);
+    }
+
+    /**
+     * 从元数据快照获取表的字段 不发请求，表的元数据修改时间在后台检查，快照生成后表被修改或单独失效过时返回null
+     * @param tableName 表名
+     */
+    private List<TableColumnMetaInfo> getSnapshotColumns(String tableName){
+        return snapshotStore == null ? null : snapshotStore.getColumns(tableName);
+    }
+
+    /**
+     * 批量获取所有表的字段列表 只执行一次Information_Schema查询，结果同时写入字段缓存
+     * @return key为表名，value为按字段位置排序的字段列表
+     */
+    public Map<String, List<TableColumnMetaInfo>> getAllFields(){
+        return getFieldsByTableNames(null);
+    }
+
+    /**
+     * 批量获取指定表的字段列表 按表名分组，结果同时写入字段缓存
+     * 每条sql最多包含MAX_TABLES_PER_QUERY张表，表数量超过时分多次查询
+     * @param tableNames 表名集合 为空时查询所有表
+     * @return key为表名，value为按字段位置排序的字段列表，不存在的表不会出现在结果中
+     */
+    public Map<String, List<TableColumnMetaInfo>> getFieldsByTableNames(Collection<String> tableNames){
+        final Map<String, List<TableColumnMetaInfo>> fieldIndex = loadFieldIndex(tableNames);
+        for (Map.Entry<String, List<TableColumnMetaInfo>> entry : fieldIndex.entrySet()) {
+            // 批量查询不逐表获取元数据修改时间 过期后重新加载一次即带上版本
+            columnCache.put(entry.getKey(), new MetaCache.Versioned<>(new ArrayList<>(entry.getValue()), null));
+        }
+        return fieldIndex;
+    }
+
+    /**
+     * 批量查询字段 按表名分组，每张表的字段按位置排序
+     * @param tableNames 表名集合 为空时查询所有表
+     */
+    private Map<String, List<TableColumnMetaInfo>> loadFieldIndex(Collection<String> tableNames){
+        final Map<String, List<TableColumnMetaInfo>> fieldIndex = new LinkedHashMap<>();
+        if (CollectionUtils.isEmpty(tableNames)){
+            loadFields(SELECT_ALL_FIELD_SQL, Collections.emptyList(), fieldIndex);
+        } else {
+            final List<String> names = new ArrayList<>(new LinkedHashSet<>(tableNames));
+            for (int from = 0; from < names.size(); from += MAX_TABLES_PER_QUERY) {
+                final List<String> chunk = names.subList(from, Math.min(names.size(), from + MAX_TABLES_PER_QUERY));
+                final String execSql = String.format(SELECT_FIELD_BY_TABLES_SQL, String.join(", ", Collections.nCopies(chunk.size(), "?")));
+                loadFields(execSql, chunk, fieldIndex);
+            }
+        }
+        for (Map.Entry<String, List<TableColumnMetaInfo>> entry : fieldIndex.entrySet()) {
+            entry.getValue().sort(Comparator.comparing(TableColumnMetaInfo::getOrdinalPosition));
+        }
+        log.info("===>>批量获取字段完成，表数量：{}", fieldIndex.size());
+        return fieldIndex;
+    }
+
+    /**
+     * 执行批量字段查询 按表名分组放入fieldIndex
+     * @param execSql 查询sql
+     * @param params 表名参数 与sql中的占位符一一对应
+     * @param fieldIndex 按表名分组的字段
+     */
+    private void loadFields(String execSql, List<String> params, Map<String, List<TableColumnMetaInfo>> fieldIndex){
+        Connection connection = null;
+        Statement statement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = pool.getConnection();
+            final PreparedStatement prepared = connection.prepareStatement(execSql);
+            for (int i = 0; i < params.size(); i++) {
+                prepared.setString(i + 1, params.get(i));
+            }
+            if (connParam.getFetchSize() != null && connParam.getFetchSize() > 0) {
+                prepared.setFetchSize(connParam.getFetchSize());
+            }
+            statement = prepared;
+            // 执行查询语句
+            resultSet = execute(prepared);
+            while (resultSet.next()){
+                final String tableName = resultSet.getString(1);
+                final TableColumnMetaInfo info = new TableColumnMetaInfo(tableName, resultSet.getString(2), resultSet.getString(3));
+                info.setDataType(resultSet.getString(4));
+                info.setOrdinalPosition(resultSet.getInt(5));
+                fieldIndex.computeIfAbsent(tableName, k -> new ArrayList<>()).add(info);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new BizException(ResultCode.MAX_COMPUTE_SQL_EXEC_ERR);
+        } finally {
+            // 关闭resultSet
+            closeResultSet(resultSet);
+            // 关闭statement
+            closeStatement(statement);
+            // 归还连接
+            closeConnection(connection);
+        }
+    }
+
+    /**
+     * 拉取完整元数据用于生成快照 表列表和所有字段各查询一次
+     */
+    private CatalogSnapshotStore.Catalog loadCatalog(){
+        final List<TableMetaInfo> tables = loadTableInfos();
+        return new CatalogSnapshotStore.Catalog(tables, new HashMap<>(tableVersions), loadFieldIndex(null));
+    }
+
+    /**
+     * 清空表和字段的元数据缓存 开启元数据快照时同步重新生成快照
+     */
+    public void invalidateMetaCache(){
+        tableCache.invalidateAll();
+        columnCache.invalidateAll();
+        if (snapshotStore != null){
+            snapshotStore.refresh();
+        }
+    }
+
+    /**
+     * 移除某个表的字段缓存 元数据快照中该表的字段同时失效，直到下一次生成快照
+     * @param tableName 表名
+     */
+    public void invalidateMetaCache(String tableName){
+        if (snapshotStore != null){
+            snapshotStore.invalidate(tableName);
+        }
+        columnCache.invalidate(tableName);
+    }
+
+    /**
+     * 获取表的元数据修改时间 作为字段缓存的版本，获取失败返回null
+     */
+    private Long getTableMetaVersion(String tableName){
+        try {
+            final java.util.Date lastMetaModifiedTime = odps.tables().get(tableName).getLastMetaModifiedTime();
+            return lastMetaModifiedTime == null ? null : lastMetaModifiedTime.getTime();
+        } catch (Exception e) {
+            log.warn("===>>获取表元数据修改时间失败：{}", tableName, e);
+            return null;
+        }
+    }
+
+    /**
+     * 获取表的最后修改时间 先确保表列表缓存有效(过期会重新查询一次)
+     */
+    private Long getTableVersion(String tableName){
+        getCachedTableInfos();
+        return tableVersions.get(tableName);
+    }
+
+    /**
+     * 获取表的最后修改时间 作为查询结果缓存的版本，使用表列表缓存中的修改时间，不单独查询
+     * 表列表只包含当前项目的表，其他项目的表返回null，查询结果不缓存
+     * @param tableName 表名 可以带项目名前缀
+     */
+    private Long getTableDataVersion(String tableName){
+        final int dot = tableName.indexOf('.');
+        if (dot < 0) {
+            return getTableVersion(tableName);
+        }
+        if (!tableName.substring(0, dot).equalsIgnoreCase(connParam.getProjectName())) {
+            return null;
+        }
+        return getTableVersion(tableName.substring(dot + 1));
+    }
+
+    /**
+     * 查询Information_Schema获取表的字段列表
+     * @return 字段列表
+     */
+    private List<TableColumnMetaInfo> loadFieldByTableName(String tableName){
         List<TableColumnMetaInfo> resultList = new ArrayList<>();
+        Connection connection = null;
         Statement statement = null;
         ResultSet resultSet = null;
         try {
-            // 创建statement 使用SQL直接查询
-            statement = conn.createStatement();
+            // 表名作为参数传入 由驱动转义
+            connection = pool.getConnection();
+            final PreparedStatement prepared = connection.prepareStatement(SELECT_FIELD_BY_TABLE_SQL);
+            prepared.setString(1, tableName);
+            statement = prepared;
             // 执行查询语句
-            final String execSql = String.format(SELECT_FIELD_BY_TABLE_SQL, tableName);
-            resultSet = statement.executeQuery(execSql);
+            resultSet = execute(prepared);
             while (resultSet.next()){
-                final String columnName = resultSet.getString("column_name");
-                final String columnComment = resultSet.getString("column_comment");
-                final TableColumnMetaInfo info = new TableColumnMetaInfo(tableName, columnName, columnComment);
+                final TableColumnMetaInfo info = new TableColumnMetaInfo(tableName, resultSet.getString(1), resultSet.getString(2));
+                info.setDataType(resultSet.getString(3));
+                info.setOrdinalPosition(resultSet.getInt(4));
                 resultList.add(info);
             }
+            resultList.sort(Comparator.comparing(TableColumnMetaInfo::getOrdinalPosition));
 
             return resultList;
         } catch (SQLException e) {
@@ -135,6 +437,8 @@ public class MaxComputeJdbcUtil {
             closeResultSet(resultSet);
             // 关闭statement
             closeStatement(statement);
+            // 归还连接
+            closeConnection(connection);
         }
     }
 
@@ -146,18 +450,36 @@ public class MaxComputeJdbcUtil {
      * @return List<Map<String, Object>>
      */
     public List<Map<String, Object>> queryData(String querySql){
+        if (resultCache != null){
+            // 开启了结果缓存 表数据未变化时直接返回缓存结果
+            return resultCache.getOrLoad(querySql, null, () -> executeQuery(querySql));
+        }
+        return executeQuery(querySql);
+    }
+
+    /**
+     * 执行sql查询 不经过结果缓存
+     * @param querySql 查询sql
+     * @return List<Map<String, Object>>
+     */
+    private List<Map<String, Object>> executeQuery(String querySql){
         List<Map<String, Object>> resultList = new ArrayList<>();
+        Connection connection = null;
         Statement statement = null;
         ResultSet resultSet = null;
         try {
             // 创建statement
-            statement = conn.createStatement();
+            connection = pool.getConnection();
+            statement = createStatement(connection);
 
             // 执行查询语句
-            resultSet = statement.executeQuery(querySql);
+            resultSet = execute(statement, querySql);
 
-            // 构建结果返回
+            // 构建结果返回 结果集是边遍历边拉取的，耗时包含读取和转换
+            final long start = System.nanoTime();
             buildMapByRs(resultList, resultSet);
+            CallMetrics.record(CallMetrics.JDBC, "fetch", start);
+            CallMetrics.rows(CallMetrics.JDBC, "fetch", resultList.size());
 
             return resultList;
         } catch (SQLException e) {
@@ -168,6 +490,133 @@ public class MaxComputeJdbcUtil {
             closeResultSet(resultSet);
             // 关闭statement
             closeStatement(statement);
+            // 归还连接
+            closeConnection(connection);
+        }
+    }
+
+    /**
+     * 执行sql查询【列式结果】 列名只保存一份，数值和布尔列使用基本类型数组和空值位图
+     * @param querySql 查询sql
+     * @return 列式结果 需要List<Map>时使用asMaps()
+     */
+    public ColumnarResult queryColumnar(String querySql){
+        Connection connection = null;
+        Statement statement = null;
+        ResultSet resultSet = null;
+        try {
+            // 创建statement
+            connection = pool.getConnection();
+            statement = createStatement(connection);
+
+            // 执行查询语句
+            resultSet = execute(statement, querySql);
+
+            // 构建结果返回
+            return buildColumnarByRs(resultSet);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new BizException(ResultCode.MAX_COMPUTE_SQL_EXEC_ERR);
+        } finally {
+            // 关闭resultSet
+            closeResultSet(resultSet);
+            // 关闭statement
+            closeStatement(statement);
+            // 归还连接
+            closeConnection(connection);
+        }
+    }
+
+    /**
+     * 执行sql查询【流式读取】 每读取一行回调一次，不在内存中缓存整个结果集
+     * 回调中抛出的异常会中断读取并关闭statement
+     * @param querySql 查询sql
+     * @param callBack 每读取一行执行一次回调
+     * @return 读取的总记录数
+     */
+    public long queryData(String querySql, CallBack.RowCallBack callBack){
+        try (JdbcRowIterator iterator = queryIterator(querySql)) {
+            while (iterator.hasNext()) {
+                callBack.handle(iterator.next());
+            }
+            return iterator.getReadCount();
+        }
+    }
+
+    /**
+     * 执行sql查询【流式迭代】 按fetchSize分批拉取，边读取边消费
+     * 使用完毕后必须调用close，读取完毕时会自动关闭，提前结束时需要手动关闭以归还连接
+     * @param querySql 查询sql
+     * @return 行迭代器 key为列名，顺序与查询结果一致
+     */
+    public JdbcRowIterator queryIterator(String querySql){
+        Connection connection = null;
+        Statement statement = null;
+        ResultSet resultSet = null;
+        try {
+            // 创建statement
+            connection = pool.getConnection();
+            statement = createStatement(connection);
+
+            // 执行查询语句
+            resultSet = execute(statement, querySql);
+
+            // 连接的关闭交给迭代器
+            return new JdbcRowIterator(connection, statement, resultSet);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            closeResultSet(resultSet);
+            closeStatement(statement);
+            closeConnection(connection);
+            throw new BizException(ResultCode.MAX_COMPUTE_SQL_EXEC_ERR);
+        }
+    }
+
+    /**
+     * 执行sql查询【导出文件】 逐行读取ResultSet写入本地文件，编码压缩在独立的写线程中进行，不在内存中缓存整个结果集
+     * @param querySql 查询sql
+     * @param option 导出参数
+     * @return 导出结果
+     */
+    public ExportResult exportData(String querySql, ExportOption option){
+        Connection connection = null;
+        Statement statement = null;
+        ResultSet resultSet = null;
+        try {
+            // 创建statement
+            connection = pool.getConnection();
+            statement = createStatement(connection);
+
+            // 执行查询语句
+            resultSet = execute(statement, querySql);
+
+            // 获取元数据 列名只获取一次
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            String[] columnNames = new String[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                columnNames[i] = metaData.getColumnName(i + 1);
+            }
+            try (PipelinedFileWriter writer = new PipelinedFileWriter(columnNames, option)) {
+                while (resultSet.next()) {
+                    Object[] values = new Object[columnCount];
+                    for (int i = 0; i < columnCount; i++) {
+                        values[i] = resultSet.getObject(i + 1);
+                    }
+                    writer.write(values);
+                }
+                return writer.finish();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new BizException(ResultCode.MAX_COMPUTE_SQL_EXEC_ERR);
+        } finally {
+            // 关闭resultSet
+            closeResultSet(resultSet);
+            // 关闭statement
+            closeStatement(statement);
+            // 归还连接
+            closeConnection(connection);
         }
     }
 
@@ -177,27 +626,185 @@ public class MaxComputeJdbcUtil {
      * @param resultSet ResultSet
      * @throws SQLException e
      */
-    private void buildMapByRs(List<Map<String, Object>> resultList, ResultSet resultSet) throws SQLException {
-        // 获取元数据
+    static void buildMapByRs(List<Map<String, Object>> resultList, ResultSet resultSet) throws SQLException {
+        // 获取元数据 列名只获取一次
         ResultSetMetaData metaData = resultSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        String[] columnNames = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnNames[i] = metaData.getColumnName(i + 1);
+        }
         while (resultSet.next()) {
-            // 获取列数
-            int columnCount = metaData.getColumnCount();
-            Map<String, Object> map = new HashMap<>();
+            Map<String, Object> map = new HashMap<>(columnCount * 4 / 3 + 1);
             for (int i = 0; i < columnCount; i++) {
-                String columnName = metaData.getColumnName(i + 1);
-                Object object = resultSet.getObject(columnName);
+                Object object = resultSet.getObject(i + 1);
                 // maxCompute里面的空返回的是使用\n
-                if ("\\N".equalsIgnoreCase(String.valueOf(object))) {
-                    map.put(columnName, "");
-                } else {
-                    map.put(columnName, object);
-                }
+                map.put(columnNames[i], isNullText(object) ? "" : object);
             }
             resultList.add(map);
         }
     }
 
+    /**
+     * 将ResultSet转换为实体列表 映射器按类缓存，每个结果集只按列名绑定一次
+     * @param resultSet ResultSet
+     * @param clazz 实体类
+     * @return 实体列表
+     * @throws SQLException e
+     */
+    static <T> List<T> buildBeansByRs(ResultSet resultSet, Class<T> clazz) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        String[] columnNames = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnNames[i] = metaData.getColumnName(i + 1);
+        }
+        final BeanRowMapper.Binding<T> binding = BeanRowMapper.of(clazz).bind(columnNames);
+        List<T> rows = new ArrayList<>();
+        while (resultSet.next()) {
+            final T bean = binding.newInstance();
+            for (int i = 0; i < columnCount; i++) {
+                binding.set(bean, i, resultSet.getObject(i + 1));
+            }
+            rows.add(bean);
+        }
+        return rows;
+    }
+
+    /**
+     * 将ResultSet转换为列式结果 数值和布尔列使用基本类型getter读取，不装箱
+     * @param resultSet ResultSet
+     * @return 列式结果
+     * @throws SQLException e
+     */
+    private ColumnarResult buildColumnarByRs(ResultSet resultSet) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        List<String> names = new ArrayList<>(columnCount);
+        List<ColumnVector.Kind> kinds = new ArrayList<>(columnCount);
+        for (int i = 1; i <= columnCount; i++) {
+            names.add(metaData.getColumnName(i));
+            kinds.add(toVectorKind(metaData.getColumnType(i)));
+        }
+        final ColumnarResult result = ColumnarResult.create(names, kinds, 1024);
+        while (resultSet.next()) {
+            for (int i = 0; i < columnCount; i++) {
+                final ColumnVector vector = result.getVector(i);
+                switch (vector.getKind()) {
+                    case LONG:
+                        final long longValue = resultSet.getLong(i + 1);
+                        if (resultSet.wasNull()) {
+                            vector.appendNull();
+                        } else {
+                            ((ColumnVector.LongVector) vector).appendLong(longValue);
+                        }
+                        break;
+                    case DOUBLE:
+                        final double doubleValue = resultSet.getDouble(i + 1);
+                        if (resultSet.wasNull()) {
+                            vector.appendNull();
+                        } else {
+                            ((ColumnVector.DoubleVector) vector).appendDouble(doubleValue);
+                        }
+                        break;
+                    case BOOLEAN:
+                        final boolean booleanValue = resultSet.getBoolean(i + 1);
+                        if (resultSet.wasNull()) {
+                            vector.appendNull();
+                        } else {
+                            ((ColumnVector.BooleanVector) vector).appendBoolean(booleanValue);
+                        }
+                        break;
+                    default:
+                        final Object value = resultSet.getObject(i + 1);
+                        if (value == null || isNullText(value)) {
+                            vector.appendNull();
+                        } else {
+                            vector.append(value);
+                        }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * JDBC字段类型对应的列存储类型
+     */
+    private ColumnVector.Kind toVectorKind(int sqlType) {
+        switch (sqlType) {
+            case Types.BIGINT:
+            case Types.INTEGER:
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                return ColumnVector.Kind.LONG;
+            case Types.DOUBLE:
+            case Types.FLOAT:
+            case Types.REAL:
+                return ColumnVector.Kind.DOUBLE;
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return ColumnVector.Kind.BOOLEAN;
+            default:
+                return ColumnVector.Kind.OBJECT;
+        }
+    }
+
+    /**
+     * 是否是maxCompute文本结果中的空值\N 只有字符串需要比较，避免每个值都转换为字符串
+     */
+    private static boolean isNullText(Object value) {
+        return value instanceof String && NULL_VALUE.equalsIgnoreCase((String) value);
+    }
+
+
+    /**
+     * 创建statement 设置每批拉取的行数
+     * @param connection 连接
+     * @return statement
+     */
+    private Statement createStatement(Connection connection) throws SQLException {
+        final Statement statement = connection.createStatement();
+        if (connParam.getFetchSize() != null && connParam.getFetchSize() > 0) {
+            statement.setFetchSize(connParam.getFetchSize());
+        }
+        return statement;
+    }
+
+    /**
+     * 执行查询语句 记录执行耗时、出错次数和正在执行的查询数
+     * @param statement statement
+     * @param querySql 查询sql
+     * @return ResultSet
+     */
+    private ResultSet execute(Statement statement, String querySql) throws SQLException {
+        return execute(() -> statement.executeQuery(querySql));
+    }
+
+    /**
+     * 执行预编译的查询语句 记录执行耗时、出错次数和正在执行的查询数
+     * @param statement 已设置参数的预编译语句
+     * @return ResultSet
+     */
+    private ResultSet execute(PreparedStatement statement) throws SQLException {
+        return execute(statement::executeQuery);
+    }
+
+    private ResultSet execute(CallBack.QueryCallBack query) throws SQLException {
+        final AtomicInteger inFlight = CallMetrics.inFlight(CallMetrics.JDBC);
+        inFlight.incrementAndGet();
+        final long start = System.nanoTime();
+        try {
+            final ResultSet resultSet = query.execute();
+            CallMetrics.record(CallMetrics.JDBC, "execute", start);
+            return resultSet;
+        } catch (SQLException e) {
+            CallMetrics.error(CallMetrics.JDBC, "execute", ResultCode.MAX_COMPUTE_SQL_EXEC_ERR);
+            throw e;
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
 
     private void closeStatement(Statement statement){
         if (statement != null){
@@ -209,6 +816,17 @@ public class MaxComputeJdbcUtil {
         }
     }
 
+    private void closeConnection(Connection connection){
+        if (connection != null){
+            try {
+                // 连接池中的连接 关闭即归还
+                connection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     private void closeResultSet(ResultSet resultSet){
         if (resultSet != null){
             try {
@@ -226,24 +844,104 @@ public class MaxComputeJdbcUtil {
      * @return List<Map<String, Object>>
      */
     public List<Map<String, Object>> queryData(String querySql, Integer page, Integer size){
-        List<Map<String, Object>> resultList = new ArrayList<>();
+        // 1、替换分号
+        querySql = querySql.replaceAll(";", "");
+        // 2、格式化SQL
+        int offset = (page - 1 ) * size;
+        final String execSql = String.format(PAGE_SELECT_TEMPLATE_SQL, querySql, offset, size);
+        log.info("=======>>>执行分页sql为：{}", execSql);
+        // 执行查询语句 开启结果缓存时同样走缓存
+        return queryData(execSql);
+    }
+
+
+    /**
+     * 执行分页查询
+     * @param querySql 分页查询sql
+     * @param page 页码 从1开始 第n页传n
+     * @param size 每页记录数
+     * @return 分页查询结果
+     */
+    public PageResult<Map<String, Object>> pageQueryMap(String querySql, Integer page, Integer size){
+        // 查询总数
+        final long count = queryCount(querySql);
+        if (count == 0){
+            return new PageResult<>(0L, new ArrayList<>());
+        }
+
+        // 执行分页查询 开启全表扫描
+        final List<Map<String, Object>> resultList = queryData(querySql, page, size);
+
+        return new PageResult<>(count, resultList);
+    }
+
+
+    /**
+     * 执行分页查询【单个任务】 使用窗口函数在同一个查询中统计总数，总数和当前页数据只需要执行一次任务
+     * 页码超出总页数时当前页没有数据，无法得到总数，此时才会补充执行一次统计总数的查询
+     * @param querySql 分页查询sql
+     * @param page 页码 从1开始 第n页传n
+     * @param size 每页记录数
+     * @return 分页查询结果
+     */
+    public PageResult<Map<String, Object>> pageQueryMapInOneJob(String querySql, Integer page, Integer size){
+        // 1、替换分号
+        final String baseSql = querySql.replaceAll(";", "");
+        // 2、格式化SQL
+        int offset = (page - 1 ) * size;
+        final String execSql = String.format(PAGE_WITH_COUNT_TEMPLATE_SQL, baseSql, offset, size);
+        log.info("=======>>>执行分页及统计总数sql为：{}", execSql);
+        final List<Map<String, Object>> rows = queryData(execSql);
+        if (CollectionUtils.isEmpty(rows)){
+            // 第一页没有数据说明总数为0 其他页可能是页码超出了范围
+            final long count = page <= 1 ? 0L : queryCount(baseSql);
+            return new PageResult<>(count, new ArrayList<>());
+        }
+
+        // 取出总数并从每行中移除 开启结果缓存时查询结果是只读的，复制后再移除
+        final long count = Long.parseLong(String.valueOf(rows.get(0).get(PAGE_TOTAL_COLUMN)));
+        List<Map<String, Object>> pageRows = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            final Map<String, Object> pageRow = new LinkedHashMap<>(row);
+            pageRow.remove(PAGE_TOTAL_COLUMN);
+            pageRows.add(pageRow);
+        }
+        return new PageResult<>(count, pageRows);
+    }
+
+
+    /**
+     * 执行分页查询
+     * @param querySql 分页查询sql
+     * @param page 页码 从1开始 第n页传n
+     * @param size 每页记录数
+     * @return 分页查询结果
+     */
+    public <T>PageResult<T> pageQuery(String querySql, Integer page, Integer size, Class<T> clazz){
+        // 查询总数
+        final long count = queryCount(querySql);
+        if (count == 0){
+            return new PageResult<>(0L, new ArrayList<>());
+        }
+
+        Connection connection = null;
         Statement statement = null;
         ResultSet resultSet = null;
         try {
             // 1、替换分号
             querySql = querySql.replaceAll(";", "");
             // 创建statement
-            statement = conn.createStatement();
+            connection = pool.getConnection();
+            statement = createStatement(connection);
             // 2、格式化SQL
             int offset = (page - 1 ) * size;
             final String execSql = String.format(PAGE_SELECT_TEMPLATE_SQL, querySql, offset, size);
             log.info("=======>>>执行分页sql为：{}", execSql);
             // 执行查询语句
-            resultSet = statement.executeQuery(execSql);
+            resultSet = execute(statement, execSql);
 
-            // 构建结果返回
-            buildMapByRs(resultList, resultSet);
-            return resultList;
+            // 记录按列下标直接映射为实体
+            return new PageResult<>(count, buildBeansByRs(resultSet, clazz));
         } catch (SQLException e) {
             e.printStackTrace();
             throw new BizException(ResultCode.MAX_COMPUTE_SQL_EXEC_ERR);
@@ -252,18 +950,18 @@ public class MaxComputeJdbcUtil {
             closeResultSet(resultSet);
             // 关闭statement
             closeStatement(statement);
+            // 归还连接
+            closeConnection(connection);
         }
     }
 
 
     /**
-     * 执行分页查询
+     * 查询分页sql的总记录数
      * @param querySql 分页查询sql
-     * @param page 页码 从1开始 第n页传n
-     * @param size 每页记录数
-     * @return 分页查询结果
+     * @return 总记录数
      */
-    public PageResult<Map<String, Object>> pageQueryMap(String querySql, Integer page, Integer size){
+    private long queryCount(String querySql){
         // 1、替换分号
         querySql = querySql.replaceAll(";", "");
         String countSql = String.format(PAGE_COUNT_TEMPLATE_SQL, querySql);
@@ -271,40 +969,14 @@ public class MaxComputeJdbcUtil {
         // 查询总数
         final List<Map<String, Object>> countMap = queryData(countSql);
         if (CollectionUtils.isEmpty(countMap)){
-            return new PageResult<>(0L, new ArrayList<>());
+            return 0L;
         }
 
         long count = 0L;
         for (Object value : countMap.get(0).values()) {
             count = Long.parseLong(String.valueOf(value));
         }
-
-        if (count == 0){
-            return new PageResult<>(0L, new ArrayList<>());
-        }
-
-        // 执行分页查询 开启全表扫描
-        final List<Map<String, Object>> resultList = queryData(querySql, page, size);
-
-        return new PageResult<>(count, resultList);
-    }
-
-
-    /**
-     * 执行分页查询
-     * @param querySql 分页查询sql
-     * @param page 页码 从1开始 第n页传n
-     * @param size 每页记录数
-     * @return 分页查询结果
-     */
-    public <T>PageResult<T> pageQuery(String querySql, Integer page, Integer size, Class<T> clazz){
-        final PageResult<Map<String, Object>> result = pageQueryMap(querySql, page, size);
-        List<T> rows = new ArrayList<>();
-        for (Map<String, Object> row : result.getRows()) {
-            final T t = JSONObject.parseObject(JSONObject.toJSONString(row), clazz);
-            rows.add(t);
-        }
-        return new PageResult<>(result.getTotal(), rows);
+        return count;
     }
 
 
@@ -312,25 +984,45 @@ public class MaxComputeJdbcUtil {
 
 
     /**
-     * 获取数据库的连接
+     * 从连接池获取数据库的连接 使用完毕后需要调用close归还连接池
      * @return 初始化好的连接
      */
     public Connection getConn() {
-        return conn;
+        try {
+            return pool.getConnection();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new BizException(ResultCode.MAX_COMPUTE_JDBC_DRIVE_LOAD_ERR);
+        }
     }
 
     /**
-     * 关闭连接
+     * 关闭连接池 正在使用的连接归还时关闭
      */
     public void close(){
-        try {
-            conn.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
+        if (snapshotStore != null){
+            snapshotStore.close();
         }
+        pool.close();
     }
 
 
+    public static class CallBack {
+        private interface QueryCallBack {
+            /**
+             * 执行查询
+             */
+            ResultSet execute() throws SQLException;
+        }
+
+        public interface RowCallBack {
+            /**
+             * 流式读取时每读取一行回调 key为列名，顺序与查询结果一致
+             */
+            void handle(Map<String, Object> row);
+        }
+    }
+
     public static void main(String[] args) {
         final MaxComputeJdbcConnParam connParam = new MaxComputeJdbcConnParam();
         connParam.setAliyunAccessId("您的阿里云账号aceessId");
@@ -1,20 +1,44 @@
 package com.itdl.util;
 
-import com.alibaba.fastjson.JSONObject;
 import com.aliyun.odps.*;
 import com.aliyun.odps.account.AliyunAccount;
 import com.aliyun.odps.data.Record;
 import com.aliyun.odps.task.SQLTask;
+import com.aliyun.odps.tunnel.InstanceTunnel;
+import com.aliyun.odps.tunnel.TunnelException;
+import com.aliyun.odps.tunnel.io.TunnelRecordReader;
 import com.itdl.common.base.PageResult;
 import com.itdl.common.base.ResultCode;
 import com.itdl.common.base.TableColumnMetaInfo;
 import com.itdl.common.base.TableMetaInfo;
+import com.itdl.common.base.columnar.ColumnVector;
+import com.itdl.common.base.columnar.ColumnarResult;
 import com.itdl.common.exception.BizException;
 import com.itdl.conn.param.MaxComputeSdkConnParam;
+import com.itdl.util.async.InstanceStatusPoller;
+import com.itdl.util.cache.MetaCache;
+import com.itdl.util.cache.QueryInstanceRegistry;
+import com.itdl.util.cache.QueryResultCache;
+import com.itdl.util.export.ExportOption;
+import com.itdl.util.export.ExportResult;
+import com.itdl.util.export.PipelinedFileWriter;
+import com.itdl.util.mapper.BeanRowMapper;
+import com.itdl.util.metrics.CallMetrics;
+import com.itdl.util.tunnel.DownloadOption;
+import com.itdl.util.tunnel.TableTunnelDownloader;
+import com.itdl.util.tunnel.TableTunnelUploader;
+import com.itdl.util.tunnel.TunnelRecordIterator;
+import com.itdl.util.tunnel.UploadOption;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.ObjectUtils;
+
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 /**
  * @author itdl
@@ -29,18 +53,42 @@ public class MaxComputeSdkUtil {
     private static final String FULL_SCAN_CONFIG = "odps.sql.allow.fullscan";
     /**分页查询sql模板*/
     private static final String PAGE_SELECT_TEMPLATE_SQL = "select z.* from (%s) z limit %s, %s;";
+    /**分页查询同时统计总数时 总数所在的列名*/
+    private static final String PAGE_TOTAL_COLUMN = "z_page_total";
     /**分页查询统计数量模板SQL*/
     private static final String PAGE_COUNT_TEMPLATE_SQL = "select count(1) from (%s) z;";
+    /**分页查询同时统计总数的模板SQL 窗口函数在limit之前计算，得到的是总记录数*/
+    private static final String PAGE_WITH_COUNT_TEMPLATE_SQL = "select z.*, count(1) over () as " + PAGE_TOTAL_COLUMN + " from (%s) z limit %s, %s;";
+    /**maxCompute里面的空值 文本结果中使用\N表示*/
+    private static final String NULL_VALUE = "\\N";
     /**sdk的odps客户端*/
     private final Odps odps;
 
     /**odps连接参数*/
     private final MaxComputeSdkConnParam connParam;
 
+    /**分页查询缓存的实例注册表*/
+    private final QueryInstanceRegistry instanceRegistry;
+
+    /**表列表缓存 key固定为项目名*/
+    private final MetaCache<String, List<TableMetaInfo>> tableCache;
+
+    /**表字段缓存 key为表名*/
+    private final MetaCache<String, List<TableColumnMetaInfo>> columnCache;
+
+    /**查询结果缓存 未开启时为null*/
+    private final QueryResultCache resultCache;
+
     public MaxComputeSdkUtil(MaxComputeSdkConnParam param){
         this.connParam = param;
         // 构建odps客户端
         this.odps = buildOdps();
+        this.instanceRegistry = new QueryInstanceRegistry(param.getPageInstanceTtlSeconds() * 1000, param.getPageInstanceMaxSize());
+        this.tableCache = new MetaCache<>(1, param.getMetaCacheTtlSeconds() * 1000);
+        this.columnCache = new MetaCache<>(param.getMetaCacheMaxSize(), param.getMetaCacheTtlSeconds() * 1000);
+        this.resultCache = param.getResultCacheMaxBytes() > 0
+                ? new QueryResultCache(param.getResultCacheMaxBytes(), param.getResultCacheFreshnessSeconds() * 1000, this::getTableDataVersion)
+                : null;
     }
 
     /**
@@ -72,9 +120,18 @@ public class MaxComputeSdkUtil {
     }
 
     /**
-     * 获取表信息
+     * 获取表信息 结果会缓存，超过存活时间后重新拉取
      */
     public List<TableMetaInfo> getTableInfos(){
+        final List<TableMetaInfo> cached = tableCache.get(connParam.getProjectName(),
+                k -> new MetaCache.Versioned<>(loadTableInfos(), null), null);
+        return new ArrayList<>(cached);
+    }
+
+    /**
+     * 从maxCompute拉取表信息
+     */
+    private List<TableMetaInfo> loadTableInfos(){
         final Tables tables = odps.tables();
         List<TableMetaInfo> resultTables = new ArrayList<>();
         try {
@@ -98,16 +155,74 @@ public class MaxComputeSdkUtil {
             if (errMsg.contains("ODPS-0420095: Access Denied")){
                 throw new BizException(ResultCode.MAX_COMPUTE_PROJECT_ERR);
             }
+            // 其他异常不能返回不完整的表列表 否则会被缓存
+            throw new BizException(ResultCode.MAX_COMPUTE_SQL_EXEC_ERR);
         }
         return resultTables;
     }
 
 
     /**
-     * 根据表名称获取字段列表
+     * 根据表名称获取字段列表 结果会缓存，超过存活时间后只有表的元数据修改时间变化才重新拉取
      * @return 表信息列表
      */
     public List<TableColumnMetaInfo> getFieldByTableName(String tableName){
+        final List<TableColumnMetaInfo> cached = columnCache.get(tableName, this::loadFieldByTableName, this::getTableMetaVersion);
+        return new ArrayList<>(cached);
+    }
+
+    /**
+     * 清空表和字段的元数据缓存
+     */
+    public void invalidateMetaCache(){
+        tableCache.invalidateAll();
+        columnCache.invalidateAll();
+    }
+
+    /**
+     * 移除某个表的字段缓存
+     * @param tableName 表名
+     */
+    public void invalidateMetaCache(String tableName){
+        columnCache.invalidate(tableName);
+    }
+
+    /**
+     * 获取表的元数据修改时间 作为字段缓存的版本，获取失败返回null
+     */
+    private Long getTableMetaVersion(String tableName){
+        try {
+            final Date lastMetaModifiedTime = odps.tables().get(tableName).getLastMetaModifiedTime();
+            return lastMetaModifiedTime == null ? null : lastMetaModifiedTime.getTime();
+        } catch (Exception e) {
+            log.warn("===>>获取表元数据修改时间失败：{}", tableName, e);
+            return null;
+        }
+    }
+
+    /**
+     * 获取表的最后数据修改时间 作为查询结果缓存的版本，表不存在或获取失败返回null
+     * @param tableName 表名 可以带项目名前缀
+     */
+    private Long getTableDataVersion(String tableName){
+        try {
+            final int dot = tableName.indexOf('.');
+            final Table table = dot < 0
+                    ? odps.tables().get(tableName)
+                    : odps.tables().get(tableName.substring(0, dot), tableName.substring(dot + 1));
+            final Date lastDataModifiedTime = table.getLastDataModifiedTime();
+            return lastDataModifiedTime == null ? null : lastDataModifiedTime.getTime();
+        } catch (Exception e) {
+            log.warn("===>>获取表数据修改时间失败：{}", tableName);
+            return null;
+        }
+    }
+
+    /**
+     * 从maxCompute拉取表的字段列表
+     * @return 字段列表和表的元数据修改时间
+     */
+    private MetaCache.Versioned<List<TableColumnMetaInfo>> loadFieldByTableName(String tableName){
         List<TableColumnMetaInfo> resultList = new ArrayList<>();
         try {
             final Table table = odps.tables().get(tableName);
@@ -122,7 +237,8 @@ public class MaxComputeSdkUtil {
                 final TableColumnMetaInfo info = new TableColumnMetaInfo(tableName, column.getName(), column.getComment());
                 resultList.add(info);
             }
-            return resultList;
+            final Date lastMetaModifiedTime = table.getLastMetaModifiedTime();
+            return new MetaCache.Versioned<>(resultList, lastMetaModifiedTime == null ? null : lastMetaModifiedTime.getTime());
         } catch (Exception e) {
             e.printStackTrace();
             throw new BizException(ResultCode.MAX_COMPUTE_SQL_EXEC_ERR);
@@ -140,21 +256,262 @@ public class MaxComputeSdkUtil {
      * @return List<Map<String, Object>>
      */
     public List<Map<String, Object>> queryData(String querySql, boolean fullScan){
+        return queryData(querySql, buildHints(fullScan));
+    }
+
+
+    /**
+     * 执行sql查询 使用本次查询独立的配置，不修改odps客户端的全局配置，可以在多个线程中共用一个工具类
+     * @param querySql 查询sql
+     * @param hints 本次查询的配置 如odps.sql.allow.fullscan
+     * @return List<Map<String, Object>>
+     */
+    public List<Map<String, Object>> queryData(String querySql, Map<String, String> hints){
+        if (resultCache != null){
+            // 开启了结果缓存 表数据未变化时直接返回缓存结果
+            final String hintsKey = CollectionUtils.isEmpty(hints) ? null : new TreeMap<>(hints).toString();
+            return resultCache.getOrLoad(querySql, hintsKey, () -> convertToMaps(queryRecords(querySql, hints)));
+        }
+        // 结果转换为Map
+        return convertToMaps(queryRecords(querySql, hints));
+    }
+
+
+    /**
+     * 执行sql查询 返回原始记录
+     * @param querySql 查询sql
+     * @param hints 本次查询的配置
+     * @return List<Record>
+     */
+    private List<Record> queryRecords(String querySql, Map<String, String> hints){
         try {
-            // 配置全表扫描吗
-            configFullScan(fullScan);
             // 使用任务执行SQL
-            final Instance instance = SQLTask.run(odps, querySql);
+            final Instance instance = runSql(querySql, hints);
             // 等待执行成功
-            instance.waitForSuccess();
+            waitForSuccess(instance);
             // 封装返回结果
-            List<Record> records = SQLTask.getResult(instance);
-            // 结果转换为Map
-            return buildMapByRecords(records);
+            return getResult(instance);
+        } catch (OdpsException e) {
+            e.printStackTrace();
+            throw new BizException(ResultCode.MAX_COMPUTE_SQL_EXEC_ERR);
+        }
+    }
+
+
+    /**
+     * 等待实例执行成功 由共享的轮询器查询状态，排队和运行的耗时在轮询器中记录
+     * @param instance 已提交的实例
+     */
+    private void waitForSuccess(Instance instance) throws OdpsException {
+        final AtomicInteger inFlight = CallMetrics.inFlight(CallMetrics.SDK);
+        inFlight.incrementAndGet();
+        final CompletableFuture<Instance> watching = InstanceStatusPoller.shared().watch(instance);
+        try {
+            watching.get();
+        } catch (InterruptedException e) {
+            // 取消轮询 轮询器会停止实例
+            watching.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new OdpsException("等待实例执行时被中断：" + instance.getId(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BizException) {
+                throw (BizException) e.getCause();
+            }
+            throw new OdpsException("等待实例执行出错：" + instance.getId(), e.getCause());
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * 读取执行成功的实例结果 记录读取耗时和行数
+     * @param instance 执行成功的实例
+     * @return List<Record>
+     */
+    private List<Record> getResult(Instance instance) throws OdpsException {
+        final long start = System.nanoTime();
+        try {
+            final List<Record> records = SQLTask.getResult(instance);
+            CallMetrics.record(CallMetrics.SDK, "fetch", start);
+            CallMetrics.rows(CallMetrics.SDK, "fetch", records.size());
+            return records;
+        } catch (OdpsException e) {
+            CallMetrics.error(CallMetrics.SDK, "fetch", ResultCode.MAX_COMPUTE_SQL_EXEC_ERR);
+            throw e;
+        }
+    }
+
+
+    /**
+     * 执行sql查询【列式结果】 通过InstanceTunnel读取，结果按列存储
+     * 列名只保存一份，数值和布尔列使用基本类型数组和空值位图，适合宽表和大结果集
+     * @param querySql 查询sql
+     * @param fullScan 是否开启全表扫描 如果查询多个分区数据，需要开启全表扫描
+     * @return 列式结果 需要List<Map>时使用asMaps()
+     */
+    public ColumnarResult queryColumnar(String querySql, boolean fullScan){
+        try (TunnelRecordIterator iterator = queryIterator(querySql, fullScan)) {
+            return buildColumnarByRecords(iterator);
+        }
+    }
+
+
+    /**
+     * 执行sql查询【异步】 提交后立即返回，不阻塞调用线程
+     * 实例状态由共享的轮询器统一轮询，执行成功后在读取线程池中读取结果
+     * @param querySql 查询sql
+     * @param fullScan 是否开启全表扫描 如果查询多个分区数据，需要开启全表扫描
+     * @return 查询结果的future 取消future会停止正在执行的实例
+     */
+    public CompletableFuture<List<Map<String, Object>>> queryAsync(String querySql, boolean fullScan){
+        return queryAsync(querySql, buildHints(fullScan));
+    }
+
+
+    /**
+     * 执行sql查询【异步】 使用本次查询独立的配置
+     * @param querySql 查询sql
+     * @param hints 本次查询的配置 如odps.sql.allow.fullscan
+     * @return 查询结果的future 取消future会停止正在执行的实例
+     */
+    public CompletableFuture<List<Map<String, Object>>> queryAsync(String querySql, Map<String, String> hints){
+        final Instance instance;
+        try {
+            // 使用任务执行SQL 只提交不等待
+            instance = runSql(querySql, hints);
+        } catch (OdpsException e) {
+            e.printStackTrace();
+            final CompletableFuture<List<Map<String, Object>>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new BizException(ResultCode.MAX_COMPUTE_SQL_EXEC_ERR));
+            return failed;
+        }
+        final InstanceStatusPoller poller = InstanceStatusPoller.shared();
+        final CompletableFuture<Instance> watching = poller.watch(instance);
+        final CompletableFuture<List<Map<String, Object>>> result = watching.thenApplyAsync(done -> {
+            try {
+                return fetchResult(done);
+            } catch (OdpsException e) {
+                e.printStackTrace();
+                throw new BizException(ResultCode.MAX_COMPUTE_SQL_EXEC_ERR);
+            }
+        }, poller.getFetchExecutor());
+        // 调用方取消时同时取消轮询 轮询器会停止实例
+        result.whenComplete((rows, e) -> {
+            if (result.isCancelled()) {
+                watching.cancel(true);
+            }
+        });
+        return result;
+    }
+
+
+    /**
+     * 读取执行成功的实例结果并转换为Map
+     * @param instance 执行成功的实例
+     * @return List<Map<String, Object>>
+     */
+    private List<Map<String, Object>> fetchResult(Instance instance) throws OdpsException {
+        // 封装返回结果
+        List<Record> records = getResult(instance);
+        // 结果转换为Map
+        return convertToMaps(records);
+    }
+
+
+    /**
+     * 执行sql查询【流式读取】 通过InstanceTunnel边下载边回调，内存占用与结果集大小无关
+     * @param querySql 查询sql
+     * @param fullScan 是否开启全表扫描 如果查询多个分区数据，需要开启全表扫描
+     * @param callBack 每读取一行执行一次回调
+     * @return 读取的总记录数
+     */
+    public long queryData(String querySql, boolean fullScan, CallBack.RecordCallBack callBack){
+        long rows = 0L;
+        try (TunnelRecordIterator iterator = queryIterator(querySql, fullScan)) {
+            while (iterator.hasNext()) {
+                callBack.handle(iterator.next());
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+
+    /**
+     * 执行sql查询【导出文件】 边下载边写入本地文件，下载与编码压缩在不同线程中进行，内存占用与结果集大小无关
+     * @param querySql 查询sql
+     * @param fullScan 是否开启全表扫描 如果查询多个分区数据，需要开启全表扫描
+     * @param option 导出参数
+     * @return 导出结果
+     */
+    public ExportResult exportData(String querySql, boolean fullScan, ExportOption option){
+        try (TunnelRecordIterator iterator = queryIterator(querySql, fullScan)) {
+            final List<Column> columns = iterator.getSchema().getColumns();
+            String[] columnNames = new String[columns.size()];
+            for (int i = 0; i < columnNames.length; i++) {
+                columnNames[i] = columns.get(i).getName();
+            }
+            try (PipelinedFileWriter writer = new PipelinedFileWriter(columnNames, option)) {
+                while (iterator.hasNext()) {
+                    writer.write(iterator.next().toArray());
+                }
+                return writer.finish();
+            }
+        }
+    }
+
+
+    /**
+     * 执行sql查询【流式读取】 返回基于InstanceTunnel的迭代器
+     * 调用方需要在使用完毕后关闭迭代器(读取完毕会自动关闭)
+     * @param querySql 查询sql
+     * @param fullScan 是否开启全表扫描 如果查询多个分区数据，需要开启全表扫描
+     * @return 可关闭的记录迭代器
+     */
+    public TunnelRecordIterator queryIterator(String querySql, boolean fullScan){
+        final Instance instance;
+        try {
+            // 使用任务执行SQL
+            instance = runSql(querySql, buildHints(fullScan));
+            // 等待执行成功
+            waitForSuccess(instance);
         } catch (OdpsException e) {
             e.printStackTrace();
             throw new BizException(ResultCode.MAX_COMPUTE_SQL_EXEC_ERR);
         }
+        return openInstanceReader(instance);
+    }
+
+
+    /**
+     * 打开实例结果的tunnel读取器 不受SQLTask.getResult的结果条数限制
+     * @param instance 执行成功的实例
+     * @return 可关闭的记录迭代器
+     */
+    private TunnelRecordIterator openInstanceReader(Instance instance) {
+        final long start = System.nanoTime();
+        try {
+            final InstanceTunnel.DownloadSession session = createInstanceSession(instance);
+            final long recordCount = session.getRecordCount();
+            final TunnelRecordReader reader = session.openRecordReader(0, recordCount);
+            CallMetrics.record(CallMetrics.SDK, "open_tunnel", start);
+            return new TunnelRecordIterator(reader, session.getSchema(), recordCount);
+        } catch (TunnelException | IOException e) {
+            e.printStackTrace();
+            CallMetrics.error(CallMetrics.SDK, "open_tunnel", ResultCode.MAX_COMPUTE_TUNNEL_READ_ERR);
+            throw new BizException(ResultCode.MAX_COMPUTE_TUNNEL_READ_ERR);
+        }
+    }
+
+
+    /**
+     * 创建实例结果的下载会话
+     * @param instance 执行成功的实例
+     * @return 下载会话
+     */
+    private InstanceTunnel.DownloadSession createInstanceSession(Instance instance) throws TunnelException {
+        final InstanceTunnel tunnel = new InstanceTunnel(odps);
+        return tunnel.createDownloadSession(instance.getProject(), instance.getId());
     }
 
 
@@ -167,7 +524,19 @@ public class MaxComputeSdkUtil {
      * @return List<Map<String, Object>>
      */
     public List<Map<String, Object>> queryData(String querySql, Integer page, Integer size, boolean fullScan){
-        // 重写SQl，添加limit offset, limit
+        // 调用执行SQL数据
+        return queryData(buildPageSql(querySql, page, size), fullScan);
+    }
+
+
+    /**
+     * 重写SQl，添加limit offset, limit
+     * @param querySql 查询sql
+     * @param page 页码 从1开始 第n页传n
+     * @param size 每页记录数
+     * @return 分页sql
+     */
+    private String buildPageSql(String querySql, Integer page, Integer size){
         // 1、替换分号
         querySql = querySql.replaceAll(";", "");
         // 2、格式化SQL
@@ -175,20 +544,16 @@ public class MaxComputeSdkUtil {
         // 得到执行sql
         final String execSql = String.format(PAGE_SELECT_TEMPLATE_SQL, querySql, offset, size);
         log.info("=======>>>执行分页sql为：{}", execSql);
-
-        // 调用执行SQL数据
-        return queryData(execSql, fullScan);
+        return execSql;
     }
 
 
     /**
-     * 执行分页查询
+     * 查询分页sql的总记录数
      * @param querySql 分页查询sql
-     * @param page 页码 从1开始 第n页传n
-     * @param size 每页记录数
-     * @return 分页查询结果
+     * @return 总记录数
      */
-    public PageResult<Map<String, Object>> pageQueryMap(String querySql, Integer page, Integer size){
+    private long queryCount(String querySql){
         // 1、替换分号
         querySql = querySql.replaceAll(";", "");
         String countSql = String.format(PAGE_COUNT_TEMPLATE_SQL, querySql);
@@ -196,14 +561,27 @@ public class MaxComputeSdkUtil {
         // 查询总数
         final List<Map<String, Object>> countMap = queryData(countSql, false);
         if (CollectionUtils.isEmpty(countMap)){
-            return new PageResult<>(0L, new ArrayList<>());
+            return 0L;
         }
 
         long count = 0L;
         for (Object value : countMap.get(0).values()) {
             count = Long.parseLong(String.valueOf(value));
         }
+        return count;
+    }
+
 
+    /**
+     * 执行分页查询
+     * @param querySql 分页查询sql
+     * @param page 页码 从1开始 第n页传n
+     * @param size 每页记录数
+     * @return 分页查询结果
+     */
+    public PageResult<Map<String, Object>> pageQueryMap(String querySql, Integer page, Integer size){
+        // 查询总数
+        final long count = queryCount(querySql);
         if (count == 0){
             return new PageResult<>(0L, new ArrayList<>());
         }
@@ -215,6 +593,111 @@ public class MaxComputeSdkUtil {
     }
 
 
+    /**
+     * 执行分页查询【单个任务】 使用窗口函数在同一个查询中统计总数，总数和当前页数据只需要执行一次任务
+     * 页码超出总页数时当前页没有数据，无法得到总数，此时才会补充执行一次统计总数的查询
+     * @param querySql 分页查询sql
+     * @param page 页码 从1开始 第n页传n
+     * @param size 每页记录数
+     * @return 分页查询结果
+     */
+    public PageResult<Map<String, Object>> pageQueryMapInOneJob(String querySql, Integer page, Integer size){
+        // 1、替换分号
+        final String baseSql = querySql.replaceAll(";", "");
+        // 2、格式化SQL
+        int offset = (page - 1 ) * size;
+        final String execSql = String.format(PAGE_WITH_COUNT_TEMPLATE_SQL, baseSql, offset, size);
+        log.info("=======>>>执行分页及统计总数sql为：{}", execSql);
+        final List<Map<String, Object>> rows = queryData(execSql, true);
+        if (CollectionUtils.isEmpty(rows)){
+            // 第一页没有数据说明总数为0 其他页可能是页码超出了范围
+            final long count = page <= 1 ? 0L : queryCount(baseSql);
+            return new PageResult<>(count, new ArrayList<>());
+        }
+
+        // 取出总数并从每行中移除 开启结果缓存时查询结果是只读的，复制后再移除
+        final long count = Long.parseLong(String.valueOf(rows.get(0).get(PAGE_TOTAL_COLUMN)));
+        List<Map<String, Object>> pageRows = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            final Map<String, Object> pageRow = new LinkedHashMap<>(row);
+            pageRow.remove(PAGE_TOTAL_COLUMN);
+            pageRows.add(pageRow);
+        }
+        return new PageResult<>(count, pageRows);
+    }
+
+
+    /**
+     * 执行分页查询【实例缓存】 基础SQL只执行一次，后续分页直接从缓存实例的结果tunnel中按区间读取
+     * 适用于对同一个查询反复翻页的场景，缓存的实例超过存活时间后会重新执行
+     * @param querySql 分页查询sql
+     * @param page 页码 从1开始 第n页传n
+     * @param size 每页记录数
+     * @return 分页查询结果
+     */
+    public PageResult<Map<String, Object>> pageQueryMapByInstance(String querySql, Integer page, Integer size){
+        try {
+            return readInstancePage(querySql, page, size);
+        } catch (TunnelException | IOException e) {
+            // 下载会话可能已失效 移除缓存后重新执行一次
+            log.warn("===>>读取缓存实例分页失败，重新执行查询：{}", e.getMessage());
+            instanceRegistry.invalidate(querySql);
+        }
+        try {
+            return readInstancePage(querySql, page, size);
+        } catch (TunnelException | IOException e) {
+            e.printStackTrace();
+            throw new BizException(ResultCode.MAX_COMPUTE_TUNNEL_READ_ERR);
+        }
+    }
+
+
+    /**
+     * 从缓存的实例中读取一页数据
+     */
+    private PageResult<Map<String, Object>> readInstancePage(String querySql, Integer page, Integer size) throws TunnelException, IOException {
+        final QueryInstanceRegistry.CachedInstance cached = instanceRegistry.getOrLoad(querySql, this::runForInstance);
+        final long count = cached.getRecordCount();
+        final long offset = (long) (page - 1) * size;
+        if (count == 0 || offset >= count){
+            return new PageResult<>(count, new ArrayList<>());
+        }
+
+        // 只读取当前页的区间
+        final long readSize = Math.min(size, count - offset);
+        List<Record> records = new ArrayList<>((int) readSize);
+        final long start = System.nanoTime();
+        try (TunnelRecordReader reader = cached.getSession().openRecordReader(offset, readSize)) {
+            Record record;
+            while ((record = reader.read()) != null) {
+                records.add(record);
+            }
+            CallMetrics.bytes(CallMetrics.SDK, "page_fetch", reader.getTotalBytes());
+        }
+        CallMetrics.record(CallMetrics.SDK, "page_fetch", start);
+        CallMetrics.rows(CallMetrics.SDK, "page_fetch", records.size());
+        return new PageResult<>(count, convertToMaps(records, false));
+    }
+
+
+    /**
+     * 执行基础SQL并创建结果下载会话 用于实例缓存
+     */
+    private QueryInstanceRegistry.CachedInstance runForInstance(String querySql) {
+        querySql = querySql.replaceAll(";", "") + ";";
+        log.info("=======>>>执行分页缓存实例sql为：{}", querySql);
+        try {
+            // 分页查询 开启全表扫描
+            final Instance instance = runSql(querySql, buildHints(true));
+            waitForSuccess(instance);
+            return instanceRegistry.newInstance(instance.getId(), createInstanceSession(instance));
+        } catch (OdpsException e) {
+            e.printStackTrace();
+            throw new BizException(ResultCode.MAX_COMPUTE_SQL_EXEC_ERR);
+        }
+    }
+
+
     /**
      * 执行分页查询
      * @param querySql 分页查询sql
@@ -223,13 +706,72 @@ public class MaxComputeSdkUtil {
      * @return 分页查询结果
      */
     public <T>PageResult<T> pageQuery(String querySql, Integer page, Integer size, Class<T> clazz){
-        final PageResult<Map<String, Object>> result = pageQueryMap(querySql, page, size);
-        List<T> rows = new ArrayList<>();
-        for (Map<String, Object> row : result.getRows()) {
-            final T t = JSONObject.parseObject(JSONObject.toJSONString(row), clazz);
-            rows.add(t);
+        // 查询总数
+        final long count = queryCount(querySql);
+        if (count == 0){
+            return new PageResult<>(0L, new ArrayList<>());
+        }
+
+        // 执行分页查询 开启全表扫描 记录按列下标直接映射为实体
+        final List<Record> records = queryRecords(buildPageSql(querySql, page, size), buildHints(true));
+        final long start = System.nanoTime();
+        final List<T> rows = buildBeansByRecords(records, clazz);
+        CallMetrics.record(CallMetrics.SDK, "convert_bean", start);
+        return new PageResult<>(count, rows);
+    }
+
+
+    /**
+     * 批量上传数据 使用一个TableTunnel上传会话，多线程写入多个block后统一提交
+     * 相比逐条执行insert语句，百万级数据只需要一次上传会话
+     * @param tableName 表名
+     * @param rows 数据 key为字段名，表中有但数据中没有的字段写入null
+     * @param option 上传参数 分区、并发数、压缩算法等
+     * @return 上传的总行数
+     */
+    public long uploadData(String tableName, Iterator<Map<String, Object>> rows, UploadOption option){
+        return new TableTunnelUploader(odps).upload(tableName, rows, option);
+    }
+
+
+    /**
+     * 批量上传数据
+     * @param tableName 表名
+     * @param rows 数据流 上传完成后关闭
+     * @param option 上传参数 分区、并发数、压缩算法等
+     * @return 上传的总行数
+     */
+    public long uploadData(String tableName, Stream<Map<String, Object>> rows, UploadOption option){
+        try (Stream<Map<String, Object>> stream = rows) {
+            return uploadData(tableName, stream.iterator(), option);
         }
-        return new PageResult<>(result.getTotal(), rows);
+    }
+
+
+    /**
+     * 并发下载整表或分区 不执行SQL，直接通过TableTunnel按区间多线程读取
+     * @param tableName 表名
+     * @param partition 分区 如pt='20221010' 非分区表或下载整表时不传
+     * @param threads 并发线程数
+     * @param ordered true按记录顺序回调 false谁先下载完谁先回调
+     * @param callBack 每个区间的回调 在调用线程中执行，不需要线程安全
+     * @return 表或分区的总记录数
+     */
+    public long downloadTable(String tableName, String partition, int threads, boolean ordered, TableTunnelDownloader.BatchCallBack callBack){
+        return new TableTunnelDownloader(odps).download(tableName, partition, threads, ordered, callBack);
+    }
+
+
+    /**
+     * 并发下载整表或分区 可以设置每批记录数和在途批次数
+     * 最坏情况下内存中同时保留 在途批次数 × 每批记录数 条记录
+     * @param tableName 表名
+     * @param option 下载参数
+     * @param callBack 每个区间的回调 在调用线程中执行，不需要线程安全
+     * @return 表或分区的总记录数
+     */
+    public long downloadTable(String tableName, DownloadOption option, TableTunnelDownloader.BatchCallBack callBack){
+        return new TableTunnelDownloader(odps).download(tableName, option, callBack);
     }
 
 
@@ -240,14 +782,20 @@ public class MaxComputeSdkUtil {
      */
     public String getSqlCreateDesc(String tableName) {
         final Table table = odps.tables().get(tableName);
+        // 获取表结构
+        return buildCreateDdl(tableName, table.getSchema());
+    }
+
+    /**
+     * 根据表结构拼接建表语句
+     * @param tableName 表名
+     * @param tableSchema 表结构
+     * @return 建表语句
+     */
+    static String buildCreateDdl(String tableName, TableSchema tableSchema) {
         // 建表语句
         StringBuilder mssqlDDL = new StringBuilder();
 
-        // 获取表结构
-        TableSchema tableSchema = table.getSchema();
-        // 获取表名表注释
-        String tableComment = table.getComment();
-
         //获取列名列注释
         List<Column> columns = tableSchema.getColumns();
         /*组装成mssql的DDL*/
@@ -298,20 +846,59 @@ public class MaxComputeSdkUtil {
 
 
     /**
-     * 开启和移除全表扫描配置
+     * 使用本次查询的配置提交SQL任务
+     * 配置随任务一起提交，不修改odps客户端的全局配置，多个线程并发查询时互不影响
+     * @param querySql 查询sql
+     * @param hints 本次查询的配置
+     * @return 已提交的实例
+     */
+    private Instance runSql(String querySql, Map<String, String> hints) throws OdpsException {
+        final long start = System.nanoTime();
+        try {
+            final Instance instance = SQLTask.run(odps, odps.getDefaultProject(), querySql, hints, null);
+            CallMetrics.record(CallMetrics.SDK, "submit", start);
+            return instance;
+        } catch (OdpsException e) {
+            CallMetrics.error(CallMetrics.SDK, "submit", ResultCode.MAX_COMPUTE_SQL_EXEC_ERR);
+            throw e;
+        }
+    }
+
+    /**
+     * 构建本次查询的配置
      * @param fullScan 是否全表扫描
+     * @return 本次查询的配置
      */
-    private void configFullScan(boolean fullScan) {
+    private Map<String, String> buildHints(boolean fullScan) {
+        Map<String, String> hints = new HashMap<>();
         if (fullScan){
             // 开启全表扫描配置
-            Map<String, String> config = new HashMap<>();
             log.info("===>>开启全表扫描， 查询多个分区数据");
-            config.put(FULL_SCAN_CONFIG, "true");
-            odps.setGlobalSettings(config);
-        }else {
-            // 移除全表扫描配置
-            odps.getGlobalSettings().remove(FULL_SCAN_CONFIG);
+            hints.put(FULL_SCAN_CONFIG, "true");
         }
+        return hints;
+    }
+
+    /**
+     * 将查询结果转换为Map 记录转换耗时
+     * @param records sql查询结果
+     * @return 返回结果
+     */
+    private List<Map<String, Object>> convertToMaps(List<Record> records) {
+        return convertToMaps(records, true);
+    }
+
+    /**
+     * 将查询结果转换为Map 记录转换耗时
+     * @param records sql查询结果
+     * @param textResult true为SQLTask.getResult的文本结果 false为tunnel读取的记录
+     * @return 返回结果
+     */
+    private List<Map<String, Object>> convertToMaps(List<Record> records, boolean textResult) {
+        final long start = System.nanoTime();
+        final List<Map<String, Object>> rows = buildMapByRecords(records, textResult);
+        CallMetrics.record(CallMetrics.SDK, "convert", start);
+        return rows;
     }
 
     /**
@@ -319,26 +906,136 @@ public class MaxComputeSdkUtil {
      * @param records sql查询结果
      * @return 返回结果
      */
-    private List<Map<String, Object>> buildMapByRecords(List<Record> records) {
-        List<Map<String, Object>> listMap = new ArrayList<>();
+    static List<Map<String, Object>> buildMapByRecords(List<Record> records) {
+        return buildMapByRecords(records, true);
+    }
+
+    /**
+     * 将List<Record>准换为List<Map></> 空值统一返回空字符串
+     * 文本结果中的空值是\N，tunnel读取的记录是真正的null，字符串"\N"是正常的值
+     * @param records sql查询结果
+     * @param textResult true为SQLTask.getResult的文本结果 false为tunnel读取的记录
+     * @return 返回结果
+     */
+    static List<Map<String, Object>> buildMapByRecords(List<Record> records, boolean textResult) {
+        List<Map<String, Object>> listMap = new ArrayList<>(records.size());
         for (Record record : records) {
             Column[] columns = record.getColumns();
-            Map<String, Object> map = new LinkedHashMap<>();
-            for (Column column : columns) {
-                String name = column.getName();
-                Object value = record.get(name);
+            Map<String, Object> map = new LinkedHashMap<>(columns.length * 4 / 3 + 1);
+            for (int i = 0; i < columns.length; i++) {
+                Object value = readValue(record, i);
                 // maxCompute里面的空返回的是使用\n
-                if ("\\N".equalsIgnoreCase(String.valueOf(value))) {
-                    map.put(name, "");
-                } else {
-                    map.put(name, value);
-                }
+                final boolean isNull = textResult ? isNullText(value) : value == null;
+                map.put(columns[i].getName(), isNull ? "" : value);
             }
             listMap.add(map);
         }
         return listMap;
     }
 
+    /**
+     * 将List<Record>转换为实体列表 映射器按类缓存，每个结果集只按列名绑定一次
+     * @param records sql查询结果
+     * @param clazz 实体类
+     * @return 实体列表
+     */
+    static <T> List<T> buildBeansByRecords(List<Record> records, Class<T> clazz) {
+        List<T> rows = new ArrayList<>(records.size());
+        if (records.isEmpty()) {
+            return rows;
+        }
+        final Column[] columns = records.get(0).getColumns();
+        String[] columnNames = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            columnNames[i] = columns[i].getName();
+        }
+        final BeanRowMapper.Binding<T> binding = BeanRowMapper.of(clazz).bind(columnNames);
+        for (Record record : records) {
+            final T bean = binding.newInstance();
+            for (int i = 0; i < columnNames.length; i++) {
+                binding.set(bean, i, readValue(record, i));
+            }
+            rows.add(bean);
+        }
+        return rows;
+    }
+
+    /**
+     * 将流式读取的记录转换为列式结果 列名只保存一份，数值和布尔列使用基本类型数组
+     * tunnel读取的记录中空值就是null，字符串"\N"是正常的值
+     * @param iterator 记录迭代器
+     * @return 列式结果
+     */
+    private ColumnarResult buildColumnarByRecords(TunnelRecordIterator iterator) {
+        final List<Column> columns = iterator.getSchema().getColumns();
+        List<String> names = new ArrayList<>(columns.size());
+        List<ColumnVector.Kind> kinds = new ArrayList<>(columns.size());
+        for (Column column : columns) {
+            names.add(column.getName());
+            kinds.add(toVectorKind(column.getTypeInfo().getOdpsType()));
+        }
+        final int capacity = (int) Math.min(iterator.getRecordCount(), Integer.MAX_VALUE - 8);
+        final ColumnarResult result = ColumnarResult.create(names, kinds, capacity);
+        final int columnCount = result.getColumnCount();
+        while (iterator.hasNext()) {
+            final Record record = iterator.next();
+            for (int i = 0; i < columnCount; i++) {
+                final Object value = readValue(record, i);
+                final ColumnVector vector = result.getVector(i);
+                if (value == null) {
+                    vector.appendNull();
+                } else {
+                    vector.append(value);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * maxCompute字段类型对应的列存储类型
+     */
+    private ColumnVector.Kind toVectorKind(OdpsType type) {
+        switch (type) {
+            case BIGINT:
+            case INT:
+            case SMALLINT:
+            case TINYINT:
+                return ColumnVector.Kind.LONG;
+            case DOUBLE:
+            case FLOAT:
+                return ColumnVector.Kind.DOUBLE;
+            case BOOLEAN:
+                return ColumnVector.Kind.BOOLEAN;
+            default:
+                return ColumnVector.Kind.OBJECT;
+        }
+    }
+
+    /**
+     * 读取记录的字段值 tunnel读取的STRING列为字节数组，按字符串解码
+     */
+    private static Object readValue(Record record, int index) {
+        final Object value = record.get(index);
+        return value instanceof byte[] ? record.getString(index) : value;
+    }
+
+    /**
+     * 是否是maxCompute文本结果中的空值\N 只有字符串需要比较，避免每个值都转换为字符串
+     */
+    private static boolean isNullText(Object value) {
+        return value instanceof String && NULL_VALUE.equalsIgnoreCase((String) value);
+    }
+
+    public static class CallBack {
+        public interface RecordCallBack {
+            /**
+             * 流式读取时每读取一行记录回调
+             */
+            void handle(Record record);
+        }
+    }
+
     public static void main(String[] args) {
         // 构建连接参数
         final MaxComputeSdkConnParam connParam = new MaxComputeSdkConnParam();
@@ -361,12 +1058,5 @@ public class MaxComputeSdkUtil {
         for (TableColumnMetaInfo field : fields) {
             System.out.println(field.getFieldName() + "-" + field.getComment());
         }
-
-//        // 分页查询数据
-//        final PageResult<Map<String, Object>> page = sdkUtil.pageQueryMap("select * from ods_cust;", 2, 10);
-//        System.out.println(page.getTotal());
-//        for (Map<String, Object> map : page.getRows()) {
-//            System.out.println(JSONObject.toJSONString(map));
-//        }
     }
 }
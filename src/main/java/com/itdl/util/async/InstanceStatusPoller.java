@@ -0,0 +1,211 @@
+package com.itdl.util.async;
+
+import com.aliyun.odps.Instance;
+import com.aliyun.odps.OdpsException;
+import com.itdl.common.base.ResultCode;
+import com.itdl.common.exception.BizException;
+import com.itdl.util.metrics.CallMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Description 共享的实例状态轮询器，所有异步查询的实例由少量调度线程统一定时，
+ * 查询状态的阻塞请求在有界的工作线程池中执行，实例很多时轮询间隔也不会被互相拖慢
+ * 轮询间隔从最小间隔开始按倍数增长到最大间隔，短查询能很快返回，长查询也不会频繁请求
+ * 任务排队期间查询任务状态，任务不再排队后查询实例状态，每次轮询只发一个请求，同时得到排队(queue)和运行(run)的耗时
+ * @Author itdl
+ * @Date 2026/10/17 03:13
+ */
+@Slf4j
+public class InstanceStatusPoller {
+    /**首次轮询间隔 毫秒*/
+    private static final long MIN_INTERVAL_MILLIS = 200L;
+    /**最大轮询间隔 毫秒*/
+    private static final long MAX_INTERVAL_MILLIS = 5000L;
+    /**每次未完成后轮询间隔的增长倍数*/
+    private static final double BACKOFF_MULTIPLIER = 1.5;
+    /**定时线程数 只负责到点提交轮询任务，不执行请求*/
+    private static final int SCHEDULE_THREADS = 1;
+    /**查询实例状态连续失败的最大重试次数 超过后实例按失败处理*/
+    private static final int MAX_STATUS_RETRIES = 3;
+
+    private static final InstanceStatusPoller SHARED = new InstanceStatusPoller();
+
+    /**轮询定时线程池*/
+    private final ScheduledExecutorService scheduler;
+    /**查询实例状态的线程池 查询状态是阻塞的http请求，不能占用定时线程*/
+    private final ExecutorService statusExecutor;
+    /**实例执行完成后读取结果的线程池 读取结果是阻塞IO，不能占用轮询线程*/
+    private final ExecutorService fetchExecutor;
+    /**正在轮询的实例数量*/
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private InstanceStatusPoller() {
+        this.scheduler = Executors.newScheduledThreadPool(SCHEDULE_THREADS, daemonFactory("odps-instance-poller"));
+        final int statusThreads = Math.max(8, Runtime.getRuntime().availableProcessors() * 2);
+        this.statusExecutor = new ThreadPoolExecutor(statusThreads, statusThreads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), daemonFactory("odps-instance-status"));
+        ((ThreadPoolExecutor) statusExecutor).allowCoreThreadTimeOut(true);
+        final int fetchThreads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        this.fetchExecutor = new ThreadPoolExecutor(fetchThreads, fetchThreads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), daemonFactory("odps-result-fetch"));
+        ((ThreadPoolExecutor) fetchExecutor).allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 获取全局共享的轮询器
+     */
+    public static InstanceStatusPoller shared() {
+        return SHARED;
+    }
+
+    /**
+     * 注册一个已提交的实例，在实例结束后完成返回的future
+     * 实例执行成功时future正常完成，失败时以BizException异常完成；取消future会停止实例
+     * @param instance 已提交的实例
+     * @return 实例执行成功后完成的future
+     */
+    public CompletableFuture<Instance> watch(Instance instance) {
+        final Watch watch = new Watch(instance);
+        inFlight.incrementAndGet();
+        watch.future.whenComplete((r, e) -> {
+            inFlight.decrementAndGet();
+            if (e == null) {
+                CallMetrics.record(CallMetrics.SDK, "run", watch.runStart);
+            } else if (!watch.future.isCancelled()) {
+                CallMetrics.error(CallMetrics.SDK, watch.running ? "run" : "queue", ResultCode.MAX_COMPUTE_SQL_EXEC_ERR);
+            }
+            if (watch.future.isCancelled()) {
+                stopQuietly(instance);
+            }
+        });
+        schedule(watch, MIN_INTERVAL_MILLIS);
+        return watch.future;
+    }
+
+    /**
+     * 读取结果使用的线程池
+     */
+    public Executor getFetchExecutor() {
+        return fetchExecutor;
+    }
+
+    /**
+     * 当前正在轮询的实例数量
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 到点后把轮询提交到状态线程池 定时线程本身不发请求
+     */
+    private void schedule(Watch watch, long delayMillis) {
+        watch.delayMillis = delayMillis;
+        scheduler.schedule(() -> {
+            try {
+                statusExecutor.execute(() -> poll(watch));
+            } catch (RejectedExecutionException e) {
+                watch.future.completeExceptionally(new BizException(ResultCode.SYSTEM_INNER_ERR));
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll(Watch watch) {
+        final Instance instance = watch.instance;
+        final CompletableFuture<Instance> future = watch.future;
+        if (future.isDone()) {
+            return;
+        }
+        try {
+            if (!watch.running) {
+                // 排队阶段只查询任务状态 任务不再排队时记录排队耗时，接着查询实例状态
+                if (isWaiting(instance)) {
+                    watch.failures = 0;
+                    schedule(watch, Math.min(MAX_INTERVAL_MILLIS, (long) (watch.delayMillis * BACKOFF_MULTIPLIER)));
+                    return;
+                }
+                watch.runStart = System.nanoTime();
+                watch.running = true;
+                CallMetrics.record(CallMetrics.SDK, "queue", watch.start);
+            }
+            instance.reload();
+            watch.failures = 0;
+            if (instance.getStatus() != Instance.Status.TERMINATED) {
+                // 未结束 增大间隔后继续轮询
+                schedule(watch, Math.min(MAX_INTERVAL_MILLIS, (long) (watch.delayMillis * BACKOFF_MULTIPLIER)));
+                return;
+            }
+            if (instance.isSuccessful()) {
+                future.complete(instance);
+            } else {
+                log.error("===>>实例执行失败：{}，结果：{}", instance.getId(), instance.getTaskResults());
+                future.completeExceptionally(new BizException(ResultCode.MAX_COMPUTE_SQL_EXEC_ERR));
+            }
+        } catch (OdpsException e) {
+            // 网络抖动等临时错误 按原间隔重试几次再判定失败
+            if (++watch.failures <= MAX_STATUS_RETRIES) {
+                log.warn("===>>查询实例状态失败，第{}次重试：{}，{}", watch.failures, instance.getId(), e.getMessage());
+                schedule(watch, watch.delayMillis);
+                return;
+            }
+            e.printStackTrace();
+            future.completeExceptionally(new BizException(ResultCode.MAX_COMPUTE_SQL_EXEC_ERR));
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 实例中是否还有排队中的任务
+     */
+    private static boolean isWaiting(Instance instance) throws OdpsException {
+        for (Instance.TaskStatus status : instance.getTaskStatus().values()) {
+            if (status.getStatus() == Instance.TaskStatus.Status.WAITING) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void stopQuietly(Instance instance) {
+        try {
+            instance.stop();
+        } catch (OdpsException e) {
+            log.warn("===>>停止实例失败：{}", instance.getId(), e);
+        }
+    }
+
+    private static ThreadFactory daemonFactory(String prefix) {
+        final AtomicInteger index = new AtomicInteger();
+        return r -> {
+            final Thread thread = new Thread(r, prefix + "-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 一个正在轮询的实例 同一时刻只有一个轮询任务在处理它，除完成回调读取的字段外不需要同步
+     */
+    private static class Watch {
+        private final Instance instance;
+        private final CompletableFuture<Instance> future = new CompletableFuture<>();
+        /**注册的时间 System.nanoTime()*/
+        private final long start = System.nanoTime();
+        /**任务结束排队的时间 System.nanoTime()*/
+        private long runStart;
+        /**任务是否已结束排队 完成回调可能在其他线程中读取*/
+        private volatile boolean running;
+        /**当前的轮询间隔 毫秒*/
+        private long delayMillis;
+        /**连续查询状态失败的次数*/
+        private int failures;
+
+        private Watch(Instance instance) {
+            this.instance = instance;
+        }
+    }
+}
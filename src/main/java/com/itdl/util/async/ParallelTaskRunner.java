@@ -0,0 +1,165 @@
+package com.itdl.util.async;
+
+import com.itdl.common.base.ResultCode;
+import com.itdl.common.exception.BizException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Description 有界并发任务执行器，按指定并发数执行任务，回调统一在调用线程中执行，回调本身不需要线程安全
+ * 同时提交的任务数不超过并发数的若干倍，避免结果堆积在内存中；单个任务失败不影响其他任务
+ * @Author itdl
+ * @Date 2026/10/17 03:20
+ */
+@Slf4j
+public class ParallelTaskRunner {
+    /**同时在途的任务数为并发数的倍数*/
+    private static final int WINDOW_MULTIPLIER = 4;
+
+    private ParallelTaskRunner() {
+    }
+
+    /**
+     * 并发执行任务
+     * @param inputs 任务输入
+     * @param task 任务
+     * @param concurrency 并发数
+     * @param ordered true按输入顺序回调 false按完成顺序回调
+     * @param threadPrefix 线程名前缀
+     * @param callBack 回调
+     */
+    public static <I, O> void run(List<I> inputs, Task<I, O> task, int concurrency, boolean ordered,
+                                  String threadPrefix, CallBack<I, O> callBack) {
+        run(inputs, task, concurrency, 0, ordered, threadPrefix, callBack);
+    }
+
+    /**
+     * 并发执行任务 指定同时在途的任务数
+     * 按顺序回调时已完成的结果要等前面的任务，内存中最多同时保留window个任务的结果
+     * @param inputs 任务输入
+     * @param task 任务
+     * @param concurrency 并发数
+     * @param window 同时在途(执行中和已完成等待回调)的任务数上限 小于等于0时为并发数的4倍
+     * @param ordered true按输入顺序回调 false按完成顺序回调
+     * @param threadPrefix 线程名前缀
+     * @param callBack 回调
+     */
+    public static <I, O> void run(List<I> inputs, Task<I, O> task, int concurrency, int window, boolean ordered,
+                                  String threadPrefix, CallBack<I, O> callBack) {
+        concurrency = Math.max(1, concurrency);
+        final AtomicInteger index = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(concurrency, r -> {
+            final Thread thread = new Thread(r, threadPrefix + "-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (window <= 0) {
+            window = concurrency * WINDOW_MULTIPLIER;
+        }
+        try {
+            if (ordered) {
+                runOrdered(inputs, task, window, executor, callBack);
+            } else {
+                runUnordered(inputs, task, window, executor, callBack);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BizException(ResultCode.SYSTEM_INNER_ERR);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static <I, O> void runOrdered(List<I> inputs, Task<I, O> task, int window, ExecutorService executor,
+                                          CallBack<I, O> callBack) throws InterruptedException {
+        final Deque<Future<Outcome<I, O>>> inFlight = new ArrayDeque<>();
+        final Iterator<I> iterator = inputs.iterator();
+        while (iterator.hasNext() || !inFlight.isEmpty()) {
+            while (iterator.hasNext() && inFlight.size() < window) {
+                inFlight.addLast(executor.submit(wrap(iterator.next(), task)));
+            }
+            deliver(await(inFlight.pollFirst()), callBack);
+        }
+    }
+
+    private static <I, O> void runUnordered(List<I> inputs, Task<I, O> task, int window, ExecutorService executor,
+                                            CallBack<I, O> callBack) throws InterruptedException {
+        final CompletionService<Outcome<I, O>> completionService = new ExecutorCompletionService<>(executor);
+        final Iterator<I> iterator = inputs.iterator();
+        int inFlight = 0;
+        while (iterator.hasNext() || inFlight > 0) {
+            while (iterator.hasNext() && inFlight < window) {
+                completionService.submit(wrap(iterator.next(), task));
+                inFlight++;
+            }
+            deliver(await(completionService.take()), callBack);
+            inFlight--;
+        }
+    }
+
+    private static <I, O> Callable<Outcome<I, O>> wrap(I input, Task<I, O> task) {
+        return () -> {
+            try {
+                return new Outcome<>(input, task.execute(input), null);
+            } catch (Exception e) {
+                return new Outcome<>(input, null, e);
+            }
+        };
+    }
+
+    private static <I, O> Outcome<I, O> await(Future<Outcome<I, O>> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            // 任务内部已捕获异常 不会走到这里
+            throw new BizException(ResultCode.SYSTEM_INNER_ERR);
+        }
+    }
+
+    private static <I, O> void deliver(Outcome<I, O> outcome, CallBack<I, O> callBack) {
+        if (outcome.error == null) {
+            callBack.onSuccess(outcome.input, outcome.output);
+        } else {
+            callBack.onError(outcome.input, outcome.error);
+        }
+    }
+
+    private static class Outcome<I, O> {
+        private final I input;
+        private final O output;
+        private final Exception error;
+
+        Outcome(I input, O output, Exception error) {
+            this.input = input;
+            this.output = output;
+            this.error = error;
+        }
+    }
+
+    public interface Task<I, O> {
+        /**
+         * 执行单个任务
+         */
+        O execute(I input) throws Exception;
+    }
+
+    public interface CallBack<I, O> {
+        /**
+         * 任务执行成功回调
+         */
+        void onSuccess(I input, O output);
+
+        /**
+         * 任务执行失败回调 默认只记录日志
+         */
+        default void onError(I input, Exception e) {
+            log.error("===>>任务执行失败：{}", input, e);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.itdl.util.cache;
+
+import com.itdl.common.base.TableColumnMetaInfo;
+import com.itdl.common.base.TableMetaInfo;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * @Description 表和字段元数据的本地二进制快照，文件以只读方式映射到内存
+ * 加载时只解析表目录，字段在第一次访问某张表时才从映射区解码，启动时无需重新拉取元数据
+ * 文件格式：魔数、格式版本、生成时间、项目名、表数量、字段区起始位置、文件长度，
+ * 然后是表目录(表名、注释、修改时间、字段偏移)，最后是按表存放的字段区
+ * @Author itdl
+ * @Date 2026/10/17 03:41
+ */
+public final class CatalogSnapshot {
+    /**文件魔数 MCCS*/
+    private static final int MAGIC = 0x4D434353;
+    /**文件格式版本 格式变化时加一，旧版本文件直接丢弃*/
+    private static final int FORMAT_VERSION = 1;
+    /**没有修改时间时写入的值*/
+    private static final long NO_VERSION = -1L;
+    /**表目录每项的最小字节数*/
+    private static final int DIRECTORY_ENTRY_MIN_BYTES = 4 + 4 + 8 + 4;
+    /**每个字段的最小字节数*/
+    private static final int COLUMN_MIN_BYTES = 4 + 4 + 4 + 4;
+
+    /**映射的文件内容 只读，访问时使用duplicate保证线程安全*/
+    private final ByteBuffer buffer;
+    private final String projectName;
+    private final long createdAt;
+    /**字段区在文件中的起始位置*/
+    private final int columnsStart;
+    private final List<TableMetaInfo> tables;
+    /**表名对应的字段偏移 相对字段区起始位置*/
+    private final Map<String, Integer> columnOffsets;
+    /**表名对应的最后修改时间*/
+    private final Map<String, Long> tableVersions;
+
+    private CatalogSnapshot(ByteBuffer buffer, String projectName, long createdAt, int columnsStart, List<TableMetaInfo> tables,
+                            Map<String, Integer> columnOffsets, Map<String, Long> tableVersions) {
+        this.buffer = buffer;
+        this.projectName = projectName;
+        this.createdAt = createdAt;
+        this.columnsStart = columnsStart;
+        this.tables = tables;
+        this.columnOffsets = columnOffsets;
+        this.tableVersions = tableVersions;
+    }
+
+    /**
+     * 映射并加载快照文件 只解析表目录
+     * @param file 快照文件
+     * @return 快照
+     * @throws IOException 文件不存在、格式版本不一致、文件不完整或内容损坏
+     */
+    public static CatalogSnapshot load(File file) throws IOException {
+        final MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        final ByteBuffer buffer = mapped.asReadOnlyBuffer();
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+            throw new IOException("不是元数据快照文件：" + file.getAbsolutePath());
+        }
+        try {
+            return parse(buffer, file);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            // 长度字段损坏 读取越界
+            throw new IOException("元数据快照文件已损坏：" + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * 解析魔数之后的文件头和表目录
+     */
+    private static CatalogSnapshot parse(ByteBuffer buffer, File file) throws IOException {
+        final int formatVersion = buffer.getInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("元数据快照格式版本不一致：" + formatVersion);
+        }
+        final long createdAt = buffer.getLong();
+        final String projectName = readString(buffer);
+        final int tableCount = buffer.getInt();
+        final int columnsStart = buffer.getInt();
+        final int length = buffer.getInt();
+        if (length != buffer.limit()) {
+            throw new IOException("元数据快照文件不完整：" + file.getAbsolutePath());
+        }
+        // 每个目录项至少包含两个字符串长度、修改时间和字段偏移
+        if (tableCount < 0 || columnsStart < buffer.position() || columnsStart > length
+                || tableCount > (columnsStart - buffer.position()) / DIRECTORY_ENTRY_MIN_BYTES) {
+            throw new IOException("元数据快照文件已损坏：" + file.getAbsolutePath());
+        }
+        final List<TableMetaInfo> tables = new ArrayList<>(tableCount);
+        final Map<String, Integer> columnOffsets = new HashMap<>(tableCount * 4 / 3 + 1);
+        final Map<String, Long> tableVersions = new HashMap<>(tableCount * 4 / 3 + 1);
+        for (int i = 0; i < tableCount; i++) {
+            final String tableName = readString(buffer);
+            final String comment = readString(buffer);
+            final long version = buffer.getLong();
+            final int offset = buffer.getInt();
+            tables.add(new TableMetaInfo(tableName, comment));
+            if (version != NO_VERSION) {
+                tableVersions.put(tableName, version);
+            }
+            if (offset >= 0) {
+                if (offset > length - columnsStart - 4) {
+                    throw new IOException("元数据快照文件已损坏：" + file.getAbsolutePath());
+                }
+                columnOffsets.put(tableName, offset);
+            }
+        }
+        return new CatalogSnapshot(buffer, projectName, createdAt, columnsStart, Collections.unmodifiableList(tables),
+                columnOffsets, tableVersions);
+    }
+
+    /**
+     * 写入快照文件 先写临时文件再原子替换，读取方不会看到写了一半的文件
+     * @param file 快照文件
+     * @param projectName 项目名
+     * @param createdAt 快照生成时间 应为开始拉取元数据的时间，在这之后的修改不一定包含在快照中
+     * @param tables 表列表
+     * @param tableVersions 表的最后修改时间
+     * @param fields 按表名分组的字段 没有字段的表只写入目录
+     */
+    public static void write(File file, String projectName, long createdAt, List<TableMetaInfo> tables, Map<String, Long> tableVersions,
+                             Map<String, List<TableColumnMetaInfo>> fields) throws IOException {
+        // 先写字段区 记录每张表的偏移
+        final ByteArrayOutputStream columnBytes = new ByteArrayOutputStream(64 * 1024);
+        final DataOutputStream columnOut = new DataOutputStream(columnBytes);
+        final int[] offsets = new int[tables.size()];
+        for (int i = 0; i < tables.size(); i++) {
+            final List<TableColumnMetaInfo> columns = fields.get(tables.get(i).getTableName());
+            if (columns == null) {
+                offsets[i] = -1;
+                continue;
+            }
+            offsets[i] = columnOut.size();
+            columnOut.writeInt(columns.size());
+            for (TableColumnMetaInfo column : columns) {
+                writeString(columnOut, column.getFieldName());
+                writeString(columnOut, column.getComment());
+                writeString(columnOut, column.getDataType());
+                columnOut.writeInt(column.getOrdinalPosition() == null ? 0 : column.getOrdinalPosition());
+            }
+        }
+        columnOut.flush();
+
+        // 再写表目录
+        final ByteArrayOutputStream directoryBytes = new ByteArrayOutputStream(64 * 1024);
+        final DataOutputStream directoryOut = new DataOutputStream(directoryBytes);
+        for (int i = 0; i < tables.size(); i++) {
+            final TableMetaInfo table = tables.get(i);
+            writeString(directoryOut, table.getTableName());
+            writeString(directoryOut, table.getComment());
+            final Long version = tableVersions.get(table.getTableName());
+            directoryOut.writeLong(version == null ? NO_VERSION : version);
+            directoryOut.writeInt(offsets[i]);
+        }
+        directoryOut.flush();
+
+        final byte[] project = projectName == null ? null : projectName.getBytes(StandardCharsets.UTF_8);
+        final int headerLength = 4 + 4 + 8 + 4 + (project == null ? 0 : project.length) + 4 + 4 + 4;
+        final int columnsStart = headerLength + directoryBytes.size();
+        final int length = columnsStart + columnBytes.size();
+
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("创建快照目录失败：" + parent.getAbsolutePath());
+        }
+        final File temp = new File(parent, file.getName() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(createdAt);
+            writeString(out, projectName);
+            out.writeInt(tables.size());
+            out.writeInt(columnsStart);
+            out.writeInt(length);
+            directoryBytes.writeTo(out);
+            columnBytes.writeTo(out);
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 获取表列表 不可修改
+     */
+    public List<TableMetaInfo> getTables() {
+        return tables;
+    }
+
+    /**
+     * 获取表的字段列表 从映射区解码
+     * @param tableName 表名
+     * @return 字段列表 快照中没有该表的字段或字段区已损坏时返回null
+     */
+    public List<TableColumnMetaInfo> getColumns(String tableName) {
+        final Integer offset = columnOffsets.get(tableName);
+        if (offset == null) {
+            return null;
+        }
+        final ByteBuffer view = buffer.duplicate();
+        view.position(columnsStart + offset);
+        try {
+            final int count = view.getInt();
+            if (count < 0 || count > view.remaining() / COLUMN_MIN_BYTES) {
+                return null;
+            }
+            final List<TableColumnMetaInfo> columns = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final TableColumnMetaInfo column = new TableColumnMetaInfo(tableName, readString(view), readString(view));
+                column.setDataType(readString(view));
+                column.setOrdinalPosition(view.getInt());
+                columns.add(column);
+            }
+            return columns;
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 获取表的最后修改时间
+     */
+    public Long getTableVersion(String tableName) {
+        return tableVersions.get(tableName);
+    }
+
+    /**
+     * 获取所有表的最后修改时间 不可修改
+     */
+    public Map<String, Long> getTableVersions() {
+        return Collections.unmodifiableMap(tableVersions);
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    /**
+     * 快照生成时间 毫秒时间戳
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,211 @@
+package com.itdl.util.cache;
+
+import com.itdl.common.base.TableColumnMetaInfo;
+import com.itdl.common.base.TableMetaInfo;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * @Description 元数据快照的持有者，启动时映射本地快照文件，后台定时重新拉取元数据并替换快照
+ * 快照文件不存在、版本不一致或项目不一致时立即在后台拉取，拉取完成前查询方回退到原有的查询逻辑
+ * 读取表字段时直接返回快照中的内容，不发请求；超过检查间隔后在后台获取表的元数据修改时间，
+ * 晚于快照生成时间的表标记为已过期，之后回退到原有的查询逻辑，直到下一次生成快照
+ * @Author itdl
+ * @Date 2026/10/17 03:41
+ */
+@Slf4j
+public class CatalogSnapshotStore implements Closeable {
+    private final File file;
+    private final String projectName;
+    private final long refreshMillis;
+    private final CallBack.CatalogLoader loader;
+    /**同一张表两次检查元数据修改时间的最小间隔 毫秒*/
+    private final long checkMillis;
+    private final CallBack.MetaVersionLoader versionLoader;
+    private final ScheduledExecutorService scheduler;
+    /**检查表元数据修改时间的线程池 队列满时丢弃，等下一次读取再检查*/
+    private final ExecutorService checker;
+    /**每张表上次检查元数据修改时间的时间*/
+    private final Map<String, Long> checkedAt = new ConcurrentHashMap<>();
+    /**已过期的表及过期时间 在这之前生成的快照中该表的字段不再使用*/
+    private final Map<String, Long> invalidations = new ConcurrentHashMap<>();
+    /**当前快照 未加载成功时为null*/
+    private volatile CatalogSnapshot snapshot;
+
+    /**
+     * @param file 快照文件
+     * @param projectName 项目名 与快照文件中的不一致时丢弃快照
+     * @param refreshMillis 后台刷新间隔
+     * @param loader 拉取完整元数据
+     * @param checkMillis 同一张表两次检查元数据修改时间的最小间隔
+     * @param versionLoader 获取表的元数据修改时间
+     */
+    public CatalogSnapshotStore(File file, String projectName, long refreshMillis, CallBack.CatalogLoader loader,
+                                long checkMillis, CallBack.MetaVersionLoader versionLoader) {
+        this.file = file;
+        this.projectName = projectName;
+        this.refreshMillis = refreshMillis;
+        this.loader = loader;
+        this.checkMillis = checkMillis;
+        this.versionLoader = versionLoader;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonFactory("catalog-snapshot-refresh"));
+        this.checker = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(1024),
+                daemonFactory("catalog-snapshot-check"), new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * 加载本地快照并开始后台刷新 快照已过期时立即刷新
+     */
+    public CatalogSnapshotStore start() {
+        long initialDelay = 0L;
+        if (file.exists()) {
+            try {
+                final long start = System.currentTimeMillis();
+                final CatalogSnapshot loaded = CatalogSnapshot.load(file);
+                if (projectName == null || projectName.equals(loaded.getProjectName())) {
+                    snapshot = loaded;
+                    initialDelay = Math.max(0L, loaded.getCreatedAt() + refreshMillis - System.currentTimeMillis());
+                    log.info("===>>加载元数据快照完成，表数量：{}，耗时：{}ms", loaded.getTables().size(), System.currentTimeMillis() - start);
+                } else {
+                    log.warn("===>>元数据快照的项目不一致，忽略快照：{}", loaded.getProjectName());
+                }
+            } catch (IOException | RuntimeException e) {
+                // 文件损坏时丢弃快照 不影响启动
+                log.warn("===>>加载元数据快照失败，重新拉取：{}", e.getMessage());
+            }
+        }
+        scheduler.scheduleWithFixedDelay(this::refresh, initialDelay, refreshMillis, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    /**
+     * 获取当前快照
+     * @return 快照 还没有可用快照时返回null
+     */
+    public CatalogSnapshot get() {
+        return snapshot;
+    }
+
+    /**
+     * 从快照获取表的字段 不发请求，表已过期时返回null
+     * 超过检查间隔后在后台检查表的元数据修改时间，本次仍返回快照中的字段
+     * @param tableName 表名
+     * @return 字段列表 没有可用快照、快照中没有该表或表已过期时返回null
+     */
+    public List<TableColumnMetaInfo> getColumns(String tableName) {
+        final CatalogSnapshot current = snapshot;
+        if (current == null || isInvalidated(tableName, current)) {
+            return null;
+        }
+        final List<TableColumnMetaInfo> columns = current.getColumns(tableName);
+        if (columns != null) {
+            checkInBackground(tableName, current);
+        }
+        return columns;
+    }
+
+    /**
+     * 使当前快照中某个表的字段失效 直到下一次生成快照
+     * @param tableName 表名
+     */
+    public void invalidate(String tableName) {
+        invalidations.put(tableName, System.currentTimeMillis());
+    }
+
+    private boolean isInvalidated(String tableName, CatalogSnapshot current) {
+        final Long invalidatedAt = invalidations.get(tableName);
+        return invalidatedAt != null && invalidatedAt >= current.getCreatedAt();
+    }
+
+    /**
+     * 超过检查间隔时提交后台检查 元数据修改时间晚于快照生成时间时使该表失效
+     */
+    private void checkInBackground(String tableName, CatalogSnapshot current) {
+        final long now = System.currentTimeMillis();
+        final Long last = checkedAt.get(tableName);
+        if (last != null && now - last < checkMillis) {
+            return;
+        }
+        // 只有替换成功的线程提交检查 并发读取同一张表时只检查一次
+        if (last == null ? checkedAt.putIfAbsent(tableName, now) != null : !checkedAt.replace(tableName, last, now)) {
+            return;
+        }
+        checker.execute(() -> {
+            final Long metaVersion = versionLoader.load(tableName);
+            if (metaVersion != null && metaVersion > current.getCreatedAt()) {
+                log.info("===>>表元数据在快照生成后被修改，快照中的字段失效：{}", tableName);
+                invalidate(tableName);
+            }
+        });
+    }
+
+    /**
+     * 重新拉取元数据 写入快照文件后重新映射
+     * 后台刷新和手动刷新互斥，同一时刻只有一个线程写临时文件
+     */
+    public synchronized void refresh() {
+        try {
+            final long start = System.currentTimeMillis();
+            final Catalog catalog = loader.load();
+            CatalogSnapshot.write(file, projectName, start, catalog.tables, catalog.tableVersions, catalog.fields);
+            snapshot = CatalogSnapshot.load(file);
+            log.info("===>>刷新元数据快照完成，表数量：{}，耗时：{}ms", catalog.tables.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            // 刷新失败继续使用旧快照 等待下一次刷新
+            log.error("===>>刷新元数据快照失败", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        checker.shutdownNow();
+    }
+
+    private static ThreadFactory daemonFactory(String name) {
+        return r -> {
+            final Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 拉取到的完整元数据
+     */
+    public static class Catalog {
+        private final List<TableMetaInfo> tables;
+        private final Map<String, Long> tableVersions;
+        private final Map<String, List<TableColumnMetaInfo>> fields;
+
+        public Catalog(List<TableMetaInfo> tables, Map<String, Long> tableVersions, Map<String, List<TableColumnMetaInfo>> fields) {
+            this.tables = tables;
+            this.tableVersions = tableVersions;
+            this.fields = fields;
+        }
+    }
+
+    public static class CallBack {
+        public interface CatalogLoader {
+            /**
+             * 拉取表列表、表修改时间和所有表的字段
+             */
+            Catalog load() throws Exception;
+        }
+
+        public interface MetaVersionLoader {
+            /**
+             * 获取表的元数据修改时间
+             * @param tableName 表名
+             * @return 修改时间戳 获取失败返回null
+             */
+            Long load(String tableName);
+        }
+    }
+}
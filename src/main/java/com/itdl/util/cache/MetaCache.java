@@ -0,0 +1,114 @@
+package com.itdl.util.cache;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * @Description 元数据缓存，容量满后按最近最少使用淘汰，同一个key同时只会加载一次
+ * 缓存过了存活时间后，如果提供了版本探测函数(如表的最后修改时间)，版本未变化时只续期不重新加载
+ * @Author itdl
+ * @Date 2026/10/17 03:19
+ */
+@Slf4j
+public class MetaCache<K, V> {
+    /**缓存数据 按访问顺序排列，超出容量时淘汰最久未访问的*/
+    private final Map<K, Holder<V>> holders;
+    /**存活时间 毫秒*/
+    private final long ttlMillis;
+
+    public MetaCache(int maxSize, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.holders = new LinkedHashMap<K, Holder<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Holder<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * 获取缓存 不存在时加载，过期时先探测版本，版本变化或无法探测时重新加载
+     * @param key 缓存key
+     * @param loader 加载函数 返回数据和数据对应的版本
+     * @param versionProbe 版本探测函数 可以为null，为null时过期直接重新加载
+     * @return 缓存的数据
+     */
+    public V get(K key, Function<K, Versioned<V>> loader, Function<K, Long> versionProbe) {
+        final Holder<V> holder;
+        synchronized (holders) {
+            holder = holders.computeIfAbsent(key, k -> new Holder<>());
+        }
+        synchronized (holder) {
+            final long now = System.currentTimeMillis();
+            if (holder.data == null) {
+                holder.data = loader.apply(key);
+                holder.checkedAt = now;
+            } else if (now - holder.checkedAt > ttlMillis) {
+                final Long version = versionProbe == null ? null : versionProbe.apply(key);
+                if (version == null || !Objects.equals(version, holder.data.getVersion())) {
+                    log.info("===>>元数据已变化，重新加载：{}", key);
+                    holder.data = loader.apply(key);
+                }
+                holder.checkedAt = now;
+            }
+            return holder.data.getValue();
+        }
+    }
+
+    /**
+     * 直接放入缓存 用于批量加载后预热
+     */
+    public void put(K key, Versioned<V> data) {
+        final Holder<V> holder;
+        synchronized (holders) {
+            holder = holders.computeIfAbsent(key, k -> new Holder<>());
+        }
+        synchronized (holder) {
+            holder.data = data;
+            holder.checkedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 移除某个key的缓存
+     */
+    public void invalidate(K key) {
+        synchronized (holders) {
+            holders.remove(key);
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        synchronized (holders) {
+            holders.clear();
+        }
+    }
+
+    private static class Holder<V> {
+        private Versioned<V> data;
+        private long checkedAt;
+    }
+
+    /**
+     * 带版本的缓存数据
+     */
+    @Getter
+    public static class Versioned<V> {
+        private final V value;
+        /**数据版本 如表的最后修改时间戳，没有版本时为null*/
+        private final Long version;
+
+        public Versioned(V value, Long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.itdl.util.cache;
+
+import com.aliyun.odps.tunnel.InstanceTunnel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * @Description 已执行完成的查询实例注册表，按SQL缓存实例的结果下载会话，超过存活时间或容量后淘汰
+ * @Author itdl
+ * @Date 2026/10/17 03:12
+ */
+@Slf4j
+public class QueryInstanceRegistry {
+    /**缓存的实例 key为规范化后的SQL*/
+    private final Map<String, Holder> holders = new ConcurrentHashMap<>();
+    /**存活时间 毫秒*/
+    private final long ttlMillis;
+    /**最多缓存的实例数量*/
+    private final int maxSize;
+
+    public QueryInstanceRegistry(long ttlMillis, int maxSize) {
+        this.ttlMillis = ttlMillis;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 获取SQL对应的实例 不存在或已过期时使用loader加载，同一个SQL同时只会加载一次
+     * @param querySql 查询sql
+     * @param loader 执行SQL并返回实例的加载函数
+     * @return 缓存的实例
+     */
+    public CachedInstance getOrLoad(String querySql, Function<String, CachedInstance> loader) {
+        final String key = SqlNormalizer.normalize(querySql);
+        evictExpired();
+        final Holder holder = holders.computeIfAbsent(key, k -> new Holder());
+        synchronized (holder) {
+            if (holder.instance == null || holder.instance.isExpired()) {
+                holder.instance = loader.apply(querySql);
+                log.info("===>>缓存查询实例：{}，记录数：{}", holder.instance.getInstanceId(), holder.instance.getRecordCount());
+            }
+            return holder.instance;
+        }
+    }
+
+    /**
+     * 移除SQL对应的实例 一般在下载会话失效时调用
+     * @param querySql 查询sql
+     */
+    public void invalidate(String querySql) {
+        holders.remove(SqlNormalizer.normalize(querySql));
+    }
+
+    /**
+     * 构建一个缓存实例
+     * @param instanceId 实例id
+     * @param session 实例结果的下载会话
+     */
+    public CachedInstance newInstance(String instanceId, InstanceTunnel.DownloadSession session) {
+        return new CachedInstance(instanceId, session, System.currentTimeMillis() + ttlMillis);
+    }
+
+    /**
+     * 淘汰过期的实例，超出容量时淘汰最早过期的实例
+     */
+    private void evictExpired() {
+        final Iterator<Holder> iterator = holders.values().iterator();
+        while (iterator.hasNext()) {
+            final CachedInstance instance = iterator.next().instance;
+            if (instance != null && instance.isExpired()) {
+                iterator.remove();
+            }
+        }
+        while (holders.size() >= maxSize) {
+            String eldestKey = null;
+            long eldestExpireAt = Long.MAX_VALUE;
+            for (Map.Entry<String, Holder> entry : holders.entrySet()) {
+                final CachedInstance instance = entry.getValue().instance;
+                // 正在加载的实例不淘汰
+                if (instance != null && instance.getExpireAt() < eldestExpireAt) {
+                    eldestExpireAt = instance.getExpireAt();
+                    eldestKey = entry.getKey();
+                }
+            }
+            if (eldestKey == null) {
+                return;
+            }
+            holders.remove(eldestKey);
+        }
+    }
+
+    private static class Holder {
+        private volatile CachedInstance instance;
+    }
+
+    @Getter
+    public static class CachedInstance {
+        /**实例id*/
+        private final String instanceId;
+        /**实例结果的下载会话 可以重复打开读取器读取任意区间*/
+        private final InstanceTunnel.DownloadSession session;
+        /**过期时间戳*/
+        private final long expireAt;
+
+        CachedInstance(String instanceId, InstanceTunnel.DownloadSession session, long expireAt) {
+            this.instanceId = instanceId;
+            this.session = session;
+            this.expireAt = expireAt;
+        }
+
+        /**
+         * 结果总记录数
+         */
+        public long getRecordCount() {
+            return session.getRecordCount();
+        }
+
+        public boolean isExpired() {
+            return System.currentTimeMillis() > expireAt;
+        }
+    }
+}
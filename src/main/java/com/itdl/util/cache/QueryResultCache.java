@@ -0,0 +1,245 @@
+package com.itdl.util.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * @Description 查询结果缓存，key为规范化后的SQL，结果以只读的List/Map直接保存在堆内，命中时不需要复制和反序列化，
+ * 按估算的总字节数限制容量，超出后淘汰最久未访问的结果；同一个key同时未命中时只执行一次查询，其他线程等待共用结果
+ * 缓存时记录SQL引用的表的最后数据修改时间，超过检查间隔后重新获取修改时间，表数据变化后缓存失效
+ * 解析不出引用的表或获取不到修改时间的查询不缓存
+ * @Author itdl
+ * @Date 2026/10/17 03:23
+ */
+@Slf4j
+public class QueryResultCache {
+    /**每行Map的固定开销估算 字节*/
+    private static final long ROW_OVERHEAD = 64L;
+    /**每个键值对的固定开销估算 字节*/
+    private static final long FIELD_OVERHEAD = 32L;
+
+    /**缓存的结果 按访问顺序排列*/
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /**正在加载的结果 同一个key只有一个线程执行查询*/
+    private final ConcurrentHashMap<String, CompletableFuture<List<Map<String, Object>>>> loading = new ConcurrentHashMap<>();
+    /**最多占用的内存字节数 按结果内容估算*/
+    private final long maxBytes;
+    /**两次检查表修改时间的最小间隔 毫秒，间隔内直接返回缓存*/
+    private final long freshnessMillis;
+    /**表修改时间的获取函数*/
+    private final TableVersionLoader versionLoader;
+    /**当前占用的字节数*/
+    private long usedBytes;
+
+    public QueryResultCache(long maxBytes, long freshnessMillis, TableVersionLoader versionLoader) {
+        this.maxBytes = maxBytes;
+        this.freshnessMillis = freshnessMillis;
+        this.versionLoader = versionLoader;
+    }
+
+    /**
+     * 获取缓存的查询结果 未命中或已失效时执行查询并缓存
+     * 返回的结果是只读的，多个调用方共用同一份，需要修改时请先复制
+     * @param querySql 查询sql
+     * @param keySuffix 影响结果的其他参数 如查询配置，可不传
+     * @param loader 执行查询的函数
+     * @return 查询结果
+     */
+    public List<Map<String, Object>> getOrLoad(String querySql, String keySuffix, Supplier<List<Map<String, Object>>> loader) {
+        final String key = keySuffix == null ? SqlNormalizer.normalize(querySql) : SqlNormalizer.normalize(querySql) + "#" + keySuffix;
+        final List<Map<String, Object>> cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        // 同一个key已经有线程在查询 等待它的结果
+        final CompletableFuture<List<Map<String, Object>>> future = new CompletableFuture<>();
+        final CompletableFuture<List<Map<String, Object>>> running = loading.putIfAbsent(key, future);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            // 抢到加载权之前可能刚有线程放入了缓存
+            List<Map<String, Object>> rows = get(key);
+            if (rows == null) {
+                rows = load(key, querySql, loader);
+            }
+            future.complete(rows);
+            return rows;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    private List<Map<String, Object>> load(String key, String querySql, Supplier<List<Map<String, Object>>> loader) {
+        // 查询前获取表的修改时间 查询期间表被修改时下次检查会失效
+        final Set<String> tables = SqlNormalizer.extractTables(querySql);
+        final Map<String, Long> versions = loadVersions(tables);
+        final List<Map<String, Object>> rows = readOnly(loader.get());
+        if (versions != null) {
+            put(key, versions, rows);
+        }
+        return rows;
+    }
+
+    private List<Map<String, Object>> get(String key) {
+        final Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            return null;
+        }
+        final long now = System.currentTimeMillis();
+        if (now - entry.checkedAt > freshnessMillis) {
+            final Map<String, Long> current = loadVersions(entry.versions.keySet());
+            if (!entry.versions.equals(current)) {
+                log.info("===>>表数据已变化，查询缓存失效：{}", entry.versions.keySet());
+                remove(key, entry);
+                return null;
+            }
+            entry.checkedAt = now;
+        }
+        return entry.rows;
+    }
+
+    private void put(String key, Map<String, Long> versions, List<Map<String, Object>> rows) {
+        final long size = estimateSize(rows);
+        if (size > maxBytes) {
+            return;
+        }
+        final Entry entry = new Entry(rows, size, versions, System.currentTimeMillis());
+        synchronized (this) {
+            final Entry old = entries.put(key, entry);
+            if (old != null) {
+                usedBytes -= old.size;
+            }
+            usedBytes += entry.size;
+            // 超出容量 淘汰最久未访问的结果
+            final Iterator<Entry> iterator = entries.values().iterator();
+            while (usedBytes > maxBytes && iterator.hasNext()) {
+                final Entry eldest = iterator.next();
+                usedBytes -= eldest.size;
+                iterator.remove();
+            }
+        }
+    }
+
+    private synchronized void remove(String key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            usedBytes -= entry.size;
+        }
+    }
+
+    /**
+     * 获取表的修改时间 没有解析出表或任何一张表获取失败都返回null，表示结果不可缓存
+     */
+    private Map<String, Long> loadVersions(Set<String> tables) {
+        if (tables.isEmpty()) {
+            // 不知道查询依赖哪些表 无法判断缓存何时失效
+            return null;
+        }
+        Map<String, Long> versions = new HashMap<>(tables.size() * 2);
+        for (String table : tables) {
+            final Long version = versionLoader.load(table);
+            if (version == null) {
+                return null;
+            }
+            versions.put(table, version);
+        }
+        return versions;
+    }
+
+    private static List<Map<String, Object>> await(CompletableFuture<List<Map<String, Object>>> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            // 查询线程的异常原样抛给等待的线程
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 包装为只读的结果 缓存的结果会被多个调用方共用，不能被修改
+     */
+    private static List<Map<String, Object>> readOnly(List<Map<String, Object>> rows) {
+        List<Map<String, Object>> result = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            result.add(Collections.unmodifiableMap(row));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * 估算结果占用的内存字节数 字符串按每个字符2字节计算，其他值按固定大小计算
+     */
+    static long estimateSize(List<Map<String, Object>> rows) {
+        long size = 0;
+        for (Map<String, Object> row : rows) {
+            size += ROW_OVERHEAD;
+            for (Map.Entry<String, Object> field : row.entrySet()) {
+                size += FIELD_OVERHEAD + estimateSize(field.getKey()) + estimateSize(field.getValue());
+            }
+        }
+        return size;
+    }
+
+    private static long estimateSize(Object value) {
+        if (value == null) {
+            return 0L;
+        }
+        if (value instanceof String) {
+            return 40L + ((String) value).length() * 2L;
+        }
+        if (value instanceof byte[]) {
+            return 16L + ((byte[]) value).length;
+        }
+        return 24L;
+    }
+
+    private static class Entry {
+        /**只读的结果*/
+        private final List<Map<String, Object>> rows;
+        /**估算的字节数*/
+        private final long size;
+        /**缓存时各表的修改时间*/
+        private final Map<String, Long> versions;
+        /**上次检查修改时间的时间戳*/
+        private volatile long checkedAt;
+
+        Entry(List<Map<String, Object>> rows, long size, Map<String, Long> versions, long checkedAt) {
+            this.rows = rows;
+            this.size = size;
+            this.versions = versions;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    public interface TableVersionLoader {
+        /**
+         * 获取表的最后数据修改时间
+         * @param tableName 表名 可能带项目名前缀
+         * @return 修改时间戳 表不存在或获取失败返回null
+         */
+        Long load(String tableName);
+    }
+}
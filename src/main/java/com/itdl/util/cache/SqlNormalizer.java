@@ -0,0 +1,165 @@
+package com.itdl.util.cache;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @Description SQL规范化工具 用于生成缓存key、解析SQL引用的表和判断是否为只读查询
+ * @Author itdl
+ * @Date 2026/10/17 03:23
+ */
+public class SqlNormalizer {
+    /**from/join后面的表名 支持project.table和反引号*/
+    private static final Pattern TABLE_PATTERN = Pattern.compile("(?i)\\b(?:from|join)\\s+(`?[\\w]+`?(?:\\.`?[\\w]+`?)?)");
+    /**from后面用逗号分隔的多张表 如from a, b或from a t1, b t2，逗号后面的表无法可靠解析*/
+    /**只读查询允许的开头*/
+    private static final Pattern READ_ONLY_START = Pattern.compile("(?i)^[\\s(]*(?:select|with)\\b");
+    /**会修改数据或元数据的关键字 with语句后面可以接insert*/
+    private static final Pattern WRITE_KEYWORD = Pattern.compile("(?i)\\b(?:insert|overwrite|update|delete|merge|create|drop|alter|truncate|grant|revoke|unload)\\b");
+    private static final Pattern COMMA_JOIN_PATTERN = Pattern.compile("(?i)\\bfrom\\s+`?[\\w]+`?(?:\\.`?[\\w]+`?)?(?:\\s+(?:as\\s+)?(?!where\\b|group\\b|order\\b|limit\\b)\\w+)?\\s*,");
+
+    private SqlNormalizer() {
+    }
+
+    /**
+     * 规范化SQL 作为缓存key，只合并字符串、反引号和注释之外的连续空白，去掉首尾空白和末尾的分号
+     * 字符串内的内容原样保留，只有空白不同的字符串常量不会得到相同的key
+     */
+    public static String normalize(String querySql) {
+        final StringBuilder sb = new StringBuilder(querySql.length());
+        final int length = querySql.length();
+        int i = 0;
+        while (i < length) {
+            final char c = querySql.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                // 字符串或反引号 原样复制到结束引号，支持反斜杠转义和两个引号的转义
+                final int start = i++;
+                while (i < length) {
+                    final char d = querySql.charAt(i++);
+                    if (d == '\\' && c != '`' && i < length) {
+                        i++;
+                    } else if (d == c) {
+                        if (i < length && querySql.charAt(i) == c) {
+                            i++;
+                        } else {
+                            break;
+                        }
+                    }
+                }
+                sb.append(querySql, start, i);
+            } else if (c == '-' && i + 1 < length && querySql.charAt(i + 1) == '-') {
+                // 单行注释 原样复制到行尾，换行符一起保留，否则后面的sql会被合并进注释
+                final int end = querySql.indexOf('\n', i);
+                final int stop = end < 0 ? length : end + 1;
+                sb.append(querySql, i, stop);
+                i = stop;
+            } else if (c == '/' && i + 1 < length && querySql.charAt(i + 1) == '*') {
+                // 多行注释 原样复制到注释结束
+                final int end = querySql.indexOf("*/", i + 2);
+                final int stop = end < 0 ? length : end + 2;
+                sb.append(querySql, i, stop);
+                i = stop;
+            } else if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(querySql.charAt(i))) {
+                    i++;
+                }
+                sb.append(' ');
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        // 去掉末尾的分号和空白 中间的分号保留
+        int end = sb.length();
+        while (end > 0 && (sb.charAt(end - 1) == ';' || sb.charAt(end - 1) == ' ')) {
+            end--;
+        }
+        int start = 0;
+        while (start < end && sb.charAt(start) == ' ') {
+            start++;
+        }
+        return sb.substring(start, end);
+    }
+
+    /**
+     * 判断是否为单条只读查询 以select或with开头，不包含写数据或改元数据的关键字，末尾之外没有分号
+     * 字符串、反引号和注释中的内容不参与判断
+     * @param querySql 查询sql
+     * @return 是否为只读查询 为空时返回false
+     */
+    public static boolean isReadOnlyQuery(String querySql) {
+        if (querySql == null || querySql.trim().isEmpty()) {
+            return false;
+        }
+        final String masked = maskQuoted(querySql).trim();
+        // 末尾的分号可以有多个 中间的分号说明有多条语句
+        int end = masked.length();
+        while (end > 0 && (masked.charAt(end - 1) == ';' || Character.isWhitespace(masked.charAt(end - 1)))) {
+            end--;
+        }
+        final String statement = masked.substring(0, end);
+        return statement.indexOf(';') < 0 && READ_ONLY_START.matcher(statement).find()
+                && !WRITE_KEYWORD.matcher(statement).find();
+    }
+
+    /**
+     * 把字符串、反引号和注释替换为空格 只保留sql本身的关键字和符号
+     */
+    private static String maskQuoted(String querySql) {
+        final StringBuilder sb = new StringBuilder(querySql.length());
+        final int length = querySql.length();
+        int i = 0;
+        while (i < length) {
+            final char c = querySql.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                i++;
+                while (i < length) {
+                    final char d = querySql.charAt(i++);
+                    if (d == '\\' && c != '`' && i < length) {
+                        i++;
+                    } else if (d == c) {
+                        if (i < length && querySql.charAt(i) == c) {
+                            i++;
+                        } else {
+                            break;
+                        }
+                    }
+                }
+                sb.append(' ');
+            } else if (c == '-' && i + 1 < length && querySql.charAt(i + 1) == '-') {
+                final int end = querySql.indexOf('\n', i);
+                i = end < 0 ? length : end + 1;
+                sb.append(' ');
+            } else if (c == '/' && i + 1 < length && querySql.charAt(i + 1) == '*') {
+                final int end = querySql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                sb.append(' ');
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 解析SQL中from和join引用的表名 统一转为小写，去掉反引号
+     * 只做简单的文本匹配，子查询的别名、with语句定义的临时表也会被匹配到，调用方需要能处理不存在的表
+     * from后面用逗号分隔多张表时无法解析出全部的表，返回空集合，调用方应视为无法确定引用的表
+     * @param querySql 查询sql
+     * @return 表名集合 可能带项目名前缀 如project.table，无法解析时为空集合
+     */
+    public static Set<String> extractTables(String querySql) {
+        Set<String> tables = new LinkedHashSet<>();
+        if (COMMA_JOIN_PATTERN.matcher(querySql).find()) {
+            return tables;
+        }
+        final Matcher matcher = TABLE_PATTERN.matcher(querySql);
+        while (matcher.find()) {
+            tables.add(matcher.group(1).replace("`", "").toLowerCase());
+        }
+        return tables;
+    }
+}
@@ -0,0 +1,52 @@
+package com.itdl.util.cache;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * @Description 表名集合索引，用于批量判断表是否存在，构建后只读，多线程安全
+ * 表名不区分大小写
+ * @Author itdl
+ * @Date 2026/10/17 03:47
+ */
+public class TableNameIndex {
+    private final Set<String> names;
+    /**构建时间 毫秒时间戳*/
+    private final long builtAt;
+
+    /**
+     * @param tableNames 表名
+     */
+    public TableNameIndex(Collection<String> tableNames) {
+        this.names = new HashSet<>(Math.max(16, tableNames.size() * 4 / 3 + 1));
+        for (String tableName : tableNames) {
+            names.add(normalize(tableName));
+        }
+        this.builtAt = System.currentTimeMillis();
+    }
+
+    /**
+     * 表是否在索引中
+     * @param tableName 表名
+     */
+    public boolean contains(String tableName) {
+        return names.contains(normalize(tableName));
+    }
+
+    /**
+     * 索引中的表数量
+     */
+    public int size() {
+        return names.size();
+    }
+
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+    private static String normalize(String tableName) {
+        return tableName.trim().toLowerCase(Locale.ROOT);
+    }
+}
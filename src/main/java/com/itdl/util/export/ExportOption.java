@@ -0,0 +1,51 @@
+package com.itdl.util.export;
+
+import lombok.Data;
+
+/**
+ * @Description 查询结果导出文件参数
+ * @Author itdl
+ * @Date 2026/10/17 03:26
+ */
+@Data
+public class ExportOption {
+    /**导出文件所在目录 不存在时自动创建*/
+    private String directory;
+    /**文件名前缀 实际文件名为 前缀_序号.csv[.gz]*/
+    private String fileNamePrefix = "export";
+    /**文件扩展名 如csv、tsv*/
+    private String extension = "csv";
+    /**字段分隔符 导出tsv时传\t*/
+    private char delimiter = ',';
+    /**是否在每个文件首行写入列名*/
+    private boolean header = true;
+    /**空值写入的文本*/
+    private String nullValue = "";
+    /**压缩方式*/
+    private Compression compression = Compression.GZIP;
+    /**单个文件最大字节数(压缩后) 超过后切换到下一个文件 小于等于0不切分*/
+    private long maxFileBytes = 0L;
+    /**写线程每次处理的行数*/
+    private int batchRows = 1000;
+    /**下载与写文件之间最多缓冲的批次数 写文件跟不上时下载会阻塞等待*/
+    private int queueBatches = 16;
+
+    public enum Compression {
+        /**不压缩*/
+        NONE(""),
+        /**gzip压缩*/
+        GZIP(".gz"),
+        ;
+
+        /**压缩文件的扩展名*/
+        private final String suffix;
+
+        Compression(String suffix) {
+            this.suffix = suffix;
+        }
+
+        public String getSuffix() {
+            return suffix;
+        }
+    }
+}
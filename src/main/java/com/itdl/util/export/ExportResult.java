@@ -0,0 +1,21 @@
+package com.itdl.util.export;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @Description 查询结果导出文件的结果
+ * @Author itdl
+ * @Date 2026/10/17 03:26
+ */
+@Data
+public class ExportResult {
+    /**导出的总行数 不含表头*/
+    private long rows;
+    /**写入磁盘的总字节数(压缩后)*/
+    private long bytes;
+    /**生成的文件 按写入顺序*/
+    private List<String> files = new ArrayList<>();
+}
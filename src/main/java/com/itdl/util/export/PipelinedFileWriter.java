@@ -0,0 +1,286 @@
+package com.itdl.util.export;
+
+import com.itdl.common.base.ResultCode;
+import com.itdl.common.exception.BizException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @Description 流水线方式导出分隔符文件，调用线程负责下载并按批投递，独立的写线程负责编码、压缩和写盘，
+ * 两者之间使用有界队列，写盘跟不上时下载阻塞，内存占用只与队列大小有关
+ * @Author itdl
+ * @Date 2026/10/17 03:26
+ */
+@Slf4j
+public class PipelinedFileWriter implements Closeable {
+    /**结束标记*/
+    private static final List<Object[]> END = new ArrayList<>(0);
+    /**文件写缓冲大小*/
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String[] columns;
+    private final ExportOption option;
+    private final File directory;
+    private final BlockingQueue<List<Object[]>> queue;
+    private final Thread writerThread;
+    /**写线程产生的结果 写线程结束后才读取*/
+    private final ExportResult result = new ExportResult();
+    /**写线程出现的异常*/
+    private volatile Exception failure;
+
+    /**当前正在积累的批次 只在调用线程中访问*/
+    private List<Object[]> batch;
+    /**是否已正常结束*/
+    private boolean finished;
+
+    /**写线程当前打开的文件*/
+    private Writer out;
+    private CountingOutputStream counter;
+    private int fileIndex;
+    private final StringBuilder line = new StringBuilder(256);
+
+    public PipelinedFileWriter(String[] columns, ExportOption option) {
+        this.columns = columns;
+        this.option = option;
+        this.directory = new File(option.getDirectory());
+        if (!directory.exists() && !directory.mkdirs()) {
+            log.error("===>>创建导出目录失败：{}", directory.getAbsolutePath());
+            throw new BizException(ResultCode.EXPORT_FILE_ERR);
+        }
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, option.getQueueBatches()));
+        this.batch = new ArrayList<>(option.getBatchRows());
+        this.writerThread = new Thread(this::runWriter, "export-writer-" + option.getFileNamePrefix());
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * 写入一行 值的顺序与列名一致
+     * @param values 一行的值
+     */
+    public void write(Object[] values) {
+        batch.add(values);
+        if (batch.size() >= option.getBatchRows()) {
+            flushBatch();
+        }
+    }
+
+    /**
+     * 所有数据写入完毕 等待写线程写完并关闭文件
+     * @return 导出结果
+     */
+    public ExportResult finish() {
+        if (!batch.isEmpty()) {
+            flushBatch();
+        }
+        put(END);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BizException(ResultCode.EXPORT_FILE_ERR);
+        }
+        checkFailure();
+        finished = true;
+        log.info("===>>导出完成，行数：{}，文件数：{}，字节数：{}", result.getRows(), result.getFiles().size(), result.getBytes());
+        return result;
+    }
+
+    /**
+     * 未调用finish就关闭时视为中断导出 停止写线程并删除已生成的文件
+     */
+    @Override
+    public void close() {
+        if (finished) {
+            return;
+        }
+        writerThread.interrupt();
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (String file : result.getFiles()) {
+            if (!new File(file).delete()) {
+                log.warn("===>>删除未完成的导出文件失败：{}", file);
+            }
+        }
+    }
+
+    private void flushBatch() {
+        put(batch);
+        batch = new ArrayList<>(option.getBatchRows());
+    }
+
+    /**
+     * 投递到队列 写线程已经失败时不再等待
+     */
+    private void put(List<Object[]> rows) {
+        try {
+            while (!queue.offer(rows, 100, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BizException(ResultCode.EXPORT_FILE_ERR);
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            log.error("===>>导出文件出错", failure);
+            throw new BizException(ResultCode.EXPORT_FILE_ERR);
+        }
+    }
+
+    private void runWriter() {
+        try {
+            while (true) {
+                final List<Object[]> rows = queue.take();
+                if (rows == END) {
+                    break;
+                }
+                for (Object[] values : rows) {
+                    if (out == null) {
+                        openNextFile();
+                    }
+                    writeLine(values);
+                    result.setRows(result.getRows() + 1);
+                    // 按压缩后的字节数切分文件 缓冲区中的数据还未计入，实际大小会略大于设置值
+                    if (option.getMaxFileBytes() > 0 && counter.getCount() >= option.getMaxFileBytes()) {
+                        closeFile();
+                    }
+                }
+            }
+            if (out == null && result.getFiles().isEmpty()) {
+                // 没有数据时也生成一个只有表头的文件
+                openNextFile();
+            }
+            closeFile();
+        } catch (Exception e) {
+            // 被中断或写文件出错 调用线程在下一次投递时抛出
+            failure = e;
+        } finally {
+            closeQuietly();
+        }
+    }
+
+    private void openNextFile() throws IOException {
+        final String fileName = String.format("%s_%05d.%s%s", option.getFileNamePrefix(), fileIndex++,
+                option.getExtension(), option.getCompression().getSuffix());
+        final File file = new File(directory, fileName);
+        counter = new CountingOutputStream(new FileOutputStream(file));
+        OutputStream stream = counter;
+        if (option.getCompression() == ExportOption.Compression.GZIP) {
+            stream = new GZIPOutputStream(stream, BUFFER_SIZE);
+        }
+        out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        result.getFiles().add(file.getAbsolutePath());
+        if (option.isHeader()) {
+            writeLine(columns);
+        }
+    }
+
+    private void closeFile() throws IOException {
+        if (out != null) {
+            out.close();
+            result.setBytes(result.getBytes() + counter.getCount());
+            out = null;
+        }
+    }
+
+    private void closeQuietly() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            out = null;
+        }
+    }
+
+    private void writeLine(Object[] values) throws IOException {
+        line.setLength(0);
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                line.append(option.getDelimiter());
+            }
+            appendValue(values[i]);
+        }
+        line.append('\n');
+        out.append(line);
+    }
+
+    /**
+     * 写入单个值 只有null写为空值文本，tunnel记录中的字符串"\N"是正常的值
+     * 包含分隔符、引号或换行时使用双引号包裹，内部的引号转义为两个引号
+     */
+    private void appendValue(Object value) {
+        final String text;
+        if (value == null) {
+            text = option.getNullValue();
+        } else if (value instanceof byte[]) {
+            text = new String((byte[]) value, StandardCharsets.UTF_8);
+        } else {
+            text = value.toString();
+        }
+        boolean quote = false;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == option.getDelimiter() || c == '"' || c == '\n' || c == '\r') {
+                quote = true;
+                break;
+            }
+        }
+        if (!quote) {
+            line.append(text);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+    /**
+     * 统计写入磁盘的字节数
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
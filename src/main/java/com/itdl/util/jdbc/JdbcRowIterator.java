@@ -0,0 +1,135 @@
+package com.itdl.util.jdbc;
+
+import com.itdl.common.base.ResultCode;
+import com.itdl.common.exception.BizException;
+import com.itdl.util.metrics.CallMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.sql.*;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * @Description 基于ResultSet的流式行迭代器，按statement的fetchSize分批拉取，不在内存中缓存整个结果集
+ * 列名在创建时读取一次，每行按列下标读取；读取完毕或关闭时释放ResultSet、Statement并归还连接
+ * @Author itdl
+ * @Date 2026/10/17 03:39
+ */
+@Slf4j
+public class JdbcRowIterator implements Iterator<Map<String, Object>>, Closeable {
+    /**maxCompute里面的空值 文本结果中使用\N表示*/
+    private static final String NULL_VALUE = "\\N";
+
+    private final Connection connection;
+    private final Statement statement;
+    private final ResultSet resultSet;
+    /**列名 使用列别名*/
+    private final String[] columnNames;
+    /**预读的下一行*/
+    private Map<String, Object> next;
+    /**是否已读取完毕或已关闭*/
+    private boolean finished;
+    /**已读取的行数*/
+    private long readCount;
+
+    /**
+     * @param connection 连接 关闭时一并关闭(连接池中的连接即归还)
+     * @param statement 执行查询的statement
+     * @param resultSet 查询结果
+     */
+    public JdbcRowIterator(Connection connection, Statement statement, ResultSet resultSet) throws SQLException {
+        this.connection = connection;
+        this.statement = statement;
+        this.resultSet = resultSet;
+        final ResultSetMetaData metaData = resultSet.getMetaData();
+        final int columnCount = metaData.getColumnCount();
+        this.columnNames = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnNames[i] = metaData.getColumnLabel(i + 1);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        try {
+            if (!resultSet.next()) {
+                // 读取完毕 自动释放连接
+                close();
+                return false;
+            }
+            final Map<String, Object> row = new LinkedHashMap<>(columnNames.length * 4 / 3 + 1);
+            for (int i = 0; i < columnNames.length; i++) {
+                final Object value = resultSet.getObject(i + 1);
+                // maxCompute里面的空返回的是使用\n
+                row.put(columnNames[i], value instanceof String && NULL_VALUE.equalsIgnoreCase((String) value) ? "" : value);
+            }
+            next = row;
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            close();
+            throw new BizException(ResultCode.MAX_COMPUTE_SQL_EXEC_ERR);
+        }
+    }
+
+    @Override
+    public Map<String, Object> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Map<String, Object> row = next;
+        next = null;
+        readCount++;
+        return row;
+    }
+
+    /**
+     * 获取列名 顺序与查询结果一致
+     */
+    public String[] getColumnNames() {
+        return columnNames.clone();
+    }
+
+    /**
+     * 获取已读取的行数
+     */
+    public long getReadCount() {
+        return readCount;
+    }
+
+    /**
+     * 关闭迭代器 未读取完毕时也可以提前关闭
+     */
+    @Override
+    public void close() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        CallMetrics.rows(CallMetrics.JDBC, "stream", readCount);
+        try {
+            resultSet.close();
+        } catch (SQLException e) {
+            log.warn("===>>关闭ResultSet失败", e);
+        }
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            log.warn("===>>关闭Statement失败", e);
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.warn("===>>归还连接失败", e);
+        }
+    }
+}
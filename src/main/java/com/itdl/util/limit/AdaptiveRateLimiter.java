@@ -0,0 +1,119 @@
+package com.itdl.util.limit;
+
+import com.itdl.common.base.ResultCode;
+import com.itdl.common.exception.BizException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Description 自适应限流器，令牌桶控制请求速率，速率按AIMD调整：
+ * 请求成功时缓慢加性增加(每秒约增加increaseStep)，被服务端限流时乘性减少，直到找到可持续的最大速率
+ * 同一个账号的所有请求共用一个限流器，多线程安全
+ * @Author itdl
+ * @Date 2026/10/17 03:44
+ */
+@Slf4j
+public class AdaptiveRateLimiter {
+    /**被限流时速率乘以该系数*/
+    private static final double DECREASE_FACTOR = 0.5;
+    /**两次减速的最小间隔 毫秒，避免同一时刻在途的多个请求同时被限流导致速率连续减半*/
+    private static final long DECREASE_COOLDOWN_MILLIS = 1000L;
+
+    private final double minRate;
+    private final double maxRate;
+    /**每秒约增加的速率*/
+    private final double increaseStep;
+
+    /**当前速率 每秒许可数*/
+    private double rate;
+    /**桶中的令牌数 为负数表示已被预约，需要等待*/
+    private double tokens;
+    /**上次补充令牌的时间 纳秒*/
+    private long lastRefillNanos;
+    /**上次减速的时间 毫秒*/
+    private long lastDecreaseMillis;
+
+    /**
+     * @param initialRate 初始速率 每秒许可数
+     * @param minRate 最小速率
+     * @param maxRate 最大速率
+     * @param increaseStep 每秒约增加的速率
+     */
+    public AdaptiveRateLimiter(double initialRate, double minRate, double maxRate, double increaseStep) {
+        this.minRate = Math.max(0.01, minRate);
+        this.maxRate = Math.max(this.minRate, maxRate);
+        this.increaseStep = increaseStep;
+        this.rate = Math.min(this.maxRate, Math.max(this.minRate, initialRate));
+        this.tokens = 1;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * 获取一个许可 令牌不足时阻塞等待
+     */
+    public void acquire() {
+        final long waitNanos = reserve();
+        if (waitNanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BizException(ResultCode.SYSTEM_INNER_ERR);
+        }
+    }
+
+    /**
+     * 请求成功 加性增加速率
+     */
+    public synchronized void onSuccess() {
+        // 每个成功请求增加step/rate，按当前速率每秒约增加step
+        rate = Math.min(maxRate, rate + increaseStep / rate);
+    }
+
+    /**
+     * 被服务端限流 乘性减少速率并清空桶中的令牌
+     */
+    public synchronized void onThrottled() {
+        final long now = System.currentTimeMillis();
+        if (now - lastDecreaseMillis < DECREASE_COOLDOWN_MILLIS) {
+            return;
+        }
+        lastDecreaseMillis = now;
+        refill();
+        rate = Math.max(minRate, rate * DECREASE_FACTOR);
+        tokens = Math.min(tokens, 0);
+        log.warn("===>>请求被限流，速率降低为：{}/s", String.format("%.2f", rate));
+    }
+
+    /**
+     * 当前速率 每秒许可数
+     */
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    /**
+     * 预约一个许可 返回需要等待的纳秒数
+     */
+    private synchronized long reserve() {
+        refill();
+        tokens -= 1;
+        if (tokens >= 0) {
+            return 0L;
+        }
+        return (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * 按经过的时间补充令牌 桶容量为一秒的许可数
+     */
+    private void refill() {
+        final long now = System.nanoTime();
+        final double elapsedSeconds = (now - lastRefillNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        lastRefillNanos = now;
+        tokens = Math.min(Math.max(1, rate), tokens + elapsedSeconds * rate);
+    }
+}
@@ -0,0 +1,204 @@
+package com.itdl.util.mapper;
+
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.alibaba.fastjson.util.TypeUtils;
+import com.itdl.common.base.ResultCode;
+import com.itdl.common.exception.BizException;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Description 查询结果行到实体类的映射器，每个实体类只解析一次并缓存，
+ * 使用MethodHandle按列下标直接调用setter，不再经过Map和JSON字符串中转
+ * 列名匹配规则与fastjson一致：忽略大小写、下划线和中划线，如user_name可以匹配userName
+ * @Author itdl
+ * @Date 2026/10/17 03:17
+ */
+public final class BeanRowMapper<T> {
+    /**每个实体类对应的映射器*/
+    private static final Map<Class<?>, BeanRowMapper<?>> MAPPERS = new ConcurrentHashMap<>();
+    /**setter统一的调用类型 (Object bean, Object value)void*/
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    /**maxCompute里面的空值 文本结果中使用\N表示*/
+    private static final String NULL_VALUE = "\\N";
+
+    private final Class<T> clazz;
+    /**无参构造器 返回类型为Object*/
+    private final MethodHandle constructor;
+    /**规范化后的属性名到属性的映射*/
+    private final Map<String, Property> properties;
+
+    private BeanRowMapper(Class<T> clazz) {
+        this.clazz = clazz;
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            this.constructor = lookup.findConstructor(clazz, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+            this.properties = resolveProperties(clazz, lookup);
+        } catch (NoSuchMethodException | IllegalAccessException | IntrospectionException e) {
+            e.printStackTrace();
+            throw new BizException(ResultCode.ROW_MAPPING_ERR);
+        }
+    }
+
+    /**
+     * 获取实体类对应的映射器 同一个类只会解析一次
+     * @param clazz 实体类 需要有public的无参构造器
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> BeanRowMapper<T> of(Class<T> clazz) {
+        return (BeanRowMapper<T>) MAPPERS.computeIfAbsent(clazz, BeanRowMapper::new);
+    }
+
+    /**
+     * 按结果集的列绑定映射器 每个结果集绑定一次，之后按列下标设置属性
+     * @param columnNames 结果集的列名 按列顺序
+     * @return 绑定后的映射器
+     */
+    public Binding<T> bind(String[] columnNames) {
+        final Property[] bound = new Property[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            bound[i] = properties.get(normalize(columnNames[i]));
+        }
+        return new Binding<>(this, bound);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T newInstance() {
+        try {
+            return (T) constructor.invokeExact();
+        } catch (Throwable e) {
+            e.printStackTrace();
+            throw new BizException(ResultCode.ROW_MAPPING_ERR);
+        }
+    }
+
+    /**
+     * 解析实体类可写的属性 优先使用setter，没有setter时使用public字段
+     */
+    private static Map<String, Property> resolveProperties(Class<?> clazz, MethodHandles.Lookup lookup) throws IntrospectionException, IllegalAccessException {
+        Map<String, Property> result = new HashMap<>();
+        final BeanInfo beanInfo = Introspector.getBeanInfo(clazz, Object.class);
+        for (PropertyDescriptor descriptor : beanInfo.getPropertyDescriptors()) {
+            final Method writeMethod = descriptor.getWriteMethod();
+            if (writeMethod == null || !Modifier.isPublic(writeMethod.getDeclaringClass().getModifiers())) {
+                continue;
+            }
+            final MethodHandle setter = lookup.unreflect(writeMethod).asType(SETTER_TYPE);
+            result.put(normalize(descriptor.getName()), new Property(writeMethod.getParameterTypes()[0], setter));
+        }
+        for (Field field : clazz.getFields()) {
+            final int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers)) {
+                continue;
+            }
+            final MethodHandle setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+            result.putIfAbsent(normalize(field.getName()), new Property(field.getType(), setter));
+        }
+        return result;
+    }
+
+    /**
+     * 规范化名称 忽略大小写、下划线和中划线
+     */
+    private static String normalize(String name) {
+        StringBuilder builder = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (c != '_' && c != '-') {
+                builder.append(Character.toLowerCase(c));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 将列值转换为属性类型 类型一致时直接返回，否则使用fastjson的类型转换
+     */
+    private static Object coerce(Object value, Class<?> type) {
+        if (value instanceof String && NULL_VALUE.equalsIgnoreCase((String) value)) {
+            // 与原先的Map结果保持一致 字符串属性为空串，其他类型为null
+            return type == String.class ? "" : null;
+        }
+        if (value == null || type.isInstance(value)) {
+            return value;
+        }
+        return TypeUtils.cast(value, type, ParserConfig.getGlobalInstance());
+    }
+
+    private static final class Property {
+        private final Class<?> type;
+        private final MethodHandle setter;
+        private final boolean primitive;
+
+        Property(Class<?> type, MethodHandle setter) {
+            this.type = type;
+            this.setter = setter;
+            this.primitive = type.isPrimitive();
+        }
+    }
+
+    /**
+     * 与某个结果集的列绑定后的映射器 不可跨结果集复用
+     */
+    public static final class Binding<T> {
+        private final BeanRowMapper<T> mapper;
+        /**按列下标排列的属性 列没有匹配的属性时为null*/
+        private final Property[] bound;
+
+        private Binding(BeanRowMapper<T> mapper, Property[] bound) {
+            this.mapper = mapper;
+            this.bound = bound;
+        }
+
+        /**
+         * 创建一个新的实体对象
+         */
+        public T newInstance() {
+            return mapper.newInstance();
+        }
+
+        /**
+         * 设置第columnIndex列的值 列没有匹配的属性时忽略
+         * @param bean 实体对象
+         * @param columnIndex 列下标 从0开始
+         * @param value 列值
+         */
+        public void set(T bean, int columnIndex, Object value) {
+            final Property property = bound[columnIndex];
+            if (property == null) {
+                return;
+            }
+            final Object converted = coerce(value, property.type);
+            if (converted == null && property.primitive) {
+                // 基本类型不能设置null 保留默认值
+                return;
+            }
+            try {
+                property.setter.invokeExact((Object) bean, converted);
+            } catch (Throwable e) {
+                e.printStackTrace();
+                throw new BizException(ResultCode.ROW_MAPPING_ERR);
+            }
+        }
+
+        /**
+         * 映射的实体类
+         */
+        public Class<T> getType() {
+            return mapper.clazz;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.itdl.util.metrics;
+
+import com.itdl.common.base.ResultCode;
+import io.micrometer.core.instrument.*;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Description maxCompute和dataworks调用的监控指标，注册到Micrometer全局注册表，
+ * 引入actuator后spring boot会把自己的注册表加入全局注册表，不在spring中使用的工具类也能被采集
+ * @Author itdl
+ * @Date 2026/10/17 03:30
+ */
+public final class CallMetrics {
+    /**组件 使用SDK访问maxCompute*/
+    public static final String SDK = "sdk";
+    /**组件 使用JDBC访问maxCompute*/
+    public static final String JDBC = "jdbc";
+    /**组件 dataworks open api*/
+    public static final String DATA_WORKS = "dataworks";
+
+    /**各阶段耗时 带百分位直方图*/
+    private static final String DURATION = "maxcompute.call.duration";
+    /**读取的行数*/
+    private static final String ROWS = "maxcompute.call.rows";
+    /**读取的字节数*/
+    private static final String BYTES = "maxcompute.call.bytes";
+    /**出错次数 按错误码区分*/
+    private static final String ERRORS = "maxcompute.call.errors";
+    /**正在执行的调用数*/
+    private static final String IN_FLIGHT = "maxcompute.call.inflight";
+
+    private static final MeterRegistry REGISTRY = Metrics.globalRegistry;
+
+    /**每个组件正在执行的调用数*/
+    private static final Map<String, AtomicInteger> IN_FLIGHT_COUNTS = new ConcurrentHashMap<>();
+
+    /**已注册的指标 key为组件|操作(|错误码)，避免每次调用都重新构建和查找*/
+    private static final Map<String, Timer> TIMERS = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> ROW_COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> BYTE_COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> ERROR_COUNTERS = new ConcurrentHashMap<>();
+
+    private CallMetrics() {
+    }
+
+    /**
+     * 记录一个阶段的耗时
+     * @param component 组件 sdk/jdbc/dataworks
+     * @param operation 阶段或操作 如submit、queue、run、fetch、convert
+     * @param startNanos 开始时间 System.nanoTime()
+     */
+    public static void record(String component, String operation, long startNanos) {
+        record(component, operation, System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录一个阶段的耗时 耗时由服务端时间计算时使用
+     * @param amount 耗时
+     * @param unit 耗时的单位
+     */
+    public static void record(String component, String operation, long amount, TimeUnit unit) {
+        TIMERS.computeIfAbsent(component + "|" + operation, key -> Timer.builder(DURATION)
+                .tag("component", component)
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(REGISTRY))
+                .record(amount, unit);
+    }
+
+    /**
+     * 记录读取的行数
+     */
+    public static void rows(String component, String operation, long rows) {
+        ROW_COUNTERS.computeIfAbsent(component + "|" + operation, key -> Counter.builder(ROWS)
+                .tag("component", component)
+                .tag("operation", operation)
+                .register(REGISTRY))
+                .increment(rows);
+    }
+
+    /**
+     * 记录读取的字节数
+     */
+    public static void bytes(String component, String operation, long bytes) {
+        BYTE_COUNTERS.computeIfAbsent(component + "|" + operation, key -> Counter.builder(BYTES)
+                .baseUnit("bytes")
+                .tag("component", component)
+                .tag("operation", operation)
+                .register(REGISTRY))
+                .increment(bytes);
+    }
+
+    /**
+     * 记录一次出错
+     * @param resultCode 抛出的错误码
+     */
+    public static void error(String component, String operation, ResultCode resultCode) {
+        error(component, operation, resultCode.getCode());
+    }
+
+    /**
+     * 记录一次出错
+     * @param code 错误码 dataworks使用接口返回的错误码
+     */
+    public static void error(String component, String operation, String code) {
+        final String errorCode = code == null ? "unknown" : code;
+        ERROR_COUNTERS.computeIfAbsent(component + "|" + operation + "|" + errorCode, key -> Counter.builder(ERRORS)
+                .tag("component", component)
+                .tag("operation", operation)
+                .tag("code", errorCode)
+                .register(REGISTRY))
+                .increment();
+    }
+
+    /**
+     * 获取组件正在执行的调用数 开始时加一，结束时减一
+     */
+    public static AtomicInteger inFlight(String component) {
+        return IN_FLIGHT_COUNTS.computeIfAbsent(component, key -> {
+            final AtomicInteger count = new AtomicInteger();
+            Gauge.builder(IN_FLIGHT, count, AtomicInteger::get)
+                    .tag("component", key)
+                    .register(REGISTRY);
+            return count;
+        });
+    }
+}
@@ -0,0 +1,302 @@
+package com.itdl.util.pool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Description JDBC连接池 借出的连接是代理对象，close时归还连接池而不是真正关闭，
+ * 空闲连接后进先出，优先复用刚用过的连接；空闲超时和超过最大存活时间的连接会被关闭
+ * odps驱动的isValid始终返回true，无法校验连接，因此连接或其语句抛出过SQLException后标记为损坏，归还时直接关闭
+ * @Author itdl
+ * @Date 2026/10/17 03:38
+ */
+@Slf4j
+public class JdbcConnectionPool implements Closeable {
+    /**空闲连接清理间隔 毫秒*/
+    private static final long EVICT_INTERVAL_MILLIS = 30000L;
+
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long maxLifetimeMillis;
+    private final long borrowTimeoutMillis;
+
+    /**借出许可 数量等于最大连接数*/
+    private final Semaphore permits;
+    /**空闲连接 头部是最近归还的*/
+    private final LinkedBlockingDeque<PhysicalConnection> idle = new LinkedBlockingDeque<>();
+    /**当前物理连接总数*/
+    private final AtomicInteger total = new AtomicInteger();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    public interface ConnectionFactory {
+        /**
+         * 创建物理连接
+         */
+        Connection create() throws SQLException;
+    }
+
+    /**
+     * @param factory 物理连接工厂
+     * @param maxSize 最大连接数
+     * @param idleTimeoutMillis 空闲超过该时间的连接被关闭
+     * @param maxLifetimeMillis 连接最大存活时间 超过后归还时关闭
+     * @param borrowTimeoutMillis 连接全部借出时最多等待的时间
+     */
+    public JdbcConnectionPool(ConnectionFactory factory, int maxSize, long idleTimeoutMillis, long maxLifetimeMillis,
+                              long borrowTimeoutMillis) {
+        this.factory = factory;
+        this.maxSize = Math.max(1, maxSize);
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxLifetimeMillis = maxLifetimeMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.permits = new Semaphore(this.maxSize, true);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "jdbc-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(this::evictIdle, EVICT_INTERVAL_MILLIS, EVICT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 借出连接 使用完毕后调用close归还
+     * @return 连接代理
+     * @throws SQLException 连接池已关闭、等待超时或创建连接失败
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("连接池已关闭");
+        }
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("获取连接超时，最大连接数：" + maxSize);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("获取连接时被中断", e);
+        }
+        try {
+            PhysicalConnection physical;
+            while ((physical = idle.pollFirst()) != null) {
+                if (isUsable(physical)) {
+                    return physical.borrow();
+                }
+                destroy(physical);
+            }
+            physical = new PhysicalConnection(factory.create());
+            total.incrementAndGet();
+            log.info("===>>创建新的JDBC连接，当前连接数：{}", total.get());
+            return physical.borrow();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 当前物理连接总数
+     */
+    public int getTotal() {
+        return total.get();
+    }
+
+    /**
+     * 当前空闲连接数
+     */
+    public int getIdle() {
+        return idle.size();
+    }
+
+    /**
+     * 关闭连接池 空闲连接立即关闭，借出的连接归还时关闭
+     */
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PhysicalConnection physical;
+        while ((physical = idle.pollFirst()) != null) {
+            destroy(physical);
+        }
+    }
+
+    private void release(PhysicalConnection physical) {
+        try {
+            physical.lastUsed = System.currentTimeMillis();
+            if (closed || physical.broken || isExpired(physical, physical.lastUsed) || physical.connection.isClosed()) {
+                destroy(physical);
+            } else {
+                idle.offerFirst(physical);
+            }
+        } catch (SQLException e) {
+            destroy(physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean isUsable(PhysicalConnection physical) {
+        final long now = System.currentTimeMillis();
+        if (isExpired(physical, now) || now - physical.lastUsed > idleTimeoutMillis) {
+            return false;
+        }
+        try {
+            return !physical.connection.isClosed();
+        } catch (SQLException e) {
+            log.warn("===>>检查JDBC连接状态失败", e);
+            return false;
+        }
+    }
+
+    private boolean isExpired(PhysicalConnection physical, long now) {
+        return maxLifetimeMillis > 0 && now - physical.createdAt > maxLifetimeMillis;
+    }
+
+    /**
+     * 关闭空闲超时和超过最大存活时间的连接
+     */
+    private void evictIdle() {
+        final long now = System.currentTimeMillis();
+        for (PhysicalConnection physical : idle) {
+            if ((isExpired(physical, now) || now - physical.lastUsed > idleTimeoutMillis) && idle.remove(physical)) {
+                destroy(physical);
+            }
+        }
+    }
+
+    private void destroy(PhysicalConnection physical) {
+        total.decrementAndGet();
+        try {
+            physical.connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 物理连接
+     */
+    private class PhysicalConnection {
+        private final Connection connection;
+        private final long createdAt = System.currentTimeMillis();
+        private volatile long lastUsed = createdAt;
+        /**连接或其语句抛出过SQLException 归还时关闭*/
+        private volatile boolean broken;
+
+        PhysicalConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        Connection borrow() {
+            return (Connection) Proxy.newProxyInstance(JdbcConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new ConnectionHandler(this));
+        }
+    }
+
+    /**
+     * 借出连接的代理 close归还连接池，创建的语句包装后返回，出错时标记连接损坏
+     */
+    private class ConnectionHandler implements InvocationHandler {
+        private final PhysicalConnection physical;
+        private final AtomicBoolean returned = new AtomicBoolean();
+
+        ConnectionHandler(PhysicalConnection physical) {
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (returned.compareAndSet(false, true)) {
+                        release(physical);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned.get() || physical.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + physical.connection;
+                default:
+                    break;
+            }
+            if (returned.get()) {
+                throw new SQLException("连接已归还连接池");
+            }
+            final Object result = invokeTarget(physical, physical.connection, method, args);
+            if (result instanceof Statement) {
+                return wrapStatement((Statement) result, (Connection) proxy, method.getReturnType());
+            }
+            return result;
+        }
+
+        private Statement wrapStatement(Statement statement, Connection connection, Class<?> type) {
+            final Class<?> face = type == CallableStatement.class || type == PreparedStatement.class ? type : Statement.class;
+            return (Statement) Proxy.newProxyInstance(JdbcConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{face}, new StatementHandler(physical, statement, connection));
+        }
+    }
+
+    /**
+     * 语句的代理 抛出SQLException时标记连接损坏，getConnection返回连接代理
+     */
+    private static class StatementHandler implements InvocationHandler {
+        private final PhysicalConnection physical;
+        private final Statement statement;
+        private final Connection connection;
+
+        StatementHandler(PhysicalConnection physical, Statement statement, Connection connection) {
+            this.physical = physical;
+            this.statement = statement;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "getConnection":
+                    return connection;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + statement;
+                default:
+                    return invokeTarget(physical, statement, method, args);
+            }
+        }
+    }
+
+    /**
+     * 调用被代理的对象 抛出SQLException时标记连接损坏
+     */
+    private static Object invokeTarget(PhysicalConnection physical, Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof SQLException) {
+                physical.broken = true;
+            }
+            throw e.getCause();
+        }
+    }
+}
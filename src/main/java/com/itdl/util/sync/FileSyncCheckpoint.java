@@ -0,0 +1,108 @@
+package com.itdl.util.sync;
+
+import com.alibaba.fastjson.JSON;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * @Description dataworks文件增量同步的本地检查点，记录上次同步时每个文件的修改时间和内容摘要
+ * 检查点只在一次同步成功结束后整体写入，写入时先写临时文件再原子替换
+ * @Author itdl
+ * @Date 2026/10/17 03:45
+ */
+@Slf4j
+@Data
+public class FileSyncCheckpoint {
+    /**所属项目*/
+    private String project;
+    /**同步的文件夹*/
+    private String folderPath;
+    /**文件所属功能模块 未指定时为null*/
+    private String userType;
+    /**文件代码类型 未指定时为null*/
+    private String fileTypes;
+    /**上次同步完成的时间 毫秒时间戳*/
+    private long syncedAt;
+    /**文件状态 key为文件id*/
+    private Map<Long, FileState> files = new HashMap<>();
+
+    /**
+     * 读取检查点 文件不存在、无法解析或项目、文件夹、过滤条件不一致时返回空检查点，即全量同步
+     * 过滤条件不同时列出的文件集合不同，沿用旧检查点会把过滤掉的文件当作已删除
+     * @param file 检查点文件
+     * @param project 项目
+     * @param folderPath 文件夹
+     * @param userType 文件所属功能模块
+     * @param fileTypes 文件代码类型
+     */
+    public static FileSyncCheckpoint load(File file, String project, String folderPath, String userType, String fileTypes) {
+        userType = emptyToNull(userType);
+        fileTypes = emptyToNull(fileTypes);
+        if (file.exists()) {
+            try {
+                final String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+                final FileSyncCheckpoint checkpoint = JSON.parseObject(json, FileSyncCheckpoint.class);
+                if (checkpoint != null && Objects.equals(project, checkpoint.getProject())
+                        && Objects.equals(folderPath, checkpoint.getFolderPath())
+                        && Objects.equals(userType, checkpoint.getUserType())
+                        && Objects.equals(fileTypes, checkpoint.getFileTypes())) {
+                    return checkpoint;
+                }
+                log.warn("===>>同步检查点的项目、文件夹或过滤条件不一致，执行全量同步：{}", file.getAbsolutePath());
+            } catch (Exception e) {
+                log.warn("===>>读取同步检查点失败，执行全量同步：{}", e.getMessage());
+            }
+        }
+        final FileSyncCheckpoint checkpoint = new FileSyncCheckpoint();
+        checkpoint.setProject(project);
+        checkpoint.setFolderPath(folderPath);
+        checkpoint.setUserType(userType);
+        checkpoint.setFileTypes(fileTypes);
+        return checkpoint;
+    }
+
+    /**
+     * 空字符串和null都表示不过滤
+     */
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /**
+     * 保存检查点
+     * @param file 检查点文件
+     */
+    public void save(File file) throws IOException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("创建检查点目录失败：" + parent.getAbsolutePath());
+        }
+        final File temp = new File(parent, file.getName() + ".tmp");
+        Files.write(temp.toPath(), JSON.toJSONString(this).getBytes(StandardCharsets.UTF_8));
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 单个文件上次同步时的状态
+     */
+    @Data
+    public static class FileState {
+        /**文件id*/
+        private Long fileId;
+        /**文件名*/
+        private String fileName;
+        /**最后修改时间*/
+        private Long lastEditTime;
+        /**内容的md5摘要*/
+        private String contentHash;
+    }
+}
@@ -0,0 +1,22 @@
+package com.itdl.util.sync;
+
+import lombok.Data;
+
+/**
+ * @Description dataworks文件增量同步的结果
+ * @Author itdl
+ * @Date 2026/10/17 03:45
+ */
+@Data
+public class FileSyncResult {
+    /**新增的文件数*/
+    private int added;
+    /**内容变化的文件数*/
+    private int changed;
+    /**修改时间变化但内容未变的文件数*/
+    private int unchanged;
+    /**已删除的文件数*/
+    private int deleted;
+    /**获取内容失败的文件数 下次同步时重新获取*/
+    private int failed;
+}
@@ -0,0 +1,24 @@
+package com.itdl.util.tunnel;
+
+import lombok.Data;
+
+/**
+ * @Description Tunnel并发下载参数
+ * 内存中最多同时保留 在途批次数 × 每批记录数 条记录：按顺序回调时如果第一个区间最慢，
+ * 后面已下载完的区间都要等它，此时达到最坏情况，默认为 4 × 线程数 × 50000 条
+ * @Author itdl
+ * @Date 2026/10/17 04:45
+ */
+@Data
+public class DownloadOption {
+    /**分区 如pt='20221010' 非分区表或下载整表时不传*/
+    private String partition;
+    /**并发下载的线程数*/
+    private int threads = 4;
+    /**true按记录顺序回调 false谁先下载完谁先回调*/
+    private boolean ordered = false;
+    /**每批最多的记录数 即单个区间的大小上限，回调每次拿到的记录不超过该值*/
+    private long batchRecords = 50000L;
+    /**同时在途(下载中和已下载等待回调)的批次数上限 小于等于0时为线程数的4倍*/
+    private int maxInFlightBatches = 0;
+}
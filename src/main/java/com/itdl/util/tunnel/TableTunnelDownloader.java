@@ -0,0 +1,138 @@
+package com.itdl.util.tunnel;
+
+import com.aliyun.odps.Odps;
+import com.aliyun.odps.PartitionSpec;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.tunnel.TableTunnel;
+import com.aliyun.odps.tunnel.TunnelException;
+import com.aliyun.odps.tunnel.io.TunnelRecordReader;
+import com.itdl.common.base.ResultCode;
+import com.itdl.common.exception.BizException;
+import com.itdl.util.metrics.CallMetrics;
+import com.itdl.util.async.ParallelTaskRunner;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.ObjectUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @Description 基于TableTunnel的整表/分区并发下载，按记录数切分为多个区间，多个线程同时读取不同区间
+ * 每个区间读取完成后作为一批交给调用方，区间大小有上限，在途的区间数量有上限，内存占用可控
+ * 最坏情况下内存中同时保留 在途批次数 × 每批记录数 条记录，两者都可以通过DownloadOption设置
+ * @Author itdl
+ * @Date 2026/10/17 03:22
+ */
+@Slf4j
+public class TableTunnelDownloader {
+    /**单个区间最少的记录数 太小会产生过多的请求*/
+    private static final long MIN_RANGE_SIZE = 1000L;
+
+    private final Odps odps;
+
+    public TableTunnelDownloader(Odps odps) {
+        this.odps = odps;
+    }
+
+    /**
+     * 并发下载整表或分区
+     * @param tableName 表名
+     * @param partition 分区 如pt='20221010' 非分区表或下载整表时不传
+     * @param threads 并发线程数
+     * @param ordered true按记录顺序回调 false谁先下载完谁先回调
+     * @param callBack 每个区间的回调 在调用线程中执行
+     * @return 表或分区的总记录数
+     */
+    public long download(String tableName, String partition, int threads, boolean ordered, BatchCallBack callBack) {
+        final DownloadOption option = new DownloadOption();
+        option.setPartition(partition);
+        option.setThreads(threads);
+        option.setOrdered(ordered);
+        return download(tableName, option, callBack);
+    }
+
+    /**
+     * 并发下载整表或分区
+     * @param tableName 表名
+     * @param option 下载参数 分区、并发数、每批记录数和在途批次数
+     * @param callBack 每个区间的回调 在调用线程中执行
+     * @return 表或分区的总记录数
+     */
+    public long download(String tableName, DownloadOption option, BatchCallBack callBack) {
+        final String partition = option.getPartition();
+        final int threads = Math.max(1, option.getThreads());
+        final String project = odps.getDefaultProject();
+        final TableTunnel.DownloadSession session;
+        try {
+            final TableTunnel tunnel = new TableTunnel(odps);
+            session = ObjectUtils.isEmpty(partition)
+                    ? tunnel.createDownloadSession(project, tableName)
+                    : tunnel.createDownloadSession(project, tableName, new PartitionSpec(partition));
+        } catch (TunnelException e) {
+            e.printStackTrace();
+            throw new BizException(ResultCode.MAX_COMPUTE_TUNNEL_READ_ERR);
+        }
+
+        final long recordCount = session.getRecordCount();
+        final List<long[]> ranges = splitRanges(recordCount, threads, option.getBatchRecords());
+        log.info("===>>创建下载会话：{}，表：{}，记录数：{}，区间数：{}", session.getId(), tableName, recordCount, ranges.size());
+
+        ParallelTaskRunner.run(ranges, range -> readRange(session, range), threads, option.getMaxInFlightBatches(),
+                option.isOrdered(), "tunnel-download",
+                new ParallelTaskRunner.CallBack<long[], List<Record>>() {
+                    @Override
+                    public void onSuccess(long[] range, List<Record> records) {
+                        callBack.handle(range[0], records);
+                    }
+
+                    @Override
+                    public void onError(long[] range, Exception e) {
+                        // 整表下载任何一个区间失败结果都不完整 直接失败
+                        log.error("===>>下载区间失败：[{}, {})", range[0], range[0] + range[1], e);
+                        throw new BizException(ResultCode.MAX_COMPUTE_TUNNEL_READ_ERR);
+                    }
+                });
+        return recordCount;
+    }
+
+    /**
+     * 读取一个区间的记录
+     */
+    private List<Record> readRange(TableTunnel.DownloadSession session, long[] range) throws Exception {
+        final long start = System.nanoTime();
+        List<Record> records = new ArrayList<>((int) range[1]);
+        try (TunnelRecordReader reader = session.openRecordReader(range[0], range[1])) {
+            Record record;
+            while ((record = reader.read()) != null) {
+                records.add(record);
+            }
+            CallMetrics.bytes(CallMetrics.SDK, "table_download", reader.getTotalBytes());
+        }
+        CallMetrics.record(CallMetrics.SDK, "table_download", start);
+        CallMetrics.rows(CallMetrics.SDK, "table_download", records.size());
+        return records;
+    }
+
+    /**
+     * 将记录数切分为区间 区间数至少为线程数，单个区间不超过每批记录数
+     * @return 区间列表 每个元素为[起始位置, 记录数]
+     */
+    private List<long[]> splitRanges(long recordCount, int threads, long batchRecords) {
+        final long perThread = (recordCount + threads - 1) / threads;
+        final long rangeSize = Math.max(1L, Math.min(batchRecords, Math.max(MIN_RANGE_SIZE, perThread)));
+        List<long[]> ranges = new ArrayList<>();
+        for (long start = 0; start < recordCount; start += rangeSize) {
+            ranges.add(new long[]{start, Math.min(rangeSize, recordCount - start)});
+        }
+        return ranges;
+    }
+
+    public interface BatchCallBack {
+        /**
+         * 每个区间下载完成后回调
+         * @param start 区间的起始位置
+         * @param records 区间内的记录
+         */
+        void handle(long start, List<Record> records);
+    }
+}
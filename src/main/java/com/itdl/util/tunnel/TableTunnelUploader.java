@@ -0,0 +1,235 @@
+package com.itdl.util.tunnel;
+
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.alibaba.fastjson.util.TypeUtils;
+import com.aliyun.odps.Column;
+import com.aliyun.odps.Odps;
+import com.aliyun.odps.OdpsException;
+import com.aliyun.odps.PartitionSpec;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.data.Char;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.data.RecordWriter;
+import com.aliyun.odps.data.Varchar;
+import com.aliyun.odps.tunnel.TableTunnel;
+import com.aliyun.odps.tunnel.io.CompressOption;
+import com.itdl.common.base.ResultCode;
+import com.itdl.common.exception.BizException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.ObjectUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @Description 基于TableTunnel的批量上传，一次上传只使用一个上传会话，
+ * 多个线程从同一个数据源拉取数据，各自写入不同的block，全部写完后统一提交
+ * @Author itdl
+ * @Date 2026/10/17 03:21
+ */
+@Slf4j
+public class TableTunnelUploader {
+    /**每个线程每次从数据源拉取的行数*/
+    private static final int FETCH_BATCH = 1000;
+
+    private final Odps odps;
+
+    public TableTunnelUploader(Odps odps) {
+        this.odps = odps;
+    }
+
+    /**
+     * 上传数据
+     * @param tableName 表名
+     * @param rows 数据 key为字段名，表中有但数据中没有的字段写入null
+     * @param option 上传参数
+     * @return 上传的总行数
+     */
+    public long upload(String tableName, Iterator<Map<String, Object>> rows, UploadOption option) {
+        final String project = odps.getDefaultProject();
+        final TableTunnel.UploadSession session;
+        try {
+            final PartitionSpec partitionSpec = buildPartition(tableName, option);
+            final TableTunnel tunnel = new TableTunnel(odps);
+            session = partitionSpec == null
+                    ? tunnel.createUploadSession(project, tableName, option.isOverwrite())
+                    : tunnel.createUploadSession(project, tableName, partitionSpec, option.isOverwrite());
+        } catch (OdpsException e) {
+            e.printStackTrace();
+            throw new BizException(ResultCode.MAX_COMPUTE_TUNNEL_WRITE_ERR);
+        }
+        log.info("===>>创建上传会话：{}，表：{}，分区：{}", session.getId(), tableName, option.getPartition());
+
+        final CompressOption compressOption = new CompressOption(option.getCompressAlgorithm(), 1, 0);
+        final AtomicLong nextBlockId = new AtomicLong();
+        final AtomicLong total = new AtomicLong();
+        final List<Long> blockIds = Collections.synchronizedList(new ArrayList<>());
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final int threads = Math.max(1, option.getThreads());
+        final AtomicInteger index = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            // 守护线程 调用方异常退出时不会阻止jvm关闭
+            final Thread thread = new Thread(r, "tunnel-upload-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        writeBlocks(session, rows, option, compressOption, nextBlockId, blockIds, total, failure);
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } catch (ExecutionException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (failure.get() != null) {
+            // 未提交的会话不会写入任何数据
+            log.error("===>>上传失败，会话不提交：{}", session.getId(), failure.get());
+            throw new BizException(ResultCode.MAX_COMPUTE_TUNNEL_WRITE_ERR);
+        }
+
+        try {
+            final Long[] blocks = blockIds.toArray(new Long[0]);
+            Arrays.sort(blocks);
+            session.commit(blocks);
+        } catch (OdpsException | IOException e) {
+            e.printStackTrace();
+            throw new BizException(ResultCode.MAX_COMPUTE_TUNNEL_WRITE_ERR);
+        }
+        log.info("===>>上传完成：{}，block数：{}，行数：{}", session.getId(), blockIds.size(), total.get());
+        return total.get();
+    }
+
+    /**
+     * 单个线程循环拉取数据并写入自己的block，block写满后换新的block
+     */
+    private void writeBlocks(TableTunnel.UploadSession session, Iterator<Map<String, Object>> rows, UploadOption option,
+                             CompressOption compressOption, AtomicLong nextBlockId, List<Long> blockIds,
+                             AtomicLong total, AtomicReference<Exception> failure) throws IOException, OdpsException {
+        final List<Column> columns = session.getSchema().getColumns();
+        RecordWriter writer = null;
+        long blockRows = 0;
+        try {
+            List<Map<String, Object>> batch;
+            while (failure.get() == null && !(batch = nextBatch(rows)).isEmpty()) {
+                for (Map<String, Object> row : batch) {
+                    if (writer == null) {
+                        final long blockId = nextBlockId.getAndIncrement();
+                        writer = session.openRecordWriter(blockId, compressOption);
+                        blockIds.add(blockId);
+                    }
+                    writer.write(buildRecord(session.newRecord(), columns, row));
+                    if (++blockRows >= option.getBlockRows()) {
+                        writer.close();
+                        writer = null;
+                        blockRows = 0;
+                    }
+                }
+                total.addAndGet(batch.size());
+            }
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * 从共享的数据源中拉取一批数据
+     */
+    private List<Map<String, Object>> nextBatch(Iterator<Map<String, Object>> rows) {
+        synchronized (rows) {
+            List<Map<String, Object>> batch = new ArrayList<>(FETCH_BATCH);
+            while (batch.size() < FETCH_BATCH && rows.hasNext()) {
+                batch.add(rows.next());
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * 构建分区 需要时自动创建
+     */
+    private PartitionSpec buildPartition(String tableName, UploadOption option) throws OdpsException {
+        if (ObjectUtils.isEmpty(option.getPartition())) {
+            return null;
+        }
+        final PartitionSpec partitionSpec = new PartitionSpec(option.getPartition());
+        if (option.isCreatePartition()) {
+            odps.tables().get(tableName).createPartition(partitionSpec, true);
+        }
+        return partitionSpec;
+    }
+
+    /**
+     * 按表的字段类型填充记录
+     */
+    private Record buildRecord(Record record, List<Column> columns, Map<String, Object> row) {
+        for (int i = 0; i < columns.size(); i++) {
+            final Column column = columns.get(i);
+            final Object value = row.get(column.getName());
+            if (value != null) {
+                record.set(i, convertValue(value, column));
+            }
+        }
+        return record;
+    }
+
+    /**
+     * 将值转换为字段类型对应的java类型
+     */
+    private Object convertValue(Object value, Column column) {
+        final ParserConfig config = ParserConfig.getGlobalInstance();
+        switch (column.getTypeInfo().getOdpsType()) {
+            case BIGINT:
+                return TypeUtils.cast(value, Long.class, config);
+            case INT:
+                return TypeUtils.cast(value, Integer.class, config);
+            case SMALLINT:
+                return TypeUtils.cast(value, Short.class, config);
+            case TINYINT:
+                return TypeUtils.cast(value, Byte.class, config);
+            case DOUBLE:
+                return TypeUtils.cast(value, Double.class, config);
+            case FLOAT:
+                return TypeUtils.cast(value, Float.class, config);
+            case BOOLEAN:
+                return TypeUtils.cast(value, Boolean.class, config);
+            case DECIMAL:
+                return TypeUtils.cast(value, BigDecimal.class, config);
+            case DATETIME:
+                return TypeUtils.cast(value, Date.class, config);
+            case DATE:
+                return TypeUtils.cast(value, java.sql.Date.class, config);
+            case TIMESTAMP:
+                return TypeUtils.cast(value, java.sql.Timestamp.class, config);
+            case STRING:
+                return value.toString();
+            case VARCHAR:
+                return value instanceof Varchar ? value : new Varchar(value.toString());
+            case CHAR:
+                return value instanceof Char ? value : new Char(value.toString());
+            default:
+                return value;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.itdl.util.tunnel;
+
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.tunnel.io.TunnelRecordReader;
+import com.itdl.common.base.ResultCode;
+import com.itdl.common.exception.BizException;
+import com.itdl.util.metrics.CallMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * @Description 基于Tunnel的流式记录迭代器，边下载边消费，不在内存中缓存整个结果集
+ * @Author itdl
+ * @Date 2026/10/17 03:12
+ */
+@Slf4j
+public class TunnelRecordIterator implements Iterator<Record>, Closeable {
+    /**tunnel记录读取器*/
+    private final TunnelRecordReader reader;
+    /**结果的表结构*/
+    private final TableSchema schema;
+    /**结果总记录数*/
+    private final long recordCount;
+    /**预读的下一条记录*/
+    private Record next;
+    /**是否已读取完毕或已关闭*/
+    private boolean finished;
+    /**已读取的记录数*/
+    private long readCount;
+
+    public TunnelRecordIterator(TunnelRecordReader reader, TableSchema schema, long recordCount) {
+        this.reader = reader;
+        this.schema = schema;
+        this.recordCount = recordCount;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        try {
+            next = reader.read();
+        } catch (IOException e) {
+            e.printStackTrace();
+            close();
+            throw new BizException(ResultCode.MAX_COMPUTE_TUNNEL_READ_ERR);
+        }
+        if (next == null) {
+            // 读取完毕 自动释放连接
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Record next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Record record = next;
+        next = null;
+        readCount++;
+        return record;
+    }
+
+    /**
+     * 获取结果的表结构
+     */
+    public TableSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * 获取结果总记录数
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * 关闭读取器 未读取完毕时也可以提前关闭
+     */
+    @Override
+    public void close() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        CallMetrics.rows(CallMetrics.SDK, "tunnel", readCount);
+        CallMetrics.bytes(CallMetrics.SDK, "tunnel", reader.getTotalBytes());
+        try {
+            reader.close();
+        } catch (IOException e) {
+            log.warn("===>>关闭tunnel读取器失败", e);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.itdl.util.tunnel;
+
+import com.aliyun.odps.tunnel.io.CompressOption;
+import lombok.Data;
+
+/**
+ * @Description Tunnel批量上传参数
+ * @Author itdl
+ * @Date 2026/10/17 03:21
+ */
+@Data
+public class UploadOption {
+    /**分区 如pt='20221010',region='hz' 非分区表不传*/
+    private String partition;
+    /**分区不存在时是否自动创建*/
+    private boolean createPartition = true;
+    /**是否覆盖写入 覆盖时提交后会替换表或分区中的原有数据*/
+    private boolean overwrite = false;
+    /**并发上传的线程数 每个线程写自己的block*/
+    private int threads = 4;
+    /**每个block最多写入的行数 写满后换下一个block*/
+    private long blockRows = 500000L;
+    /**压缩算法*/
+    private CompressOption.CompressAlgorithm compressAlgorithm = CompressOption.CompressAlgorithm.ODPS_ZLIB;
+}
@@ -0,0 +1,115 @@
+package com.itdl.controller;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.itdl.common.base.ResultCode;
+import com.itdl.common.exception.BizException;
+import com.itdl.conn.param.MaxComputeSdkConnParam;
+import com.itdl.controller.param.StreamQueryParam;
+import com.itdl.fake.FakeCloudServer;
+import com.itdl.util.MaxComputeJdbcUtil;
+import com.itdl.util.MaxComputeSdkUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryStreamControllerTest {
+    private static final int ROWS = 25;
+
+    private FakeCloudServer server;
+    private MaxComputeSdkConnParam param;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        final FakeCloudServer.Config config = new FakeCloudServer.Config();
+        config.setServerThreads(8);
+        config.setTables(5);
+        config.setColumns(3);
+        config.setResultRows(ROWS);
+        config.setQueueMillis(20L);
+        config.setInstanceLatencyMillis(50L);
+        config.setApiLatencyMillis(0L);
+        config.setNullTextValues(true);
+        server = new FakeCloudServer(config).start();
+
+        param = new MaxComputeSdkConnParam();
+        param.setAliyunAccessId("fake");
+        param.setAliyunAccessKey("fake");
+        param.setProjectName("demo");
+        param.setMaxComputeEndpoint(server.getOdpsEndpoint());
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void streamsRowsAndEndsWithRowCount() throws IOException {
+        final List<String> lines = stream(controller(new MaxComputeSdkUtil(param)), "select * from ods_fake_00001;");
+        assertEquals(ROWS + 1, lines.size());
+        final JSONObject row = JSON.parseObject(lines.get(6));
+        assertEquals(6L, row.getLongValue("c0"));
+        // tunnel记录中的字符串\N原样返回 空值为null
+        assertEquals("\\N", row.getString("c1"));
+        assertTrue(JSON.parseObject(lines.get(1)).containsKey("c1"));
+        assertNull(JSON.parseObject(lines.get(1)).get("c1"));
+
+        final JSONObject end = JSON.parseObject(lines.get(ROWS));
+        assertEquals("ok", end.getString("_end"));
+        assertEquals(ROWS, end.getLongValue("rows"));
+    }
+
+    @Test
+    void failureMidStreamEndsWithErrorLine() throws IOException {
+        final MaxComputeSdkUtil failing = new MaxComputeSdkUtil(param) {
+            @Override
+            public long queryData(String querySql, boolean fullScan, CallBack.RecordCallBack callBack) {
+                super.queryData("select * from ods_fake_00001 limit 0, 2;", fullScan, callBack);
+                throw new BizException(ResultCode.MAX_COMPUTE_TUNNEL_READ_ERR);
+            }
+        };
+        final List<String> lines = stream(controller(failing), "select * from ods_fake_00001;");
+        assertEquals(3, lines.size());
+        final JSONObject end = JSON.parseObject(lines.get(2));
+        assertEquals("error", end.getString("_end"));
+        assertEquals(ResultCode.MAX_COMPUTE_TUNNEL_READ_ERR.getCode(), end.getString("code"));
+        assertEquals(2, end.getLongValue("rows"));
+    }
+
+    @Test
+    void rejectsBlankAndWritingSqlBeforeRunning() {
+        final QueryStreamController controller = controller(new MaxComputeSdkUtil(param));
+        for (String sql : new String[]{null, "", "   ", "insert into t select 1;", "drop table ods_fake_00001;",
+                "select 1; drop table ods_fake_00001;", "with a as (select 1) insert overwrite table t select * from a"}) {
+            final StreamQueryParam queryParam = new StreamQueryParam();
+            queryParam.setSql(sql);
+            final BizException e = assertThrows(BizException.class, () -> controller.stream(queryParam));
+            assertEquals(ResultCode.QUERY_SQL_NOT_ALLOWED_ERR.getCode(), e.getCode());
+        }
+    }
+
+    private static QueryStreamController controller(MaxComputeSdkUtil util) {
+        final StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("maxComputeSdkUtil", util);
+        return new QueryStreamController(beanFactory.getBeanProvider(MaxComputeSdkUtil.class),
+                beanFactory.getBeanProvider(MaxComputeJdbcUtil.class));
+    }
+
+    private static List<String> stream(QueryStreamController controller, String sql) throws IOException {
+        final StreamQueryParam queryParam = new StreamQueryParam();
+        queryParam.setSql(sql);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        controller.stream(queryParam).getBody().writeTo(out);
+        return Arrays.asList(new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n"));
+    }
+}
@@ -0,0 +1,954 @@
+package com.itdl.fake;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.commons.proto.ProtobufRecordStreamReader;
+import com.aliyun.odps.commons.proto.ProtobufRecordStreamWriter;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.tunnel.io.CompressOption;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @Description 进程内的maxCompute/dataworks模拟服务，用于离线压测
+ * 只实现工具类用到的接口：ODPS REST的SQL实例提交、状态、CSV结果、表列表和表结构，
+ * tunnel的实例结果下载、表下载和表上传(数据使用sdk的protobuf格式编解码，支持不压缩和deflate)，
+ * dataworks open api的GetMetaDBTableList、ListFiles、GetFile、CheckMetaTable、GetMetaDBInfo，
+ * 不校验签名，实例执行耗时和接口耗时可以配置
+ * @Author itdl
+ * @Date 2026/10/17 03:36
+ */
+@Slf4j
+public class FakeCloudServer implements Closeable {
+    private static final String XML_HEAD = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+    private static final Pattern INSTANCE_PATH = Pattern.compile("/api/projects/([^/]+)/instances/([^/?]+)");
+    private static final Pattern PROJECT_PATH = Pattern.compile("/api/projects/([^/?]+)");
+    private static final Pattern TABLE_PATH = Pattern.compile("/api/projects/([^/]+)/tables/([^/?]+)");
+    private static final Pattern TUNNEL_INSTANCE_PATH = Pattern.compile("/tunnel/projects/([^/]+)/instances/([^/?]+)");
+    private static final Pattern TUNNEL_TABLE_PATH = Pattern.compile("/tunnel/projects/([^/]+)/tables/([^/?]+)");
+    private static final Pattern ROW_RANGE = Pattern.compile("\\((\\d+),(\\d+)\\)");
+    private static final Pattern COUNT_SQL = Pattern.compile("^\\s*select\\s+count\\(1\\)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WINDOW_COUNT_SQL = Pattern.compile("count\\(1\\)\\s+over\\s*\\(\\s*\\)\\s+as\\s+(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LIMIT_SQL = Pattern.compile("limit\\s+(\\d+)\\s*,\\s*(\\d+)\\s*;?\\s*$", Pattern.CASE_INSENSITIVE);
+
+    private final Config config;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, FakeInstance> instances = new ConcurrentHashMap<>();
+    private final AtomicLong instanceSeq = new AtomicLong();
+    /**tunnel下载会话 key为会话id*/
+    private final Map<String, FakeDownload> downloads = new ConcurrentHashMap<>();
+    /**tunnel上传会话 key为会话id*/
+    private final Map<String, FakeUpload> uploads = new ConcurrentHashMap<>();
+    private final AtomicLong sessionSeq = new AtomicLong();
+    /**被修改过的dataworks文件 key为文件id*/
+    private final Map<Long, FakeFile> fileEdits = new ConcurrentHashMap<>();
+    /**被删除的dataworks文件id*/
+    private final Set<Long> deletedFiles = ConcurrentHashMap.newKeySet();
+    /**接下来需要返回失败的实例状态请求数*/
+    private final AtomicInteger statusFailures = new AtomicInteger();
+    /**接下来需要返回失败的表列表请求数*/
+    private final AtomicInteger tableListFailures = new AtomicInteger();
+    /**收到的表列表请求数*/
+    private final AtomicInteger tableListRequests = new AtomicInteger();
+    /**模拟服务启动时间 作为表的创建和修改时间*/
+    private final long startTime = System.currentTimeMillis();
+
+    public FakeCloudServer(Config config) throws IOException {
+        this.config = config;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", config.getPort()), 1024);
+        this.executor = Executors.newFixedThreadPool(config.getServerThreads());
+        server.setExecutor(executor);
+        server.createContext("/api", this::handleOdps);
+        server.createContext("/tunnel", this::handleTunnel);
+        server.createContext("/", this::handleDataWorks);
+    }
+
+    /**
+     * 启动服务
+     */
+    public FakeCloudServer start() {
+        server.start();
+        log.info("===>>模拟服务已启动，odps地址：{}，dataworks地址：{}", getOdpsEndpoint(), getDataWorksEndpoint());
+        return this;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * maxCompute的endpoint 设置到MaxComputeSdkConnParam.maxComputeEndpoint
+     */
+    public String getOdpsEndpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api";
+    }
+
+    /**
+     * dataworks的endpoint 设置到DataWorksOpenApiConnParam.endPoint
+     */
+    public String getDataWorksEndpoint() {
+        return "127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    /**
+     * 修改dataworks文件 修改时间递增
+     * @param fileId 文件id 从10000开始
+     * @param content 新的文件内容 null表示只更新修改时间，内容不变
+     */
+    public void editFile(long fileId, String content) {
+        fileEdits.compute(fileId, (id, old) -> {
+            final FakeFile file = new FakeFile();
+            file.setLastEditTime((old == null ? startTime : old.getLastEditTime()) + 1000L);
+            file.setContent(content == null && old != null ? old.getContent() : content);
+            return file;
+        });
+    }
+
+    /**
+     * 删除dataworks文件 之后的文件列表不再包含该文件
+     * @param fileId 文件id 从10000开始
+     */
+    public void deleteFile(long fileId) {
+        deletedFiles.add(fileId);
+    }
+
+    /**
+     * 让接下来的若干次实例状态请求返回500 模拟网络抖动
+     * @param times 失败次数
+     */
+    public void failStatusRequests(int times) {
+        statusFailures.set(times);
+    }
+
+    /**
+     * 让接下来的若干次表列表请求返回不可重试的错误
+     * @param times 失败次数
+     */
+    public void failTableListRequests(int times) {
+        tableListFailures.set(times);
+    }
+
+    /**
+     * 收到的表列表请求数 包括返回失败的请求
+     */
+    public int getTableListRequests() {
+        return tableListRequests.get();
+    }
+
+    /**
+     * 实例是否已被停止
+     * @param instanceId 实例id
+     */
+    public boolean isCancelled(String instanceId) {
+        final FakeInstance instance = instances.get(instanceId);
+        return instance != null && instance.cancelled;
+    }
+
+    // ==================== ODPS REST ====================
+
+    private void handleOdps(HttpExchange exchange) throws IOException {
+        try {
+            final String method = exchange.getRequestMethod();
+            final String path = exchange.getRequestURI().getPath();
+            final Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            final byte[] body = readBody(exchange);
+
+            if ("GET".equals(method) && path.endsWith("/tunnel") && params.containsKey("service")) {
+                // tunnel地址 sdk在前面拼上odps地址的协议
+                send(exchange, 200, "text/plain", "127.0.0.1:" + server.getAddress().getPort() + "/tunnel");
+                return;
+            }
+            if ("GET".equals(method) && path.endsWith("/logview/host")) {
+                send(exchange, 200, "text/plain", "http://127.0.0.1:" + server.getAddress().getPort());
+                return;
+            }
+            if ("POST".equals(method) && path.endsWith("/authorization") && params.containsKey("sign_bearer_token")) {
+                // jdbc提交sql前为logview申请的token
+                sendXml(exchange, 200, XML_HEAD + "<Authorization><Result>fake-bearer-token</Result></Authorization>");
+                return;
+            }
+            if ("GET".equals(method) && PROJECT_PATH.matcher(path).matches()) {
+                sendProject(exchange, PROJECT_PATH.matcher(path).replaceFirst("$1"));
+                return;
+            }
+            if ("POST".equals(method) && path.endsWith("/instances")) {
+                createInstance(exchange, path, new String(body, StandardCharsets.UTF_8));
+                return;
+            }
+            Matcher matcher = INSTANCE_PATH.matcher(path);
+            if ("GET".equals(method) && matcher.matches()) {
+                final FakeInstance instance = instances.get(matcher.group(2));
+                if (instance == null) {
+                    sendError(exchange, 404, "NoSuchObject", "instance not found");
+                } else if (!params.containsKey("result") && statusFailures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                    sendError(exchange, 500, "InternalServerError", "injected status failure");
+                } else if (params.containsKey("taskstatus")) {
+                    sendXml(exchange, 200, taskStatusXml(instance));
+                } else if (params.containsKey("result")) {
+                    sendXml(exchange, 200, resultXml(instance));
+                } else {
+                    sendInstanceStatus(exchange, instance);
+                }
+                return;
+            }
+            if ("PUT".equals(method) && matcher.matches()) {
+                // 停止实例
+                final FakeInstance instance = instances.get(matcher.group(2));
+                if (instance != null) {
+                    instance.cancelled = true;
+                }
+                sendXml(exchange, 200, "");
+                return;
+            }
+            matcher = TABLE_PATH.matcher(path);
+            if ("GET".equals(method) && matcher.matches()) {
+                sendTable(exchange, matcher.group(2));
+                return;
+            }
+            if ("GET".equals(method) && path.endsWith("/tables")) {
+                sendTableList(exchange, params);
+                return;
+            }
+            log.warn("===>>模拟服务未实现的odps接口：{} {}", method, exchange.getRequestURI());
+            sendError(exchange, 404, "NoSuchObject", "not implemented in fake server");
+        } catch (Exception e) {
+            log.error("===>>模拟服务处理odps请求出错", e);
+            sendError(exchange, 500, "InternalServerError", String.valueOf(e.getMessage()));
+        }
+    }
+
+    private void createInstance(HttpExchange exchange, String path, String body) throws IOException {
+        sleep(config.getApiLatencyMillis());
+        final String sql = unescapeXml(between(body, "<Query>", "</Query>"));
+        final String id = String.format("%tY%<tm%<td%<tH%<tM%<tS%06d", new Date(), instanceSeq.incrementAndGet());
+        // 任务名由调用方指定 sdk为AnonymousSQLTask，jdbc为jdbc_sql_task
+        final String taskName = between(between(body, "<SQL>", "</SQL>"), "<Name>", "</Name>");
+        instances.put(id, new FakeInstance(id, taskName.isEmpty() ? "AnonymousSQLTask" : taskName, sql, System.currentTimeMillis()));
+        final String host = exchange.getRequestHeaders().getFirst("Host");
+        exchange.getResponseHeaders().add("Location", "http://" + host + path + "/" + id);
+        sendXml(exchange, 201, "");
+    }
+
+    private void sendInstanceStatus(HttpExchange exchange, FakeInstance instance) throws IOException {
+        sleep(config.getApiLatencyMillis());
+        final long now = System.currentTimeMillis();
+        exchange.getResponseHeaders().add("x-odps-owner", "ALIYUN$fake@aliyun.com");
+        exchange.getResponseHeaders().add("x-odps-start-time", rfc822(instance.submitTime));
+        // sdk要求始终返回结束时间 未结束时返回当前时间
+        exchange.getResponseHeaders().add("x-odps-end-time", rfc822(instance.isTerminated(now)
+                ? instance.submitTime + config.getQueueMillis() + config.getInstanceLatencyMillis() : now));
+        sendXml(exchange, 200, XML_HEAD + "<Instance><Status>" + (instance.isTerminated(now) ? "Terminated" : "Running") + "</Status></Instance>");
+    }
+
+    private String taskStatusXml(FakeInstance instance) {
+        sleep(config.getApiLatencyMillis());
+        final long now = System.currentTimeMillis();
+        final String taskStatus;
+        if (instance.cancelled) {
+            taskStatus = "Cancelled";
+        } else if (now < instance.submitTime + config.getQueueMillis()) {
+            taskStatus = "Waiting";
+        } else if (!instance.isTerminated(now)) {
+            taskStatus = "Running";
+        } else {
+            taskStatus = "Success";
+        }
+        return XML_HEAD + "<Instance><Status>" + (instance.isTerminated(now) ? "Terminated" : "Running") + "</Status>"
+                + "<Tasks><Task Type=\"SQL\"><Name>" + instance.taskName + "</Name>"
+                + "<StartTime>" + rfc822(instance.submitTime) + "</StartTime>"
+                + "<Status>" + taskStatus + "</Status></Task></Tasks></Instance>";
+    }
+
+    private String resultXml(FakeInstance instance) {
+        sleep(config.getApiLatencyMillis());
+        return XML_HEAD + "<Instance><Tasks><Task Type=\"SQL\"><Name>" + instance.taskName + "</Name>"
+                + "<Result Transform=\"\" Format=\"csv\"><![CDATA[" + buildCsv(instance.sql) + "]]></Result>"
+                + "</Task></Tasks></Instance>";
+    }
+
+    /**
+     * 根据sql生成结果 count语句返回总行数，分页语句返回对应区间，其他返回配置的行数
+     * 带count(1) over()窗口列的语句在每行末尾追加总行数
+     */
+    private String buildCsv(String sql) {
+        StringBuilder csv = new StringBuilder();
+        if (COUNT_SQL.matcher(sql).find()) {
+            return csv.append("\"_c0\"\n\"").append(config.getResultRows()).append("\"\n").toString();
+        }
+        final long[] range = resultRange(sql);
+        final Matcher windowCount = WINDOW_COUNT_SQL.matcher(sql);
+        final String totalColumn = windowCount.find() ? windowCount.group(1) : null;
+        for (int c = 0; c < config.getColumns(); c++) {
+            csv.append(c == 0 ? "" : ",").append("\"c").append(c).append('"');
+        }
+        if (totalColumn != null) {
+            csv.append(",\"").append(totalColumn).append('"');
+        }
+        csv.append('\n');
+        for (long r = range[0]; r < range[0] + range[1]; r++) {
+            for (int c = 0; c < config.getColumns(); c++) {
+                final Object value = cell(r, c);
+                csv.append(c == 0 ? "\"" : ",\"").append(value == null ? "\\N" : value).append('"');
+            }
+            if (totalColumn != null) {
+                csv.append(",\"").append(config.getResultRows()).append('"');
+            }
+            csv.append('\n');
+        }
+        return csv.toString();
+    }
+
+    /**
+     * 非count查询结果的行区间 分页语句返回对应区间，其他返回配置的行数
+     * @return 起始行和行数
+     */
+    private long[] resultRange(String sql) {
+        final Matcher limit = LIMIT_SQL.matcher(sql);
+        if (limit.find()) {
+            final long offset = Long.parseLong(limit.group(1));
+            return new long[]{offset, Math.max(0, Math.min(Long.parseLong(limit.group(2)), config.getResultRows() - offset))};
+        }
+        return new long[]{0, config.getResultRows()};
+    }
+
+    /**
+     * 第row行第column列的值 第0列为行号，其余列每10行有一个空值
+     * 开启nullTextValues时，其余列每10行还有一个字符串"\N"，与空值错开
+     */
+    private Object cell(long row, int column) {
+        if (column == 0) {
+            return row;
+        }
+        if (row % 10 == column) {
+            return null;
+        }
+        if (config.isNullTextValues() && row % 10 == (column + 5) % 10) {
+            return "\\N";
+        }
+        return "value_" + row + "_" + column;
+    }
+
+    /**
+     * 表和查询结果的字段 第0列为bigint，其余为string
+     */
+    private List<Column> columns() {
+        final List<Column> columns = new ArrayList<>(config.getColumns());
+        for (int c = 0; c < config.getColumns(); c++) {
+            columns.add(new Column("c" + c, c == 0 ? OdpsType.BIGINT : OdpsType.STRING, "第" + c + "列"));
+        }
+        return columns;
+    }
+
+    private void sendProject(HttpExchange exchange, String projectName) throws IOException {
+        sleep(config.getApiLatencyMillis());
+        final String xml = XML_HEAD + "<Project><Name>" + projectName + "</Name><Type>managed</Type>"
+                + "<State>AVAILABLE</State><Properties><Property><Name>odps.sql.timezone</Name>"
+                + "<Value>Asia/Shanghai</Value></Property></Properties></Project>";
+        // 项目的所有者和时间从响应头读取
+        exchange.getResponseHeaders().add("x-odps-owner", "ALIYUN$fake@aliyun.com");
+        exchange.getResponseHeaders().add("x-odps-creation-time", rfc822(startTime));
+        exchange.getResponseHeaders().add("Last-Modified", rfc822(startTime));
+        sendXml(exchange, 200, xml);
+    }
+
+    private void sendTableList(HttpExchange exchange, Map<String, String> params) throws IOException {
+        sleep(config.getApiLatencyMillis());
+        final int maxItems = Integer.parseInt(params.getOrDefault("maxitems", "100"));
+        final int start = params.containsKey("marker") && !params.get("marker").isEmpty() ? Integer.parseInt(params.get("marker")) : 0;
+        final int end = Math.min(config.getTables(), start + maxItems);
+        StringBuilder xml = new StringBuilder(XML_HEAD).append("<Tables>");
+        for (int i = start; i < end; i++) {
+            xml.append("<Table><Name>").append(tableName(i)).append("</Name>")
+                    .append("<TableId>").append(i).append("</TableId>")
+                    .append("<Owner>ALIYUN$fake@aliyun.com</Owner>")
+                    .append("<Schema><![CDATA[").append(tableSchemaJson(tableName(i))).append("]]></Schema>")
+                    .append("</Table>");
+        }
+        xml.append("<Marker>").append(end < config.getTables() ? String.valueOf(end) : "").append("</Marker>")
+                .append("<MaxItems>").append(maxItems).append("</MaxItems></Tables>");
+        sendXml(exchange, 200, xml.toString());
+    }
+
+    private void sendTable(HttpExchange exchange, String tableName) throws IOException {
+        sleep(config.getApiLatencyMillis());
+        final String xml = XML_HEAD + "<Table><Name>" + tableName + "</Name><TableId>" + tableName.hashCode() + "</TableId>"
+                + "<Owner>ALIYUN$fake@aliyun.com</Owner><Schema><![CDATA[" + tableSchemaJson(tableName) + "]]></Schema></Table>";
+        sendXml(exchange, 200, xml);
+    }
+
+    private String tableSchemaJson(String tableName) {
+        JSONObject schema = new JSONObject(true);
+        schema.put("tableName", tableName);
+        schema.put("comment", tableName + "的模拟表");
+        schema.put("createTime", startTime / 1000);
+        schema.put("lastDDLTime", startTime / 1000);
+        schema.put("lastModifiedTime", startTime / 1000);
+        schema.put("isVirtualView", false);
+        JSONArray columns = new JSONArray();
+        for (int c = 0; c < config.getColumns(); c++) {
+            JSONObject column = new JSONObject(true);
+            column.put("name", "c" + c);
+            column.put("type", c == 0 ? "bigint" : "string");
+            column.put("comment", "第" + c + "列");
+            columns.add(column);
+        }
+        schema.put("columns", columns);
+        JSONArray partitions = new JSONArray();
+        JSONObject pt = new JSONObject(true);
+        pt.put("name", "pt");
+        pt.put("type", "string");
+        pt.put("comment", "日期分区");
+        partitions.add(pt);
+        schema.put("partitionKeys", partitions);
+        return schema.toJSONString();
+    }
+
+    // ==================== Tunnel ====================
+
+    private void handleTunnel(HttpExchange exchange) throws IOException {
+        try {
+            final String method = exchange.getRequestMethod();
+            final String path = exchange.getRequestURI().getPath();
+            final Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+
+            Matcher matcher = TUNNEL_INSTANCE_PATH.matcher(path);
+            if (matcher.matches()) {
+                final FakeInstance instance = instances.get(matcher.group(2));
+                if (instance == null) {
+                    readBody(exchange);
+                    sendError(exchange, 404, "NoSuchObject", "instance not found");
+                    return;
+                }
+                final String sql = instance.sql;
+                handleDownload(exchange, method, params, () -> {
+                    if (COUNT_SQL.matcher(sql).find()) {
+                        return new FakeDownload(Collections.singletonList(new Column("_c0", OdpsType.BIGINT)), 0, 1, true);
+                    }
+                    final long[] range = resultRange(sql);
+                    return new FakeDownload(columns(), range[0], range[1], false);
+                });
+                return;
+            }
+            matcher = TUNNEL_TABLE_PATH.matcher(path);
+            if (matcher.matches()) {
+                if (params.containsKey("uploads") || params.containsKey("uploadid")) {
+                    handleUpload(exchange, method, params);
+                } else {
+                    handleDownload(exchange, method, params, () -> new FakeDownload(columns(), 0, config.getResultRows(), false));
+                }
+                return;
+            }
+            readBody(exchange);
+            log.warn("===>>模拟服务未实现的tunnel接口：{} {}", method, exchange.getRequestURI());
+            sendError(exchange, 404, "NoSuchObject", "not implemented in fake server");
+        } catch (Exception e) {
+            log.error("===>>模拟服务处理tunnel请求出错", e);
+            sendError(exchange, 500, "InternalServerError", String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * 下载会话 创建、查询状态和按行区间读取数据
+     */
+    private void handleDownload(HttpExchange exchange, String method, Map<String, String> params,
+                                Supplier<FakeDownload> creator) throws IOException {
+        readBody(exchange);
+        if ("POST".equals(method) && params.containsKey("downloads")) {
+            sleep(config.getApiLatencyMillis());
+            final String id = "download_" + sessionSeq.incrementAndGet();
+            final FakeDownload download = creator.get();
+            downloads.put(id, download);
+            sendJson(exchange, 201, sessionJson("DownloadID", id, "normal", download.columns, download.count));
+            return;
+        }
+        final FakeDownload download = downloads.get(params.getOrDefault("downloadid", ""));
+        if (download == null) {
+            sendError(exchange, 404, "NoSuchDownload", "download session not found");
+            return;
+        }
+        if (!params.containsKey("data")) {
+            sendJson(exchange, sessionJson("DownloadID", params.get("downloadid"), "normal", download.columns, download.count));
+            return;
+        }
+        final Matcher range = ROW_RANGE.matcher(params.getOrDefault("rowrange", ""));
+        final boolean ranged = range.find();
+        final long start = ranged ? Long.parseLong(range.group(1)) : 0;
+        final long count = Math.max(0, Math.min(ranged ? Long.parseLong(range.group(2)) : download.count, download.count - start));
+        // 只返回请求的列
+        final List<Column> selected = new ArrayList<>();
+        final List<Integer> indexes = new ArrayList<>();
+        final Set<String> requested = params.containsKey("columns")
+                ? new HashSet<>(Arrays.asList(params.get("columns").split(","))) : null;
+        for (int c = 0; c < download.columns.size(); c++) {
+            if (requested == null || requested.contains(download.columns.get(c).getName())) {
+                selected.add(download.columns.get(c));
+                indexes.add(c);
+            }
+        }
+        // 客户端要求deflate时压缩 其他压缩算法不支持，返回不压缩的数据
+        final boolean deflate = "deflate".equals(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+        exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+        exchange.getResponseHeaders().add("x-odps-request-id", UUID.randomUUID().toString());
+        if (deflate) {
+            exchange.getResponseHeaders().add("Content-Encoding", "deflate");
+        }
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            final TableSchema schema = new TableSchema();
+            for (Column column : selected) {
+                schema.addColumn(column);
+            }
+            final ProtobufRecordStreamWriter writer = new ProtobufRecordStreamWriter(schema, out, deflate
+                    ? new CompressOption(CompressOption.CompressAlgorithm.ODPS_ZLIB, 1, 0)
+                    : new CompressOption(CompressOption.CompressAlgorithm.ODPS_RAW, 0, 0));
+            final ArrayRecord record = new ArrayRecord(selected.toArray(new Column[0]));
+            for (long r = download.offset + start; r < download.offset + start + count; r++) {
+                for (int i = 0; i < indexes.size(); i++) {
+                    record.set(i, download.countResult ? (Object) (long) config.getResultRows() : cell(r, indexes.get(i)));
+                }
+                writer.write(record);
+            }
+            writer.close();
+        }
+        exchange.close();
+    }
+
+    /**
+     * 上传会话 创建、写入block、查询状态和提交，写入的数据会被完整解码并计数
+     */
+    private void handleUpload(HttpExchange exchange, String method, Map<String, String> params) throws IOException {
+        if ("POST".equals(method) && params.containsKey("uploads")) {
+            readBody(exchange);
+            sleep(config.getApiLatencyMillis());
+            final String id = "upload_" + sessionSeq.incrementAndGet();
+            uploads.put(id, new FakeUpload());
+            sendJson(exchange, 201, uploadJson(id, "normal", Collections.emptySet()));
+            return;
+        }
+        final String id = params.getOrDefault("uploadid", "");
+        final FakeUpload upload = uploads.get(id);
+        if (upload == null) {
+            readBody(exchange);
+            sendError(exchange, 404, "NoSuchUpload", "upload session not found");
+            return;
+        }
+        if ("PUT".equals(method)) {
+            final TableSchema schema = new TableSchema();
+            for (Column column : columns()) {
+                schema.addColumn(column);
+            }
+            final String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            final CompressOption option = "deflate".equals(encoding)
+                    ? new CompressOption(CompressOption.CompressAlgorithm.ODPS_ZLIB, 1, 0)
+                    : new CompressOption(CompressOption.CompressAlgorithm.ODPS_RAW, 0, 0);
+            long rows = 0;
+            try (InputStream in = exchange.getRequestBody()) {
+                final ProtobufRecordStreamReader reader = new ProtobufRecordStreamReader(schema, in, option);
+                while (reader.read() != null) {
+                    rows++;
+                }
+            }
+            upload.blocks.add(Long.parseLong(params.getOrDefault("blockid", "0")));
+            upload.rows.addAndGet(rows);
+            sendJson(exchange, 200, new JSONObject());
+            return;
+        }
+        readBody(exchange);
+        if ("POST".equals(method)) {
+            sleep(config.getApiLatencyMillis());
+            log.info("===>>模拟服务提交上传会话：{}，block数：{}，行数：{}", id, upload.blocks.size(), upload.rows.get());
+            uploads.remove(id);
+            sendJson(exchange, uploadJson(id, "closed", upload.blocks));
+            return;
+        }
+        sendJson(exchange, uploadJson(id, "normal", upload.blocks));
+    }
+
+    private JSONObject sessionJson(String idKey, String id, String status, List<Column> columns, long recordCount) {
+        JSONObject json = new JSONObject(true);
+        json.put(idKey, id);
+        json.put("Status", status);
+        json.put("RecordCount", recordCount);
+        json.put("Schema", tunnelSchemaJson(columns));
+        return json;
+    }
+
+    private JSONObject uploadJson(String id, String status, Set<Long> blocks) {
+        JSONObject json = new JSONObject(true);
+        json.put("UploadID", id);
+        json.put("Status", status);
+        JSONArray blockList = new JSONArray();
+        for (Long block : blocks) {
+            JSONObject item = new JSONObject(true);
+            item.put("BlockID", block);
+            blockList.add(item);
+        }
+        json.put("UploadedBlockList", blockList);
+        json.put("Schema", tunnelSchemaJson(columns()));
+        return json;
+    }
+
+    private JSONObject tunnelSchemaJson(List<Column> columns) {
+        JSONArray array = new JSONArray();
+        for (Column column : columns) {
+            JSONObject item = new JSONObject(true);
+            item.put("name", column.getName());
+            item.put("type", column.getTypeInfo().getTypeName().toLowerCase());
+            item.put("comment", column.getComment());
+            item.put("nullable", true);
+            array.add(item);
+        }
+        JSONObject schema = new JSONObject(true);
+        schema.put("columns", array);
+        schema.put("partitionKeys", new JSONArray());
+        return schema;
+    }
+
+    // ==================== DataWorks OpenAPI ====================
+
+    private void handleDataWorks(HttpExchange exchange) throws IOException {
+        try {
+            final byte[] body = readBody(exchange);
+            final Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            // POST请求的参数在表单中
+            params.putAll(parseQuery(new String(body, StandardCharsets.UTF_8)));
+            final String action = params.get("Action");
+            sleep(config.getApiLatencyMillis());
+            final JSONObject data;
+            if ("GetMetaDBTableList".equals(action)) {
+                tableListRequests.incrementAndGet();
+                if (tableListFailures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                    sendJson(exchange, 403, errorResponse("Forbidden.Injected", "injected table list failure"));
+                    return;
+                }
+                data = tableListPage(params);
+            } else if ("ListFiles".equals(action)) {
+                data = fileListPage(params);
+            } else if ("GetFile".equals(action)) {
+                data = file(params);
+            } else if ("CheckMetaTable".equals(action)) {
+                final String guid = params.getOrDefault("TableGuid", "");
+                final String tableName = guid.substring(guid.lastIndexOf('.') + 1);
+                sendJson(exchange, response(action, tableIndex(tableName) >= 0));
+                return;
+            } else if ("GetMetaDBInfo".equals(action)) {
+                data = new JSONObject(true);
+                data.put("Name", params.getOrDefault("AppGuid", ""));
+                data.put("Type", "odps");
+                data.put("CreateTimeStamp", startTime);
+            } else {
+                log.warn("===>>模拟服务未实现的dataworks接口：{}", action);
+                sendJson(exchange, 404, errorResponse("InvalidAction.NotFound", "action not implemented in fake server: " + action));
+                return;
+            }
+            sendJson(exchange, response(action, data));
+        } catch (Exception e) {
+            log.error("===>>模拟服务处理dataworks请求出错", e);
+            sendJson(exchange, 500, errorResponse("InternalError", String.valueOf(e.getMessage())));
+        }
+    }
+
+    private JSONObject tableListPage(Map<String, String> params) {
+        final int pageNumber = Integer.parseInt(params.getOrDefault("PageNumber", "1"));
+        final int pageSize = Integer.parseInt(params.getOrDefault("PageSize", "10"));
+        JSONArray list = new JSONArray();
+        for (int i = (pageNumber - 1) * pageSize; i < Math.min(config.getTables(), pageNumber * pageSize); i++) {
+            JSONObject table = new JSONObject(true);
+            table.put("TableName", tableName(i));
+            table.put("TableGuid", "odps." + params.getOrDefault("AppGuid", "odps.demo").replace("odps.", "") + "." + tableName(i));
+            table.put("DatabaseName", params.getOrDefault("AppGuid", "odps.demo").replace("odps.", ""));
+            table.put("CreateTimeStamp", startTime);
+            list.add(table);
+        }
+        JSONObject data = new JSONObject(true);
+        data.put("TotalCount", config.getTables());
+        data.put("PageNumber", pageNumber);
+        data.put("PageSize", pageSize);
+        data.put("TableEntityList", list);
+        return data;
+    }
+
+    private JSONObject fileListPage(Map<String, String> params) {
+        final int pageNumber = Integer.parseInt(params.getOrDefault("PageNumber", "1"));
+        final int pageSize = Integer.parseInt(params.getOrDefault("PageSize", "10"));
+        final String folder = params.getOrDefault("FileFolderPath", "");
+        final List<Long> fileIds = liveFileIds();
+        JSONArray files = new JSONArray();
+        for (int i = (pageNumber - 1) * pageSize; i < Math.min(fileIds.size(), pageNumber * pageSize); i++) {
+            JSONObject file = fileJson(fileIds.get(i));
+            file.put("FileFolderId", folder);
+            file.put("Owner", "fake");
+            files.add(file);
+        }
+        JSONObject data = new JSONObject(true);
+        data.put("TotalCount", fileIds.size());
+        data.put("PageNumber", pageNumber);
+        data.put("PageSize", pageSize);
+        data.put("Files", files);
+        return data;
+    }
+
+    private JSONObject file(Map<String, String> params) {
+        final long fileId = Long.parseLong(params.getOrDefault("FileId", "10000"));
+        JSONObject data = new JSONObject(true);
+        data.put("File", fileJson(fileId));
+        return data;
+    }
+
+    /**
+     * 未删除的文件id 按id升序
+     */
+    private List<Long> liveFileIds() {
+        final List<Long> fileIds = new ArrayList<>(config.getFiles());
+        for (int i = 0; i < config.getFiles(); i++) {
+            if (!deletedFiles.contains(10000L + i)) {
+                fileIds.add(10000L + i);
+            }
+        }
+        return fileIds;
+    }
+
+    private JSONObject fileJson(long fileId) {
+        final FakeFile edit = fileEdits.get(fileId);
+        JSONObject file = new JSONObject(true);
+        file.put("FileId", fileId);
+        file.put("FileName", "script_" + (fileId - 10000));
+        file.put("FileType", 10);
+        file.put("LastEditTime", edit == null ? startTime : edit.getLastEditTime());
+        file.put("Content", edit == null || edit.getContent() == null
+                ? "select * from " + tableName((int) ((fileId - 10000) % Math.max(1, config.getTables()))) + ";"
+                : edit.getContent());
+        return file;
+    }
+
+    private JSONObject response(String action, Object data) {
+        JSONObject res = new JSONObject(true);
+        res.put("RequestId", UUID.randomUUID().toString());
+        res.put("Success", true);
+        res.put("HttpStatusCode", 200);
+        res.put("Data", data);
+        return res;
+    }
+
+    private JSONObject errorResponse(String code, String message) {
+        JSONObject res = new JSONObject(true);
+        res.put("RequestId", UUID.randomUUID().toString());
+        res.put("Code", code);
+        res.put("Message", message);
+        return res;
+    }
+
+    // ==================== 工具方法 ====================
+
+    private String tableName(int index) {
+        return String.format("ods_fake_%05d", index);
+    }
+
+    private int tableIndex(String tableName) {
+        if (!tableName.startsWith("ods_fake_")) {
+            return -1;
+        }
+        try {
+            final int index = Integer.parseInt(tableName.substring("ods_fake_".length()));
+            return index < config.getTables() ? index : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static Map<String, String> parseQuery(String query) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            final int eq = pair.indexOf('=');
+            final String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), "UTF-8");
+            final String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+            params.put(key, value);
+        }
+        return params;
+    }
+
+    private static void sendXml(HttpExchange exchange, int status, String xml) throws IOException {
+        send(exchange, status, "application/xml", xml);
+    }
+
+    private static void sendJson(HttpExchange exchange, JSONObject json) throws IOException {
+        sendJson(exchange, 200, json);
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, JSONObject json) throws IOException {
+        send(exchange, status, "application/json;charset=utf-8", json.toJSONString());
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String code, String message) throws IOException {
+        sendXml(exchange, status, XML_HEAD + "<Error><Code>" + code + "</Code><Message>" + message + "</Message></Error>");
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.getResponseHeaders().add("x-odps-request-id", UUID.randomUUID().toString());
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            exchange.getResponseBody().write(bytes);
+        }
+        exchange.close();
+    }
+
+    private static String between(String text, String start, String end) {
+        final int from = text.indexOf(start);
+        final int to = text.indexOf(end, from + start.length());
+        return from < 0 || to < 0 ? "" : text.substring(from + start.length(), to);
+    }
+
+    private static String unescapeXml(String text) {
+        return text.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+                .replace("&apos;", "'").replace("&amp;", "&");
+    }
+
+    private static String rfc822(long millis) {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(new Date(millis));
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 模拟的SQL实例 提交后先排队再运行，到达配置的耗时后结束
+     */
+    private class FakeInstance {
+        private final String id;
+        private final String taskName;
+        private final String sql;
+        private final long submitTime;
+        private volatile boolean cancelled;
+
+        FakeInstance(String id, String taskName, String sql, long submitTime) {
+            this.id = id;
+            this.taskName = taskName;
+            this.sql = sql;
+            this.submitTime = submitTime;
+        }
+
+        boolean isTerminated(long now) {
+            return cancelled || now >= submitTime + config.getQueueMillis() + config.getInstanceLatencyMillis();
+        }
+    }
+
+    /**
+     * tunnel下载会话 实例结果或表的一段行区间
+     */
+    private static class FakeDownload {
+        private final List<Column> columns;
+        private final long offset;
+        private final long count;
+        /**count语句的结果 唯一的值为总行数*/
+        private final boolean countResult;
+
+        FakeDownload(List<Column> columns, long offset, long count, boolean countResult) {
+            this.columns = columns;
+            this.offset = offset;
+            this.count = count;
+            this.countResult = countResult;
+        }
+    }
+
+    /**
+     * tunnel上传会话 记录已写入的block和行数
+     */
+    private static class FakeUpload {
+        private final Set<Long> blocks = ConcurrentHashMap.newKeySet();
+        private final AtomicLong rows = new AtomicLong();
+    }
+
+    /**
+     * 被修改过的dataworks文件 内容为null时使用默认内容
+     */
+    @Data
+    private static class FakeFile {
+        private long lastEditTime;
+        private String content;
+    }
+
+    /**
+     * 模拟服务的配置
+     */
+    @Data
+    public static class Config {
+        /**监听端口 0表示随机端口*/
+        private int port = 0;
+        /**处理请求的线程数*/
+        private int serverThreads = 64;
+        /**表的数量*/
+        private int tables = 200;
+        /**每张表和每个查询结果的列数*/
+        private int columns = 8;
+        /**非count查询返回的行数*/
+        private int resultRows = 1000;
+        /**dataworks文件数量*/
+        private int files = 500;
+        /**实例排队耗时 毫秒*/
+        private long queueMillis = 100L;
+        /**实例运行耗时 毫秒*/
+        private long instanceLatencyMillis = 500L;
+        /**每个接口的固定耗时 毫秒*/
+        private long apiLatencyMillis = 10L;
+        /**字符串列中是否包含值为"\N"的字符串 文本结果中无法与空值区分，只有tunnel读取能保留*/
+        private boolean nullTextValues = false;
+    }
+}
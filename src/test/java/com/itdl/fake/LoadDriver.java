@@ -0,0 +1,271 @@
+package com.itdl.fake;
+
+import com.itdl.conn.param.DataWorksOpenApiConnParam;
+import com.itdl.conn.param.MaxComputeJdbcConnParam;
+import com.itdl.conn.param.MaxComputeSdkConnParam;
+import com.itdl.util.DataWorksOpenApiUtil;
+import com.itdl.util.MaxComputeJdbcUtil;
+import com.itdl.util.MaxComputeSdkUtil;
+import com.itdl.util.export.ExportOption;
+import com.itdl.util.export.ExportResult;
+import com.itdl.util.tunnel.TunnelRecordIterator;
+import com.itdl.util.tunnel.UploadOption;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Description 基于模拟服务的压测驱动 启动FakeCloudServer后用多个线程反复调用工具类，输出吞吐量和延迟分布
+ * 参数使用key=value形式，例如：scenario=sdk-query threads=32 seconds=30 instanceLatencyMillis=200
+ * 场景：sdk-query、sdk-async、sdk-page、sdk-meta、sdk-iterator、sdk-page-instance、sdk-export、
+ * tunnel-upload、tunnel-download、jdbc-query、dataworks-tables、dataworks-files
+ * @Author itdl
+ * @Date 2026/10/17 03:36
+ */
+@Slf4j
+public class LoadDriver {
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            final int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        final String scenario = options.getOrDefault("scenario", "sdk-query");
+        final int threads = Integer.parseInt(options.getOrDefault("threads", "16"));
+        final int seconds = Integer.parseInt(options.getOrDefault("seconds", "20"));
+
+        final FakeCloudServer.Config config = new FakeCloudServer.Config();
+        config.setTables(Integer.parseInt(options.getOrDefault("tables", String.valueOf(config.getTables()))));
+        config.setColumns(Integer.parseInt(options.getOrDefault("columns", String.valueOf(config.getColumns()))));
+        config.setResultRows(Integer.parseInt(options.getOrDefault("resultRows", String.valueOf(config.getResultRows()))));
+        config.setFiles(Integer.parseInt(options.getOrDefault("files", String.valueOf(config.getFiles()))));
+        config.setQueueMillis(Long.parseLong(options.getOrDefault("queueMillis", String.valueOf(config.getQueueMillis()))));
+        config.setInstanceLatencyMillis(Long.parseLong(options.getOrDefault("instanceLatencyMillis", String.valueOf(config.getInstanceLatencyMillis()))));
+        config.setApiLatencyMillis(Long.parseLong(options.getOrDefault("apiLatencyMillis", String.valueOf(config.getApiLatencyMillis()))));
+        config.setServerThreads(Math.max(config.getServerThreads(), threads * 2));
+
+        try (FakeCloudServer server = new FakeCloudServer(config).start()) {
+            final Callable<Object> operation = buildOperation(scenario, server);
+            final Result result = run(operation, threads, seconds);
+            log.info("===>>场景：{}，线程数：{}，持续：{}秒，配置：{}", scenario, threads, seconds, config);
+            log.info("===>>{}", result);
+        }
+        System.exit(0);
+    }
+
+    private static Callable<Object> buildOperation(String scenario, FakeCloudServer server) throws Exception {
+        final MaxComputeSdkConnParam sdkParam = new MaxComputeSdkConnParam();
+        sdkParam.setAliyunAccessId("fake");
+        sdkParam.setAliyunAccessKey("fake");
+        sdkParam.setProjectName("demo");
+        sdkParam.setMaxComputeEndpoint(server.getOdpsEndpoint());
+
+        final MaxComputeJdbcConnParam jdbcParam = new MaxComputeJdbcConnParam();
+        jdbcParam.setAliyunAccessId("fake");
+        jdbcParam.setAliyunAccessKey("fake");
+        jdbcParam.setProjectName("demo");
+        jdbcParam.setEndpoint(server.getOdpsEndpoint());
+
+        final DataWorksOpenApiConnParam dataWorksParam = new DataWorksOpenApiConnParam();
+        dataWorksParam.setRegion("cn-shanghai");
+        dataWorksParam.setAliyunAccessId("fake");
+        dataWorksParam.setAliyunAccessKey("fake");
+        dataWorksParam.setEndPoint(server.getDataWorksEndpoint());
+        dataWorksParam.setDatasourceType("odps");
+        dataWorksParam.setProject("demo");
+        dataWorksParam.setProjectEnv("prod");
+
+        final Random random = new Random();
+        final int tables = server.getConfig().getTables();
+        switch (scenario) {
+            case "sdk-query": {
+                final MaxComputeSdkUtil util = new MaxComputeSdkUtil(sdkParam);
+                return () -> util.queryData(selectSql(random, tables), false);
+            }
+            case "sdk-async": {
+                final MaxComputeSdkUtil util = new MaxComputeSdkUtil(sdkParam);
+                return () -> util.queryAsync(selectSql(random, tables), false).get();
+            }
+            case "sdk-page": {
+                final MaxComputeSdkUtil util = new MaxComputeSdkUtil(sdkParam);
+                return () -> util.pageQueryMap(selectSql(random, tables), 1 + random.nextInt(10), 20);
+            }
+            case "sdk-meta": {
+                final MaxComputeSdkUtil util = new MaxComputeSdkUtil(sdkParam);
+                return () -> util.getFieldByTableName(tableName(random, tables));
+            }
+            case "sdk-iterator": {
+                final MaxComputeSdkUtil util = new MaxComputeSdkUtil(sdkParam);
+                return () -> {
+                    long count = 0;
+                    try (TunnelRecordIterator iterator = util.queryIterator(selectSql(random, tables), false)) {
+                        while (iterator.hasNext()) {
+                            iterator.next();
+                            count++;
+                        }
+                    }
+                    return count;
+                };
+            }
+            case "sdk-page-instance": {
+                final MaxComputeSdkUtil util = new MaxComputeSdkUtil(sdkParam);
+                return () -> util.pageQueryMapByInstance(selectSql(random, tables), 1 + random.nextInt(10), 20);
+            }
+            case "sdk-export": {
+                final MaxComputeSdkUtil util = new MaxComputeSdkUtil(sdkParam);
+                final File directory = Files.createTempDirectory("load-export").toFile();
+                directory.deleteOnExit();
+                final AtomicLong sequence = new AtomicLong();
+                return () -> {
+                    final ExportOption option = new ExportOption();
+                    option.setDirectory(directory.getAbsolutePath());
+                    option.setFileNamePrefix("export_" + sequence.incrementAndGet());
+                    final ExportResult result = util.exportData(selectSql(random, tables), false, option);
+                    // 导出的文件只用于压测 写完即删除
+                    for (String file : result.getFiles()) {
+                        Files.deleteIfExists(new File(file).toPath());
+                    }
+                    return result.getRows();
+                };
+            }
+            case "tunnel-upload": {
+                final MaxComputeSdkUtil util = new MaxComputeSdkUtil(sdkParam);
+                final int rows = server.getConfig().getResultRows();
+                final int columns = server.getConfig().getColumns();
+                return () -> {
+                    final List<Map<String, Object>> data = new ArrayList<>(rows);
+                    for (int r = 0; r < rows; r++) {
+                        final Map<String, Object> row = new HashMap<>();
+                        row.put("c0", (long) r);
+                        for (int c = 1; c < columns; c++) {
+                            row.put("c" + c, "value_" + r + "_" + c);
+                        }
+                        data.add(row);
+                    }
+                    return util.uploadData(tableName(random, tables), data.iterator(), new UploadOption());
+                };
+            }
+            case "tunnel-download": {
+                final MaxComputeSdkUtil util = new MaxComputeSdkUtil(sdkParam);
+                return () -> {
+                    final AtomicLong count = new AtomicLong();
+                    util.downloadTable(tableName(random, tables), null, 4, false, (start, records) -> count.addAndGet(records.size()));
+                    return count.get();
+                };
+            }
+            case "jdbc-query": {
+                final MaxComputeJdbcUtil util = new MaxComputeJdbcUtil(jdbcParam);
+                return () -> util.queryData(selectSql(random, tables));
+            }
+            case "dataworks-tables": {
+                final DataWorksOpenApiUtil util = new DataWorksOpenApiUtil(dataWorksParam, true);
+                return util::getDbAllTableInfo;
+            }
+            case "dataworks-files": {
+                final DataWorksOpenApiUtil util = new DataWorksOpenApiUtil(dataWorksParam, true);
+                return () -> {
+                    final AtomicLong count = new AtomicLong();
+                    util.listAllFiles(100, "", null, null, files -> count.addAndGet(files.size()));
+                    return count.get();
+                };
+            }
+            default:
+                throw new IllegalArgumentException("未知的场景：" + scenario);
+        }
+    }
+
+    /**
+     * 随机表名 与模拟服务的表名格式一致
+     */
+    private static String tableName(Random random, int tables) {
+        return String.format("ods_fake_%05d", random.nextInt(tables));
+    }
+
+    private static String selectSql(Random random, int tables) {
+        return "select * from " + tableName(random, tables) + ";";
+    }
+
+    /**
+     * 多线程持续执行 直到达到指定时长
+     */
+    private static Result run(Callable<Object> operation, int threads, int seconds) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<long[]> latencies = Collections.synchronizedList(new ArrayList<>());
+        final AtomicLong errors = new AtomicLong();
+        final long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                long[] samples = new long[1024];
+                int size = 0;
+                while (System.nanoTime() < deadline) {
+                    final long begin = System.nanoTime();
+                    try {
+                        operation.call();
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                        log.warn("===>>调用失败：{}", e.toString());
+                        continue;
+                    }
+                    if (size == samples.length) {
+                        samples = Arrays.copyOf(samples, size * 2);
+                    }
+                    samples[size++] = System.nanoTime() - begin;
+                }
+                latencies.add(Arrays.copyOf(samples, size));
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(seconds + 300L, TimeUnit.SECONDS);
+        final long elapsed = System.nanoTime() - start;
+
+        int total = 0;
+        for (long[] samples : latencies) {
+            total += samples.length;
+        }
+        long[] all = new long[total];
+        int index = 0;
+        for (long[] samples : latencies) {
+            System.arraycopy(samples, 0, all, index, samples.length);
+            index += samples.length;
+        }
+        Arrays.sort(all);
+        return new Result(total, errors.get(), elapsed, all);
+    }
+
+    private static class Result {
+        private final long requests;
+        private final long errors;
+        private final long elapsedNanos;
+        private final long[] sortedLatencies;
+
+        Result(long requests, long errors, long elapsedNanos, long[] sortedLatencies) {
+            this.requests = requests;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+            this.sortedLatencies = sortedLatencies;
+        }
+
+        private double percentileMillis(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            final int index = (int) Math.min(sortedLatencies.length - 1, Math.ceil(percentile / 100 * sortedLatencies.length) - 1);
+            return sortedLatencies[Math.max(0, index)] / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("成功：%d，失败：%d，吞吐量：%.1f/s，延迟(ms) p50=%.1f p90=%.1f p99=%.1f max=%.1f",
+                    requests, errors, requests * 1_000_000_000.0 / elapsedNanos,
+                    percentileMillis(50), percentileMillis(90), percentileMillis(99), percentileMillis(100));
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.itdl.util;
+
+import com.aliyuncs.dataworks_public.model.v20200518.ListFilesResponse;
+import com.itdl.conn.param.DataWorksOpenApiConnParam;
+import com.itdl.fake.FakeCloudServer;
+import com.itdl.util.sync.FileSyncCheckpoint;
+import com.itdl.util.sync.FileSyncResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataWorksOpenApiUtilTest {
+    private static final int FILES = 25;
+    private static final int PAGE_SIZE = 10;
+
+    @TempDir
+    Path tempDir;
+
+    private FakeCloudServer server;
+    private DataWorksOpenApiUtil util;
+    private String checkpointPath;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        final FakeCloudServer.Config config = new FakeCloudServer.Config();
+        config.setServerThreads(8);
+        config.setTables(5);
+        config.setFiles(FILES);
+        config.setApiLatencyMillis(0L);
+        server = new FakeCloudServer(config).start();
+
+        final DataWorksOpenApiConnParam param = new DataWorksOpenApiConnParam();
+        param.setRegion("cn-shanghai");
+        param.setAliyunAccessId("fake");
+        param.setAliyunAccessKey("fake");
+        param.setEndPoint(server.getDataWorksEndpoint());
+        param.setDatasourceType("odps");
+        param.setProject("demo");
+        param.setProjectEnv("prod");
+        param.setRateLimitPermitsPerSecond(1000.0);
+        param.setRateLimitMaxPermitsPerSecond(1000.0);
+        util = new DataWorksOpenApiUtil(param, true);
+        checkpointPath = tempDir.resolve("checkpoint.json").toString();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void firstSyncAddsEveryFile() throws Exception {
+        final RecordingCallBack callBack = new RecordingCallBack();
+        final FileSyncResult result = util.syncFiles(checkpointPath, PAGE_SIZE, "业务流程", null, null, callBack);
+
+        assertEquals(FILES, result.getAdded());
+        assertEquals(0, result.getFailed());
+        assertEquals(FILES, callBack.added.size());
+        assertEquals("select * from ods_fake_00001;", callBack.added.get(10001L));
+        assertEquals(FILES, FileSyncCheckpoint.load(new File(checkpointPath), "demo", "业务流程", null, null).getFiles().size());
+    }
+
+    @Test
+    void secondSyncWithoutEditsReportsNothing() throws Exception {
+        util.syncFiles(checkpointPath, PAGE_SIZE, "业务流程", null, null, new RecordingCallBack());
+
+        final RecordingCallBack callBack = new RecordingCallBack();
+        final FileSyncResult result = util.syncFiles(checkpointPath, PAGE_SIZE, "业务流程", null, null, callBack);
+        // 修改时间没变的文件不获取内容
+        assertEquals(0, result.getAdded() + result.getChanged() + result.getUnchanged() + result.getDeleted());
+        assertTrue(callBack.isEmpty());
+    }
+
+    @Test
+    void reportsChangedContentAndIgnoresTouchedFiles() throws Exception {
+        util.syncFiles(checkpointPath, PAGE_SIZE, "业务流程", null, null, new RecordingCallBack());
+        server.editFile(10003L, "select 1;");
+        // 只更新修改时间 内容不变
+        server.editFile(10007L, null);
+
+        final RecordingCallBack callBack = new RecordingCallBack();
+        final FileSyncResult result = util.syncFiles(checkpointPath, PAGE_SIZE, "业务流程", null, null, callBack);
+        assertEquals(1, result.getChanged());
+        assertEquals(1, result.getUnchanged());
+        assertEquals(Collections.singletonMap(10003L, "select 1;"), callBack.changed);
+        assertTrue(callBack.added.isEmpty());
+
+        // 修改时间已写入检查点 再次同步不再获取内容
+        final FileSyncResult again = util.syncFiles(checkpointPath, PAGE_SIZE, "业务流程", null, null, new RecordingCallBack());
+        assertEquals(0, again.getChanged() + again.getUnchanged());
+    }
+
+    @Test
+    void reportsDeletedFilesOnce() throws Exception {
+        util.syncFiles(checkpointPath, PAGE_SIZE, "业务流程", null, null, new RecordingCallBack());
+        server.deleteFile(10000L);
+        server.deleteFile(10024L);
+
+        final RecordingCallBack callBack = new RecordingCallBack();
+        final FileSyncResult result = util.syncFiles(checkpointPath, PAGE_SIZE, "业务流程", null, null, callBack);
+        assertEquals(2, result.getDeleted());
+        assertEquals(new HashSet<>(Arrays.asList(10000L, 10024L)), callBack.deleted);
+        assertTrue(callBack.added.isEmpty());
+
+        final RecordingCallBack again = new RecordingCallBack();
+        util.syncFiles(checkpointPath, PAGE_SIZE, "业务流程", null, null, again);
+        assertTrue(again.isEmpty());
+    }
+
+    @Test
+    void changedScopeStartsFullSync() throws Exception {
+        util.syncFiles(checkpointPath, PAGE_SIZE, "业务流程", null, null, new RecordingCallBack());
+
+        final RecordingCallBack callBack = new RecordingCallBack();
+        final FileSyncResult result = util.syncFiles(checkpointPath, PAGE_SIZE, "业务流程", null, "10", callBack);
+        assertEquals(FILES, result.getAdded());
+        assertTrue(callBack.deleted.isEmpty());
+    }
+
+    @Test
+    void stripsProjectPrefixIgnoringCase() throws Exception {
+        final Map<String, Boolean> result = util.checkTablesExist(
+                Arrays.asList("DEMO.ods_fake_00001", "Demo.ODS_FAKE_00002", "demo.ods_missing"), false);
+        assertEquals(Boolean.TRUE, result.get("DEMO.ods_fake_00001"));
+        assertEquals(Boolean.TRUE, result.get("Demo.ODS_FAKE_00002"));
+        assertEquals(Boolean.FALSE, result.get("demo.ods_missing"));
+        assertEquals(1, server.getTableListRequests());
+    }
+
+    @Test
+    void failedIndexBuildIsNotRetriedDuringBackoff() throws Exception {
+        server.failTableListRequests(1);
+        final Map<String, Boolean> first = util.checkTablesExist(Arrays.asList("ods_fake_00001", "ods_missing"), false);
+        // 索引构建失败 回退到接口校验
+        assertEquals(Boolean.TRUE, first.get("ods_fake_00001"));
+        assertEquals(Boolean.FALSE, first.get("ods_missing"));
+        final int requests = server.getTableListRequests();
+
+        final Map<String, Boolean> second = util.checkTablesExist(Collections.singletonList("ods_fake_00003"), false);
+        assertEquals(Boolean.TRUE, second.get("ods_fake_00003"));
+        assertEquals(requests, server.getTableListRequests());
+
+        // 手动清空后立即重新构建
+        util.invalidateTableNameIndex();
+        util.checkTablesExist(Collections.singletonList("ods_fake_00003"), false);
+        assertTrue(server.getTableListRequests() > requests);
+    }
+
+    /**
+     * 记录回调结果 回调在同步线程中执行，使用线程安全的集合
+     */
+    private static class RecordingCallBack implements DataWorksOpenApiUtil.CallBack.FileSyncCallBack {
+        private final Map<Long, String> added = Collections.synchronizedMap(new HashMap<>());
+        private final Map<Long, String> changed = Collections.synchronizedMap(new HashMap<>());
+        private final Set<Long> deleted = Collections.synchronizedSet(new HashSet<>());
+
+        @Override
+        public void onAdded(ListFilesResponse.Data.File file, String content) {
+            added.put(file.getFileId(), content);
+        }
+
+        @Override
+        public void onChanged(ListFilesResponse.Data.File file, String content) {
+            changed.put(file.getFileId(), content);
+        }
+
+        @Override
+        public void onDeleted(FileSyncCheckpoint.FileState state) {
+            deleted.add(state.getFileId());
+        }
+
+        private boolean isEmpty() {
+            return added.isEmpty() && changed.isEmpty() && deleted.isEmpty();
+        }
+    }
+}
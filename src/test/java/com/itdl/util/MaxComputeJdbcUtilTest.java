@@ -0,0 +1,80 @@
+package com.itdl.util;
+
+import com.itdl.conn.param.MaxComputeJdbcConnParam;
+import com.itdl.fake.FakeCloudServer;
+import com.itdl.util.jdbc.JdbcRowIterator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MaxComputeJdbcUtilTest {
+    private static final int ROWS = 25;
+    private static final String SQL = "select * from ods_fake_00001;";
+
+    private FakeCloudServer server;
+    private MaxComputeJdbcUtil util;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        final FakeCloudServer.Config config = new FakeCloudServer.Config();
+        config.setServerThreads(8);
+        config.setTables(5);
+        config.setColumns(4);
+        config.setResultRows(ROWS);
+        config.setQueueMillis(20L);
+        config.setInstanceLatencyMillis(50L);
+        config.setApiLatencyMillis(0L);
+        server = new FakeCloudServer(config).start();
+
+        final MaxComputeJdbcConnParam param = new MaxComputeJdbcConnParam();
+        param.setAliyunAccessId("fake");
+        param.setAliyunAccessKey("fake");
+        param.setProjectName("demo");
+        param.setEndpoint(server.getOdpsEndpoint());
+        // 只有一个连接 迭代器没有归还连接时下一次查询会等待超时
+        param.setPoolMaxSize(1);
+        param.setPoolBorrowTimeoutMillis(2000L);
+        util = new MaxComputeJdbcUtil(param);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void queryIteratorReadsEveryRowInOrder() {
+        try (JdbcRowIterator iterator = util.queryIterator(SQL)) {
+            assertEquals(Arrays.asList("c0", "c1", "c2", "c3"), Arrays.asList(iterator.getColumnNames()));
+            long expected = 0;
+            while (iterator.hasNext()) {
+                final Map<String, Object> row = iterator.next();
+                assertEquals(expected, ((Number) row.get("c0")).longValue());
+                assertEquals(4, row.size());
+                expected++;
+            }
+            assertEquals(ROWS, expected);
+            assertEquals(ROWS, iterator.getReadCount());
+            assertFalse(iterator.hasNext());
+            assertThrows(NoSuchElementException.class, iterator::next);
+        }
+    }
+
+    @Test
+    void closingEarlyReturnsConnection() {
+        for (int i = 0; i < 3; i++) {
+            final JdbcRowIterator iterator = util.queryIterator(SQL);
+            assertTrue(iterator.hasNext());
+            iterator.next();
+            iterator.close();
+            assertFalse(iterator.hasNext());
+        }
+        assertEquals(ROWS, util.queryData(SQL, row -> { }));
+    }
+}
@@ -0,0 +1,205 @@
+package com.itdl.util;
+
+import com.aliyun.odps.data.Record;
+import com.itdl.common.base.PageResult;
+import com.itdl.common.base.columnar.ColumnVector;
+import com.itdl.common.base.columnar.ColumnarResult;
+import com.itdl.conn.param.MaxComputeSdkConnParam;
+import com.itdl.fake.FakeCloudServer;
+import com.itdl.util.export.ExportOption;
+import com.itdl.util.export.ExportResult;
+import com.itdl.util.tunnel.TunnelRecordIterator;
+import lombok.Data;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MaxComputeSdkUtilTest {
+    private static final int ROWS = 25;
+    private static final String SQL = "select * from ods_fake_00001;";
+
+    @TempDir
+    Path tempDir;
+
+    private FakeCloudServer server;
+    private MaxComputeSdkUtil util;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        final FakeCloudServer.Config config = new FakeCloudServer.Config();
+        config.setServerThreads(8);
+        config.setTables(5);
+        config.setColumns(4);
+        config.setResultRows(ROWS);
+        config.setQueueMillis(20L);
+        config.setInstanceLatencyMillis(50L);
+        config.setApiLatencyMillis(0L);
+        config.setNullTextValues(true);
+        server = new FakeCloudServer(config).start();
+
+        final MaxComputeSdkConnParam param = new MaxComputeSdkConnParam();
+        param.setAliyunAccessId("fake");
+        param.setAliyunAccessKey("fake");
+        param.setProjectName("demo");
+        param.setMaxComputeEndpoint(server.getOdpsEndpoint());
+        util = new MaxComputeSdkUtil(param);
+    }
+
+    private MaxComputeSdkUtil newCachingUtil() {
+        final MaxComputeSdkConnParam param = new MaxComputeSdkConnParam();
+        param.setAliyunAccessId("fake");
+        param.setAliyunAccessKey("fake");
+        param.setProjectName("demo");
+        param.setMaxComputeEndpoint(server.getOdpsEndpoint());
+        param.setResultCacheMaxBytes(1024 * 1024L);
+        return new MaxComputeSdkUtil(param);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void queryColumnarStoresTypedColumnsAndRealNulls() {
+        final ColumnarResult result = util.queryColumnar(SQL, false);
+        assertEquals(ROWS, result.getRowCount());
+        assertEquals(4, result.getColumnCount());
+        assertEquals(ColumnVector.Kind.LONG, result.getVector("c0").getKind());
+        assertEquals(ColumnVector.Kind.OBJECT, result.getVector("c1").getKind());
+        assertEquals(17L, ((ColumnVector.LongVector) result.getVector(0)).getLong(17));
+
+        // 第1列第1、11、21行为空值 第6、16行为字符串\N
+        assertTrue(result.getVector(1).isNull(11));
+        assertNull(result.get(11, 1));
+        assertFalse(result.getVector(1).isNull(16));
+        assertEquals("\\N", result.get(16, 1));
+        assertEquals("value_12_1", result.get(12, 1));
+
+        final Map<String, Object> row = result.asMaps().get(6);
+        assertEquals(6L, row.get("c0"));
+        assertEquals("\\N", row.get("c1"));
+    }
+
+    @Test
+    void exportDataWritesRealNullsAsNullValue() throws IOException {
+        final ExportOption option = new ExportOption();
+        option.setDirectory(tempDir.toString());
+        option.setCompression(ExportOption.Compression.NONE);
+        option.setNullValue("NULL");
+        final ExportResult result = util.exportData(SQL, false, option);
+
+        assertEquals(ROWS, result.getRows());
+        final List<String> lines = Files.readAllLines(new File(result.getFiles().get(0)).toPath(), StandardCharsets.UTF_8);
+        assertEquals(ROWS + 1, lines.size());
+        assertEquals("c0,c1,c2,c3", lines.get(0));
+        // 第1行第1列为空值 第6行第1列为字符串\N
+        assertEquals("1,NULL,value_1_2,value_1_3", lines.get(2));
+        assertEquals("6,\\N,value_6_2,value_6_3", lines.get(7));
+    }
+
+    @Test
+    void pageQueryMapsTextRowsToBeans() {
+        final PageResult<FakeRow> page = util.pageQuery(SQL, 2, 10, FakeRow.class);
+        assertEquals(Long.valueOf(ROWS), page.getTotal());
+        assertEquals(10, page.getRows().size());
+
+        final FakeRow first = page.getRows().get(0);
+        assertEquals(Long.valueOf(10L), first.getC0());
+        assertEquals("value_10_2", first.getC2());
+        // 文本结果中空值和字符串\N都是\N 映射为空串
+        assertEquals("", page.getRows().get(1).getC1());
+        assertEquals("", page.getRows().get(6).getC1());
+        assertEquals("value_12_1", page.getRows().get(2).getC1());
+    }
+
+    @Test
+    void pageQueryMapInOneJobReadsTotalFromWindowColumn() {
+        final PageResult<Map<String, Object>> page = util.pageQueryMapInOneJob(SQL, 2, 10);
+        assertEquals(Long.valueOf(ROWS), page.getTotal());
+        assertEquals(10, page.getRows().size());
+        // 总数列不出现在结果行中
+        assertFalse(page.getRows().get(0).containsKey("z_page_total"));
+        assertEquals(4, page.getRows().get(0).size());
+        assertEquals("10", page.getRows().get(0).get("c0"));
+        assertEquals("", page.getRows().get(1).get("c1"));
+
+        final PageResult<Map<String, Object>> last = util.pageQueryMapInOneJob(SQL, 3, 10);
+        assertEquals(5, last.getRows().size());
+        assertEquals("24", last.getRows().get(4).get("c0"));
+    }
+
+    @Test
+    void pageQueryMapInOneJobWorksWithReadOnlyCachedResults() {
+        final MaxComputeSdkUtil cachingUtil = newCachingUtil();
+        final PageResult<Map<String, Object>> first = cachingUtil.pageQueryMapInOneJob(SQL, 1, 10);
+        // 第二次命中缓存 缓存的行是只读的，总数列要在副本上移除
+        final PageResult<Map<String, Object>> second = cachingUtil.pageQueryMapInOneJob(SQL, 1, 10);
+        assertEquals(first.getRows(), second.getRows());
+        assertEquals(Long.valueOf(ROWS), second.getTotal());
+        assertFalse(second.getRows().get(0).containsKey("z_page_total"));
+        assertSame(cachingUtil.queryData(SQL, true), cachingUtil.queryData(SQL, true));
+    }
+
+    @Test
+    void pageQueryMapInOneJobBeyondLastPageStillReturnsTotal() {
+        final PageResult<Map<String, Object>> page = util.pageQueryMapInOneJob(SQL, 5, 10);
+        assertEquals(Long.valueOf(ROWS), page.getTotal());
+        assertTrue(page.getRows().isEmpty());
+    }
+
+    @Test
+    void queryIteratorStreamsEveryRecordAndClosesAtTheEnd() {
+        long rows = 0;
+        try (TunnelRecordIterator iterator = util.queryIterator(SQL, false)) {
+            assertEquals(ROWS, iterator.getRecordCount());
+            assertEquals(4, iterator.getSchema().getColumns().size());
+            while (iterator.hasNext()) {
+                final Record record = iterator.next();
+                assertEquals(rows, record.getBigint(0).longValue());
+                if (rows % 10 == 2) {
+                    assertNull(record.getString(2));
+                }
+                if (rows % 10 == 7) {
+                    assertEquals("\\N", record.getString(2));
+                }
+                rows++;
+            }
+            // 读取完毕后自动关闭
+            assertFalse(iterator.hasNext());
+            assertThrows(NoSuchElementException.class, iterator::next);
+        }
+        assertEquals(ROWS, rows);
+    }
+
+    @Test
+    void queryIteratorCanBeClosedEarly() {
+        final TunnelRecordIterator iterator = util.queryIterator(SQL, false);
+        assertTrue(iterator.hasNext());
+        assertEquals(0L, iterator.next().getBigint(0).longValue());
+        iterator.close();
+        assertFalse(iterator.hasNext());
+        // 重复关闭不报错
+        iterator.close();
+    }
+
+    @Data
+    public static class FakeRow {
+        private Long c0;
+        private String c1;
+        private String c2;
+        private String c3;
+    }
+}
@@ -0,0 +1,122 @@
+package com.itdl.util.async;
+
+import com.aliyun.odps.Instance;
+import com.aliyun.odps.Odps;
+import com.aliyun.odps.account.AliyunAccount;
+import com.aliyun.odps.task.SQLTask;
+import com.itdl.common.exception.BizException;
+import com.itdl.fake.FakeCloudServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstanceStatusPollerTest {
+    private FakeCloudServer server;
+    private Odps odps;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        final FakeCloudServer.Config config = new FakeCloudServer.Config();
+        config.setServerThreads(8);
+        config.setTables(5);
+        config.setQueueMillis(50L);
+        config.setInstanceLatencyMillis(100L);
+        config.setApiLatencyMillis(0L);
+        server = new FakeCloudServer(config).start();
+        odps = new Odps(new AliyunAccount("fake", "fake"));
+        odps.setEndpoint(server.getOdpsEndpoint());
+        odps.setDefaultProject("demo");
+        // 关闭sdk自带的请求重试 由轮询器处理失败
+        odps.getRestClient().setRetryTimes(0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void completesWhenInstanceSucceeds() throws Exception {
+        final Instance instance = submit();
+        final Instance done = InstanceStatusPoller.shared().watch(instance).get(10, TimeUnit.SECONDS);
+        assertSame(instance, done);
+        assertTrue(done.isSuccessful());
+    }
+
+    @Test
+    void waitsForQueuedTasksThenForTheInstance() throws Exception {
+        server.getConfig().setQueueMillis(800L);
+        final Instance instance = submit();
+        final long start = System.nanoTime();
+        assertSame(instance, InstanceStatusPoller.shared().watch(instance).get(10, TimeUnit.SECONDS));
+        // 排队结束后还要等实例运行结束
+        assertTrue((System.nanoTime() - start) / 1_000_000 >= 900L);
+        assertTrue(instance.isSuccessful());
+    }
+
+    @Test
+    void retriesStatusErrorsWhileQueued() throws Exception {
+        server.getConfig().setQueueMillis(500L);
+        final Instance instance = submit();
+        server.failStatusRequests(2);
+        assertSame(instance, InstanceStatusPoller.shared().watch(instance).get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void retriesTransientStatusErrors() throws Exception {
+        final Instance instance = submit();
+        server.failStatusRequests(2);
+        assertSame(instance, InstanceStatusPoller.shared().watch(instance).get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void failsAfterStatusRetriesAreExhausted() throws Exception {
+        final Instance instance = submit();
+        server.failStatusRequests(Integer.MAX_VALUE);
+        final CompletableFuture<Instance> future = InstanceStatusPoller.shared().watch(instance);
+        final ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof BizException);
+    }
+
+    @Test
+    void cancellingStopsInstance() throws Exception {
+        server.getConfig().setInstanceLatencyMillis(60000L);
+        final Instance instance = submit();
+        final CompletableFuture<Instance> future = InstanceStatusPoller.shared().watch(instance);
+        future.cancel(true);
+        final long deadline = System.currentTimeMillis() + 5000L;
+        while (!server.isCancelled(instance.getId()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20L);
+        }
+        assertTrue(server.isCancelled(instance.getId()));
+    }
+
+    @Test
+    void slowStatusCallsDoNotDelayOtherInstances() throws Exception {
+        final int count = 32;
+        final Instance[] instances = new Instance[count];
+        for (int i = 0; i < count; i++) {
+            instances[i] = submit();
+        }
+        // 每次状态请求耗时200ms 实例结束时每个实例需要3次请求，只用两个线程轮询需要近10秒
+        server.getConfig().setApiLatencyMillis(200L);
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[count];
+        for (int i = 0; i < count; i++) {
+            futures[i] = InstanceStatusPoller.shared().watch(instances[i]);
+        }
+        final long start = System.nanoTime();
+        CompletableFuture.allOf(futures).get(30, TimeUnit.SECONDS);
+        final long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(elapsedMillis < 5000L, "elapsed " + elapsedMillis + "ms");
+    }
+
+    private Instance submit() throws Exception {
+        return SQLTask.run(odps, "select * from ods_fake_00001;");
+    }
+}
@@ -0,0 +1,79 @@
+package com.itdl.util.async;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelTaskRunnerTest {
+    private static final int TASKS = 200;
+
+    @Test
+    void orderedRunKeepsInputOrder() {
+        final List<Integer> outputs = new ArrayList<>();
+        ParallelTaskRunner.run(inputs(), input -> {
+            // 前面的任务更慢 完成顺序与输入顺序相反
+            Thread.sleep((TASKS - input) % 5);
+            return input * 2;
+        }, 8, true, "test-ordered", (input, output) -> outputs.add(output));
+
+        assertEquals(TASKS, outputs.size());
+        for (int i = 0; i < TASKS; i++) {
+            assertEquals(Integer.valueOf(i * 2), outputs.get(i));
+        }
+    }
+
+    @Test
+    void inFlightTasksNeverExceedWindow() {
+        for (boolean ordered : new boolean[]{true, false}) {
+            final AtomicInteger started = new AtomicInteger();
+            final AtomicInteger delivered = new AtomicInteger();
+            final AtomicInteger maxInFlight = new AtomicInteger();
+            ParallelTaskRunner.run(inputs(), input -> {
+                final int inFlight = started.incrementAndGet() - delivered.get();
+                maxInFlight.accumulateAndGet(inFlight, Math::max);
+                Thread.sleep(1);
+                return input;
+            }, 4, 6, ordered, "test-window", (input, output) -> delivered.incrementAndGet());
+
+            assertEquals(TASKS, delivered.get());
+            assertTrue(maxInFlight.get() <= 6, "max in flight: " + maxInFlight.get());
+        }
+    }
+
+    @Test
+    void failedTasksGoToOnError() {
+        final List<Integer> failed = new ArrayList<>();
+        final AtomicInteger succeeded = new AtomicInteger();
+        ParallelTaskRunner.run(inputs(), input -> {
+            if (input % 50 == 0) {
+                throw new IllegalStateException("task " + input);
+            }
+            return input;
+        }, 4, false, "test-error", new ParallelTaskRunner.CallBack<Integer, Integer>() {
+            @Override
+            public void onSuccess(Integer input, Integer output) {
+                succeeded.incrementAndGet();
+            }
+
+            @Override
+            public void onError(Integer input, Exception e) {
+                failed.add(input);
+            }
+        });
+
+        assertEquals(TASKS - 4, succeeded.get());
+        assertEquals(4, failed.size());
+    }
+
+    private static List<Integer> inputs() {
+        final List<Integer> inputs = new ArrayList<>();
+        for (int i = 0; i < TASKS; i++) {
+            inputs.add(i);
+        }
+        return inputs;
+    }
+}
@@ -0,0 +1,147 @@
+package com.itdl.util.cache;
+
+import com.itdl.common.base.TableColumnMetaInfo;
+import com.itdl.common.base.TableMetaInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogSnapshotStoreTest {
+    private static final long HOUR = 3600_000L;
+
+    @TempDir
+    Path tempDir;
+
+    private final Map<String, Long> metaVersions = new ConcurrentHashMap<>();
+    private final AtomicInteger versionLoads = new AtomicInteger();
+    private CatalogSnapshotStore store;
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    void servesColumnsWithoutWaitingForVersionCheck() throws Exception {
+        final File file = writeSnapshot(System.currentTimeMillis());
+        final CountDownLatch release = new CountDownLatch(1);
+        store = new CatalogSnapshotStore(file, "demo", HOUR, this::catalog, HOUR, table -> {
+            versionLoads.incrementAndGet();
+            await(release);
+            return null;
+        }).start();
+
+        // 检查被阻塞时读取也立即返回快照中的字段
+        assertEquals("id", store.getColumns("ods_a").get(0).getFieldName());
+        assertEquals("id", store.getColumns("ods_a").get(0).getFieldName());
+        release.countDown();
+        waitUntil(() -> versionLoads.get() == 1);
+        // 检查间隔内不再检查
+        store.getColumns("ods_a");
+        Thread.sleep(100L);
+        assertEquals(1, versionLoads.get());
+    }
+
+    @Test
+    void tableModifiedAfterSnapshotFallsBackAfterBackgroundCheck() throws Exception {
+        final long createdAt = System.currentTimeMillis() - 1000L;
+        final File file = writeSnapshot(createdAt);
+        metaVersions.put("ods_a", createdAt + 500L);
+        metaVersions.put("ods_b", createdAt - 500L);
+        store = newStore(file, 0L);
+
+        // 第一次读取仍返回快照 检查完成后失效
+        assertNotNull(store.getColumns("ods_a"));
+        waitUntil(() -> store.getColumns("ods_a") == null);
+        // 快照生成前修改的表继续使用快照
+        assertNotNull(store.getColumns("ods_b"));
+        Thread.sleep(100L);
+        assertNotNull(store.getColumns("ods_b"));
+    }
+
+    @Test
+    void refreshedSnapshotIsServedAgain() throws Exception {
+        final File file = writeSnapshot(System.currentTimeMillis());
+        store = newStore(file, HOUR);
+        store.invalidate("ods_a");
+        assertNull(store.getColumns("ods_a"));
+        assertNotNull(store.getColumns("ods_b"));
+
+        Thread.sleep(5L);
+        store.refresh();
+        assertNotNull(store.getColumns("ods_a"));
+    }
+
+    @Test
+    void unknownTableIsNotChecked() throws Exception {
+        store = newStore(writeSnapshot(System.currentTimeMillis()), 0L);
+        assertNull(store.getColumns("ods_none"));
+        Thread.sleep(100L);
+        assertEquals(0, versionLoads.get());
+    }
+
+    private CatalogSnapshotStore newStore(File file, long checkMillis) {
+        return new CatalogSnapshotStore(file, "demo", HOUR, this::catalog, checkMillis, table -> {
+            versionLoads.incrementAndGet();
+            return metaVersions.get(table);
+        }).start();
+    }
+
+    private File writeSnapshot(long createdAt) throws IOException {
+        final File file = tempDir.resolve("catalog.bin").toFile();
+        CatalogSnapshot.write(file, "demo", createdAt, tables(), new HashMap<>(), fields());
+        return file;
+    }
+
+    private CatalogSnapshotStore.Catalog catalog() {
+        return new CatalogSnapshotStore.Catalog(tables(), new HashMap<>(), fields());
+    }
+
+    private static List<TableMetaInfo> tables() {
+        return Arrays.asList(new TableMetaInfo("ods_a", null), new TableMetaInfo("ods_b", null));
+    }
+
+    private static Map<String, List<TableColumnMetaInfo>> fields() {
+        final Map<String, List<TableColumnMetaInfo>> fields = new HashMap<>();
+        fields.put("ods_a", Collections.singletonList(column("ods_a", "id")));
+        fields.put("ods_b", Collections.singletonList(column("ods_b", "value")));
+        return fields;
+    }
+
+    private static TableColumnMetaInfo column(String table, String name) {
+        final TableColumnMetaInfo column = new TableColumnMetaInfo(table, name, null);
+        column.setDataType("STRING");
+        column.setOrdinalPosition(1);
+        return column;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10L);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.itdl.util.cache;
+
+import com.itdl.common.base.TableColumnMetaInfo;
+import com.itdl.common.base.TableMetaInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogSnapshotTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void roundTripsTablesVersionsAndColumns() throws IOException {
+        final File file = tempDir.resolve("catalog.bin").toFile();
+        final List<TableMetaInfo> tables = Arrays.asList(new TableMetaInfo("ods_a", "订单表"), new TableMetaInfo("ods_b", null),
+                new TableMetaInfo("ods_c", "没有字段"));
+        final Map<String, Long> versions = new HashMap<>();
+        versions.put("ods_a", 1000L);
+        versions.put("ods_c", 3000L);
+        final Map<String, List<TableColumnMetaInfo>> fields = new HashMap<>();
+        fields.put("ods_a", Arrays.asList(column("ods_a", "id", "主键", "BIGINT", 1), column("ods_a", "name", null, "STRING", 2)));
+        fields.put("ods_b", Collections.singletonList(column("ods_b", "value", "值", "DOUBLE", 1)));
+
+        CatalogSnapshot.write(file, "demo", 123L, tables, versions, fields);
+        final CatalogSnapshot snapshot = CatalogSnapshot.load(file);
+
+        assertEquals("demo", snapshot.getProjectName());
+        assertEquals(123L, snapshot.getCreatedAt());
+        assertEquals(3, snapshot.getTables().size());
+        assertEquals("订单表", snapshot.getTables().get(0).getComment());
+        assertNull(snapshot.getTables().get(1).getComment());
+        assertEquals(Long.valueOf(1000L), snapshot.getTableVersion("ods_a"));
+        assertNull(snapshot.getTableVersion("ods_b"));
+
+        final List<TableColumnMetaInfo> columns = snapshot.getColumns("ods_a");
+        assertEquals(2, columns.size());
+        assertEquals("id", columns.get(0).getFieldName());
+        assertEquals("主键", columns.get(0).getComment());
+        assertEquals("BIGINT", columns.get(0).getDataType());
+        assertEquals(Integer.valueOf(2), columns.get(1).getOrdinalPosition());
+        assertNull(columns.get(1).getComment());
+        assertEquals("DOUBLE", snapshot.getColumns("ods_b").get(0).getDataType());
+        assertNull(snapshot.getColumns("ods_c"));
+        assertNull(snapshot.getColumns("missing"));
+    }
+
+    @Test
+    void rejectsTruncatedOrForeignFiles() throws IOException {
+        final File file = writeSample();
+        final byte[] bytes = Files.readAllBytes(file.toPath());
+
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length - 5));
+        assertThrows(IOException.class, () -> CatalogSnapshot.load(file));
+
+        Files.write(file.toPath(), "not a snapshot".getBytes());
+        assertThrows(IOException.class, () -> CatalogSnapshot.load(file));
+
+        Files.write(file.toPath(), new byte[0]);
+        assertThrows(IOException.class, () -> CatalogSnapshot.load(file));
+    }
+
+    @Test
+    void corruptedBytesNeverEscapeAsRuntimeExceptions() throws IOException {
+        final File file = writeSample();
+        final byte[] original = Files.readAllBytes(file.toPath());
+        final Random random = new Random(42);
+        for (int round = 0; round < 500; round++) {
+            final byte[] bytes = original.clone();
+            // 长度字段损坏时文件仍然完整 只改中间的字节
+            for (int i = 0; i < 1 + random.nextInt(4); i++) {
+                bytes[8 + random.nextInt(bytes.length - 8)] = (byte) random.nextInt(256);
+            }
+            Files.write(file.toPath(), bytes);
+            final CatalogSnapshot snapshot;
+            try {
+                snapshot = CatalogSnapshot.load(file);
+            } catch (IOException e) {
+                continue;
+            }
+            for (TableMetaInfo table : snapshot.getTables()) {
+                snapshot.getColumns(table.getTableName());
+            }
+        }
+    }
+
+    @Test
+    void corruptedColumnSectionReturnsNull() throws IOException {
+        final File file = writeSample();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // 最后一张表的字段区在文件末尾 把字段数改成很大的值
+            final List<TableMetaInfo> tables = CatalogSnapshot.load(file).getTables();
+            assertEquals(2, tables.size());
+            raf.seek(raf.length() - lastTableColumnBytes());
+            raf.writeInt(Integer.MAX_VALUE);
+        }
+        final CatalogSnapshot snapshot = CatalogSnapshot.load(file);
+        assertNotNull(snapshot.getColumns("ods_a"));
+        assertNull(snapshot.getColumns("ods_b"));
+    }
+
+    /**
+     * 样例快照中最后一张表ods_b的字段区字节数：字段数 + 字段名、注释、类型 + 位置
+     */
+    private static int lastTableColumnBytes() {
+        return 4 + (4 + "value".length()) + (4 + "值".getBytes(StandardCharsets.UTF_8).length) + (4 + "DOUBLE".length()) + 4;
+    }
+
+    private File writeSample() throws IOException {
+        final File file = tempDir.resolve("sample.bin").toFile();
+        final Map<String, List<TableColumnMetaInfo>> fields = new HashMap<>();
+        fields.put("ods_a", Arrays.asList(column("ods_a", "id", "主键", "BIGINT", 1), column("ods_a", "name", "名称", "STRING", 2)));
+        fields.put("ods_b", Collections.singletonList(column("ods_b", "value", "值", "DOUBLE", 1)));
+        CatalogSnapshot.write(file, "demo", System.currentTimeMillis(),
+                Arrays.asList(new TableMetaInfo("ods_a", "a"), new TableMetaInfo("ods_b", "b")),
+                Collections.singletonMap("ods_a", 1L), fields);
+        return file;
+    }
+
+    private static TableColumnMetaInfo column(String table, String name, String comment, String type, int position) {
+        final TableColumnMetaInfo column = new TableColumnMetaInfo(table, name, comment);
+        column.setDataType(type);
+        column.setOrdinalPosition(position);
+        return column;
+    }
+}
@@ -0,0 +1,174 @@
+package com.itdl.util.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryResultCacheTest {
+    /**表的修改时间 不存在的表没有修改时间*/
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void returnsCachedResultForEquivalentSql() {
+        versions.put("t", 1L);
+        final QueryResultCache cache = new QueryResultCache(1024 * 1024, 60000L, versions::get);
+        final List<Map<String, Object>> first = cache.getOrLoad("select * from t;", null, rows(3));
+        final List<Map<String, Object>> second = cache.getOrLoad("select *\n  from t", null, rows(3));
+        assertEquals(1, loads.get());
+        // 命中时直接返回缓存的只读结果 不复制
+        assertSame(first, second);
+        assertThrows(UnsupportedOperationException.class, () -> second.get(0).put("id", 9L));
+        assertThrows(UnsupportedOperationException.class, () -> second.remove(0));
+
+        // 查询配置不同时使用不同的key
+        cache.getOrLoad("select * from t", "{odps.sql.allow.fullscan=true}", rows(3));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void reloadsAfterTableVersionChanges() {
+        versions.put("t", 1L);
+        final QueryResultCache cache = new QueryResultCache(1024 * 1024, 0L, versions::get);
+        cache.getOrLoad("select * from t", null, rows(1));
+        sleepPastFreshness();
+        cache.getOrLoad("select * from t", null, rows(1));
+        assertEquals(1, loads.get());
+
+        versions.put("t", 2L);
+        sleepPastFreshness();
+        cache.getOrLoad("select * from t", null, rows(1));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void doesNotCacheWhenTablesAreUnknown() {
+        versions.put("a", 1L);
+        versions.put("b", 1L);
+        final QueryResultCache cache = new QueryResultCache(1024 * 1024, 60000L, versions::get);
+        // 逗号分隔的多张表解析不全
+        cache.getOrLoad("select * from a, b", null, rows(1));
+        cache.getOrLoad("select * from a, b", null, rows(1));
+        assertEquals(2, loads.get());
+
+        // 获取不到修改时间的表
+        cache.getOrLoad("select * from a join other on a.id = other.id", null, rows(1));
+        cache.getOrLoad("select * from a join other on a.id = other.id", null, rows(1));
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWhenFull() {
+        versions.put("a", 1L);
+        versions.put("b", 1L);
+        versions.put("c", 1L);
+        // 容量只够放下两个结果
+        final long size = QueryResultCache.estimateSize(rows(50).get());
+        loads.set(0);
+        final QueryResultCache cache = new QueryResultCache(size * 2 + size / 2, 60000L, versions::get);
+        cache.getOrLoad("select * from a", null, rows(50));
+        cache.getOrLoad("select * from b", null, rows(50));
+        cache.getOrLoad("select * from a", null, rows(50));
+        cache.getOrLoad("select * from c", null, rows(50));
+        assertEquals(3, loads.get());
+
+        cache.getOrLoad("select * from a", null, rows(50));
+        assertEquals(3, loads.get());
+        cache.getOrLoad("select * from b", null, rows(50));
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        versions.put("t", 1L);
+        final QueryResultCache cache = new QueryResultCache(1024 * 1024, 60000L, versions::get);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Supplier<List<Map<String, Object>>> slow = () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return rows(10).get();
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<Map<String, Object>>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> cache.getOrLoad("select * from t", null, slow)));
+            }
+            // 等所有线程都进入等待后再放行查询
+            Thread.sleep(200L);
+            release.countDown();
+            final List<Map<String, Object>> first = futures.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<List<Map<String, Object>>> future : futures) {
+                assertSame(first, future.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedLoadIsNotCachedAndIsSeenByWaiters() throws Exception {
+        versions.put("t", 1L);
+        final QueryResultCache cache = new QueryResultCache(1024 * 1024, 60000L, versions::get);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Supplier<List<Map<String, Object>>> failing = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("query failed");
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<?> leader = executor.submit(() -> cache.getOrLoad("select * from t", null, failing));
+            started.await(5, TimeUnit.SECONDS);
+            final Future<?> waiter = executor.submit(() -> cache.getOrLoad("select * from t", null, rows(1)));
+            Thread.sleep(100L);
+            release.countDown();
+            assertTrue(assertThrows(ExecutionException.class, leader::get).getCause() instanceof IllegalStateException);
+            assertTrue(assertThrows(ExecutionException.class, waiter::get).getCause() instanceof IllegalStateException);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // 失败的结果不缓存 下一次重新查询
+        cache.getOrLoad("select * from t", null, rows(1));
+        assertEquals(1, loads.get());
+    }
+
+    private Supplier<List<Map<String, Object>>> rows(int count) {
+        return () -> {
+            loads.incrementAndGet();
+            List<Map<String, Object>> rows = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("id", (long) i);
+                row.put("name", "name_" + i);
+                rows.add(row);
+            }
+            return rows;
+        };
+    }
+
+    private static void sleepPastFreshness() {
+        try {
+            Thread.sleep(5L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.itdl.util.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlNormalizerTest {
+
+    @Test
+    void collapsesWhitespaceAndTrailingSemicolons() {
+        assertEquals("select * from t where a = 1", SqlNormalizer.normalize("  select *\n\tfrom   t\r\nwhere a = 1 ; ;\n"));
+        assertEquals(SqlNormalizer.normalize("select * from t;"), SqlNormalizer.normalize("select  *  from t"));
+    }
+
+    @Test
+    void keepsStringLiteralsIntact() {
+        assertEquals("select * from t where a = 'x  ;  y'", SqlNormalizer.normalize("select * from t where a = 'x  ;  y';"));
+        assertNotEquals(SqlNormalizer.normalize("select * from t where a = 'x y'"), SqlNormalizer.normalize("select * from t where a = 'x  y'"));
+        // 转义的引号不结束字符串
+        assertEquals("select 'it''s  a', 'b\\'  c', \"d  e\" from t", SqlNormalizer.normalize("select 'it''s  a',  'b\\'  c',\n\"d  e\" from t"));
+        assertEquals("select `a  b` from t", SqlNormalizer.normalize("select   `a  b`  from t"));
+    }
+
+    @Test
+    void keepsCommentsIntact() {
+        assertEquals("select 1 -- a  ;  b\n from t", SqlNormalizer.normalize("select 1 -- a  ;  b\n   from t;"));
+        assertEquals("select /* a   b */ 1", SqlNormalizer.normalize("select   /* a   b */   1"));
+    }
+
+    @Test
+    void extractsTablesFromFromAndJoin() {
+        assertEquals(new LinkedHashSet<>(Arrays.asList("a", "proj.b", "c")), SqlNormalizer.extractTables(
+                "select * from A join `proj`.`b` on a.id = b.id left join c t on t.id = a.id where x = 1"));
+        assertEquals(Collections.singleton("t"), SqlNormalizer.extractTables("select * from t where a = 1 order by a"));
+    }
+
+    @Test
+    void returnsEmptySetForCommaJoins() {
+        assertTrue(SqlNormalizer.extractTables("select * from a, b where a.id = b.id").isEmpty());
+        assertTrue(SqlNormalizer.extractTables("select * from a t1 , proj.b t2").isEmpty());
+        assertTrue(SqlNormalizer.extractTables("select * from a as t1, b").isEmpty());
+        assertTrue(SqlNormalizer.extractTables("select 1").isEmpty());
+    }
+
+    @Test
+    void acceptsSingleReadOnlyQueries() {
+        assertTrue(SqlNormalizer.isReadOnlyQuery("select * from t;"));
+        assertTrue(SqlNormalizer.isReadOnlyQuery("  (SELECT 1) ;;"));
+        assertTrue(SqlNormalizer.isReadOnlyQuery("with a as (select 1) select * from a"));
+        // 字符串、反引号和注释中的关键字和分号不影响判断
+        assertTrue(SqlNormalizer.isReadOnlyQuery("select 'drop table t; insert' as s, `update` from t -- delete;\n where 1 = 1"));
+        assertTrue(SqlNormalizer.isReadOnlyQuery("select /* create; */ 1"));
+    }
+
+    @Test
+    void rejectsBlankWritesAndMultipleStatements() {
+        assertFalse(SqlNormalizer.isReadOnlyQuery(null));
+        assertFalse(SqlNormalizer.isReadOnlyQuery(" \n "));
+        assertFalse(SqlNormalizer.isReadOnlyQuery("insert into t select 1"));
+        assertFalse(SqlNormalizer.isReadOnlyQuery("set odps.sql.allow.fullscan=true; select 1"));
+        assertFalse(SqlNormalizer.isReadOnlyQuery("select 1; drop table t"));
+        assertFalse(SqlNormalizer.isReadOnlyQuery("with a as (select 1) insert overwrite table t select * from a"));
+        assertFalse(SqlNormalizer.isReadOnlyQuery("-- select\ndrop table t"));
+        assertFalse(SqlNormalizer.isReadOnlyQuery("selectx from t"));
+    }
+}
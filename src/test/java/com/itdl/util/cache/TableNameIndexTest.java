@@ -0,0 +1,44 @@
+package com.itdl.util.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TableNameIndexTest {
+
+    @Test
+    void containsIgnoresCaseAndSurroundingSpaces() {
+        final TableNameIndex index = new TableNameIndex(Arrays.asList("ODS_Order", "dim_user"));
+        assertEquals(2, index.size());
+        assertTrue(index.contains("ods_order"));
+        assertTrue(index.contains(" DIM_USER "));
+        assertFalse(index.contains("ods_orders"));
+    }
+
+    @Test
+    void emptyIndexContainsNothing() {
+        final TableNameIndex index = new TableNameIndex(Collections.emptyList());
+        assertEquals(0, index.size());
+        assertFalse(index.contains("any_table"));
+    }
+
+    @Test
+    void neverReportsMissingTablesAsPresent() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            names.add(String.format("ods_fake_%05d", i));
+        }
+        final TableNameIndex index = new TableNameIndex(names);
+        for (String name : names) {
+            assertTrue(index.contains(name), name);
+        }
+        for (int i = 20000; i < 60000; i++) {
+            assertFalse(index.contains(String.format("ods_fake_%05d", i)));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.itdl.util.export;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelinedFileWriterTest {
+    private static final int ROWS = 20000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writesNullsQuotesAndLiteralNullText() throws IOException {
+        final ExportOption option = option(ExportOption.Compression.NONE);
+        option.setNullValue("NULL");
+        final ExportResult result;
+        try (PipelinedFileWriter writer = new PipelinedFileWriter(new String[]{"id", "name"}, option)) {
+            writer.write(new Object[]{1L, null});
+            writer.write(new Object[]{2L, "\\N"});
+            writer.write(new Object[]{3L, "a,\"b\""});
+            writer.write(new Object[]{4L, "x".getBytes(StandardCharsets.UTF_8)});
+            result = writer.finish();
+        }
+        assertEquals(4, result.getRows());
+        assertEquals(1, result.getFiles().size());
+        // 只有null写为空值文本 字符串\N原样写出
+        assertEquals(lines("id,name", "1,NULL", "2,\\N", "3,\"a,\"\"b\"\"\"", "4,x"), read(result.getFiles().get(0), false));
+    }
+
+    @Test
+    void splitsGzipFilesBySize() throws IOException {
+        final ExportOption option = option(ExportOption.Compression.GZIP);
+        option.setMaxFileBytes(1024);
+        option.setBatchRows(10);
+        final ExportResult result;
+        try (PipelinedFileWriter writer = new PipelinedFileWriter(new String[]{"id", "value"}, option)) {
+            // 随机内容压缩率低 压缩流的缓冲区写满后才会落盘
+            for (long i = 0; i < ROWS; i++) {
+                writer.write(new Object[]{i, UUID.randomUUID().toString()});
+            }
+            result = writer.finish();
+        }
+        assertEquals(ROWS, result.getRows());
+        assertTrue(result.getFiles().size() > 1);
+
+        long rows = 0;
+        long bytes = 0;
+        for (String file : result.getFiles()) {
+            assertTrue(file.endsWith(".csv.gz"));
+            final String content = read(file, true);
+            assertTrue(content.startsWith("id,value\n"));
+            rows += content.split("\n").length - 1;
+            bytes += new File(file).length();
+        }
+        assertEquals(ROWS, rows);
+        assertEquals(bytes, result.getBytes());
+    }
+
+    @Test
+    void emptyResultWritesHeaderOnlyFile() throws IOException {
+        final ExportResult result;
+        try (PipelinedFileWriter writer = new PipelinedFileWriter(new String[]{"id"}, option(ExportOption.Compression.NONE))) {
+            result = writer.finish();
+        }
+        assertEquals(0, result.getRows());
+        assertEquals(lines("id"), read(result.getFiles().get(0), false));
+    }
+
+    @Test
+    void closeWithoutFinishDeletesFiles() {
+        final ExportOption option = option(ExportOption.Compression.NONE);
+        option.setBatchRows(1);
+        try (PipelinedFileWriter writer = new PipelinedFileWriter(new String[]{"id"}, option)) {
+            for (long i = 0; i < 100; i++) {
+                writer.write(new Object[]{i});
+            }
+        }
+        // 未调用finish 已生成的文件全部删除
+        final File[] left = tempDir.toFile().listFiles();
+        assertNotNull(left);
+        assertEquals(0, left.length);
+    }
+
+    private ExportOption option(ExportOption.Compression compression) {
+        final ExportOption option = new ExportOption();
+        option.setDirectory(tempDir.toString());
+        option.setCompression(compression);
+        return option;
+    }
+
+    private static String lines(String... lines) {
+        return String.join("\n", lines) + "\n";
+    }
+
+    private static String read(String file, boolean gzip) throws IOException {
+        if (!gzip) {
+            return new String(Files.readAllBytes(new File(file).toPath()), StandardCharsets.UTF_8);
+        }
+        try (InputStream in = new GZIPInputStream(new FileInputStream(file))) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
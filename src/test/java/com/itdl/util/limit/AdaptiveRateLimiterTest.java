@@ -0,0 +1,60 @@
+package com.itdl.util.limit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveRateLimiterTest {
+
+    @Test
+    void clampsInitialRate() {
+        assertEquals(10.0, new AdaptiveRateLimiter(50, 1, 10, 1).getRate(), 0.0001);
+        assertEquals(2.0, new AdaptiveRateLimiter(0.5, 2, 10, 1).getRate(), 0.0001);
+    }
+
+    @Test
+    void halvesRateWhenThrottledOncePerCooldown() {
+        final AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(8, 1, 20, 1);
+        limiter.onThrottled();
+        assertEquals(4.0, limiter.getRate(), 0.0001);
+        // 同一时刻在途的请求被限流 只减速一次
+        limiter.onThrottled();
+        limiter.onThrottled();
+        assertEquals(4.0, limiter.getRate(), 0.0001);
+    }
+
+    @Test
+    void neverDropsBelowMinRate() throws InterruptedException {
+        final AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(3, 2, 20, 1);
+        limiter.onThrottled();
+        assertEquals(2.0, limiter.getRate(), 0.0001);
+        Thread.sleep(1100L);
+        limiter.onThrottled();
+        assertEquals(2.0, limiter.getRate(), 0.0001);
+    }
+
+    @Test
+    void increasesAdditivelyUpToMaxRate() {
+        final AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(10, 1, 12, 5);
+        // 每次成功增加step/rate
+        limiter.onSuccess();
+        assertEquals(10.5, limiter.getRate(), 0.0001);
+        for (int i = 0; i < 100; i++) {
+            limiter.onSuccess();
+        }
+        assertEquals(12.0, limiter.getRate(), 0.0001);
+    }
+
+    @Test
+    void acquirePacesRequestsAtCurrentRate() {
+        final AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(20, 1, 20, 0);
+        final long start = System.nanoTime();
+        // 第一个许可立即可用 之后每个间隔1/20秒
+        for (int i = 0; i < 6; i++) {
+            limiter.acquire();
+        }
+        final long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(elapsedMillis >= 240L, "elapsed " + elapsedMillis + "ms");
+        assertTrue(elapsedMillis < 1000L, "elapsed " + elapsedMillis + "ms");
+    }
+}
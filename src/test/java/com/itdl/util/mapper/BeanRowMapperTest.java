@@ -0,0 +1,80 @@
+package com.itdl.util.mapper;
+
+import com.itdl.common.exception.BizException;
+import lombok.Data;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BeanRowMapperTest {
+    @Test
+    void matchesColumnsIgnoringCaseAndUnderscores() {
+        final BeanRowMapper.Binding<Customer> binding = BeanRowMapper.of(Customer.class)
+                .bind(new String[]{"CUST_ID", "user-name", "balance", "Active", "unknown_column", "remark"});
+        final Customer customer = binding.newInstance();
+        binding.set(customer, 0, "42");
+        binding.set(customer, 1, "张三");
+        binding.set(customer, 2, "12.50");
+        binding.set(customer, 3, "true");
+        // 没有对应属性的列直接忽略
+        binding.set(customer, 4, "ignored");
+        binding.set(customer, 5, "public field");
+
+        assertEquals(Long.valueOf(42L), customer.getCustId());
+        assertEquals("张三", customer.getUserName());
+        assertEquals(new BigDecimal("12.50"), customer.getBalance());
+        assertTrue(customer.isActive());
+        assertEquals("public field", customer.remark);
+        assertSame(Customer.class, binding.getType());
+    }
+
+    @Test
+    void textNullsBecomeEmptyStringsOrDefaults() {
+        final BeanRowMapper.Binding<Customer> binding = BeanRowMapper.of(Customer.class)
+                .bind(new String[]{"cust_id", "user_name", "balance", "active", "age"});
+        final Customer customer = binding.newInstance();
+        customer.setAge(7);
+        binding.set(customer, 0, "\\N");
+        binding.set(customer, 1, "\\N");
+        binding.set(customer, 2, null);
+        binding.set(customer, 3, "\\N");
+        binding.set(customer, 4, "\\N");
+
+        // 文本结果中的\N 字符串属性为空串，其他类型为null，基本类型保留原值
+        assertNull(customer.getCustId());
+        assertEquals("", customer.getUserName());
+        assertNull(customer.getBalance());
+        assertFalse(customer.isActive());
+        assertEquals(7, customer.getAge());
+    }
+
+    @Test
+    void sameClassSharesOneMapper() {
+        assertSame(BeanRowMapper.of(Customer.class), BeanRowMapper.of(Customer.class));
+    }
+
+    @Test
+    void classWithoutNoArgConstructorIsRejected() {
+        assertThrows(BizException.class, () -> BeanRowMapper.of(NoDefaultConstructor.class));
+    }
+
+    @Data
+    public static class Customer {
+        private Long custId;
+        private String userName;
+        private BigDecimal balance;
+        private boolean active;
+        private int age;
+        public String remark;
+    }
+
+    public static class NoDefaultConstructor {
+        public String name;
+
+        public NoDefaultConstructor(String name) {
+            this.name = name;
+        }
+    }
+}
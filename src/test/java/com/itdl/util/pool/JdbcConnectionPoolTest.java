@@ -0,0 +1,139 @@
+package com.itdl.util.pool;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcConnectionPoolTest {
+    /**工厂创建过的物理连接*/
+    private final List<FakeConnection> created = new CopyOnWriteArrayList<>();
+    private JdbcConnectionPool pool;
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    void reusesReturnedConnection() throws SQLException {
+        pool = newPool(2, 60000L, 0L, 1000L);
+        pool.getConnection().close();
+        pool.getConnection().close();
+        assertEquals(1, created.size());
+        assertEquals(1, pool.getIdle());
+        assertFalse(created.get(0).closed.get());
+    }
+
+    @Test
+    void borrowTimesOutWhenAllConnectionsAreInUse() throws SQLException {
+        pool = newPool(1, 60000L, 0L, 100L);
+        final Connection first = pool.getConnection();
+        final long start = System.currentTimeMillis();
+        assertThrows(SQLException.class, () -> pool.getConnection());
+        assertTrue(System.currentTimeMillis() - start >= 100L);
+
+        first.close();
+        pool.getConnection().close();
+        assertEquals(1, created.size());
+    }
+
+    @Test
+    void evictsConnectionIdleLongerThanTimeout() throws Exception {
+        pool = newPool(2, 50L, 0L, 1000L);
+        pool.getConnection().close();
+        Thread.sleep(100L);
+        pool.getConnection().close();
+        assertEquals(2, created.size());
+        assertTrue(created.get(0).closed.get());
+        assertEquals(1, pool.getTotal());
+    }
+
+    @Test
+    void closesConnectionOlderThanMaxLifetimeOnReturn() throws Exception {
+        pool = newPool(2, 60000L, 50L, 1000L);
+        final Connection connection = pool.getConnection();
+        Thread.sleep(100L);
+        connection.close();
+        assertTrue(created.get(0).closed.get());
+        assertEquals(0, pool.getTotal());
+        assertEquals(0, pool.getIdle());
+    }
+
+    @Test
+    void discardsConnectionAfterStatementError() throws SQLException {
+        pool = newPool(2, 60000L, 0L, 1000L);
+        final Connection connection = pool.getConnection();
+        final Statement statement = connection.createStatement();
+        assertSame(connection, statement.getConnection());
+        assertThrows(SQLException.class, () -> statement.execute("bad sql"));
+        connection.close();
+        assertTrue(created.get(0).closed.get());
+
+        pool.getConnection().close();
+        assertEquals(2, created.size());
+    }
+
+    @Test
+    void returnedConnectionCannotBeUsed() throws SQLException {
+        pool = newPool(1, 60000L, 0L, 1000L);
+        final Connection connection = pool.getConnection();
+        connection.close();
+        assertTrue(connection.isClosed());
+        assertThrows(SQLException.class, connection::createStatement);
+        // 重复close不会重复归还
+        connection.close();
+        assertEquals(1, pool.getIdle());
+    }
+
+    private JdbcConnectionPool newPool(int maxSize, long idleTimeoutMillis, long maxLifetimeMillis, long borrowTimeoutMillis) {
+        return new JdbcConnectionPool(() -> {
+            final FakeConnection connection = new FakeConnection();
+            created.add(connection);
+            return connection.proxy;
+        }, maxSize, idleTimeoutMillis, maxLifetimeMillis, borrowTimeoutMillis);
+    }
+
+    /**
+     * 物理连接 创建的语句执行bad sql时抛出SQLException
+     */
+    private static class FakeConnection {
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final Connection proxy = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Connection.class}, (p, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            closed.set(true);
+                            return null;
+                        case "isClosed":
+                            return closed.get();
+                        case "createStatement":
+                            return newStatement();
+                        default:
+                            return null;
+                    }
+                });
+
+        private Statement newStatement() {
+            return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Statement.class}, (p, method, args) -> {
+                if ("execute".equals(method.getName()) && "bad sql".equals(args[0])) {
+                    throw new SQLException("ODPS-0130161:Parse exception");
+                }
+                if ("getConnection".equals(method.getName())) {
+                    return proxy;
+                }
+                return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+            });
+        }
+    }
+}
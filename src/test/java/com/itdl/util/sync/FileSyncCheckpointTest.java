@@ -0,0 +1,88 @@
+package com.itdl.util.sync;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSyncCheckpointTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void missingFileReturnsEmptyCheckpoint() {
+        final FileSyncCheckpoint checkpoint = FileSyncCheckpoint.load(tempDir.resolve("none.json").toFile(), "demo", "业务流程", "", null);
+        assertTrue(checkpoint.getFiles().isEmpty());
+        assertEquals("demo", checkpoint.getProject());
+        assertEquals("业务流程", checkpoint.getFolderPath());
+        assertNull(checkpoint.getUserType());
+        assertNull(checkpoint.getFileTypes());
+    }
+
+    @Test
+    void roundTripsFileStates() throws IOException {
+        // 目录不存在时自动创建
+        final File file = tempDir.resolve("sub/checkpoint.json").toFile();
+        final FileSyncCheckpoint checkpoint = FileSyncCheckpoint.load(file, "demo", "业务流程", "Business", "10,23");
+        checkpoint.getFiles().put(10000L, state(10000L, "script_0", 123L, "abc"));
+        checkpoint.setSyncedAt(456L);
+        checkpoint.save(file);
+        assertFalse(new File(file.getParentFile(), "checkpoint.json.tmp").exists());
+
+        final FileSyncCheckpoint loaded = FileSyncCheckpoint.load(file, "demo", "业务流程", "Business", "10,23");
+        assertEquals(456L, loaded.getSyncedAt());
+        assertEquals(1, loaded.getFiles().size());
+        final FileSyncCheckpoint.FileState state = loaded.getFiles().get(10000L);
+        assertEquals("script_0", state.getFileName());
+        assertEquals(Long.valueOf(123L), state.getLastEditTime());
+        assertEquals("abc", state.getContentHash());
+    }
+
+    @Test
+    void emptyFilterEqualsNoFilter() throws IOException {
+        final File file = tempDir.resolve("checkpoint.json").toFile();
+        final FileSyncCheckpoint checkpoint = FileSyncCheckpoint.load(file, "demo", "业务流程", null, "");
+        checkpoint.getFiles().put(10000L, state(10000L, "script_0", 1L, "abc"));
+        checkpoint.save(file);
+
+        assertEquals(1, FileSyncCheckpoint.load(file, "demo", "业务流程", "", null).getFiles().size());
+    }
+
+    @Test
+    void mismatchedScopeStartsFullSync() throws IOException {
+        final File file = tempDir.resolve("checkpoint.json").toFile();
+        final FileSyncCheckpoint checkpoint = FileSyncCheckpoint.load(file, "demo", "业务流程", "Business", "10");
+        checkpoint.getFiles().put(10000L, state(10000L, "script_0", 1L, "abc"));
+        checkpoint.save(file);
+
+        assertTrue(FileSyncCheckpoint.load(file, "other", "业务流程", "Business", "10").getFiles().isEmpty());
+        assertTrue(FileSyncCheckpoint.load(file, "demo", "其他", "Business", "10").getFiles().isEmpty());
+        assertTrue(FileSyncCheckpoint.load(file, "demo", "业务流程", null, "10").getFiles().isEmpty());
+        assertTrue(FileSyncCheckpoint.load(file, "demo", "业务流程", "Business", "10,23").getFiles().isEmpty());
+        assertEquals(1, FileSyncCheckpoint.load(file, "demo", "业务流程", "Business", "10").getFiles().size());
+    }
+
+    @Test
+    void corruptFileStartsFullSync() throws IOException {
+        final File file = tempDir.resolve("checkpoint.json").toFile();
+        Files.write(file.toPath(), "{\"project\":\"demo\",\"files\":{".getBytes(StandardCharsets.UTF_8));
+        final FileSyncCheckpoint checkpoint = FileSyncCheckpoint.load(file, "demo", "业务流程", null, null);
+        assertTrue(checkpoint.getFiles().isEmpty());
+        assertEquals("业务流程", checkpoint.getFolderPath());
+    }
+
+    private static FileSyncCheckpoint.FileState state(Long fileId, String fileName, Long lastEditTime, String contentHash) {
+        final FileSyncCheckpoint.FileState state = new FileSyncCheckpoint.FileState();
+        state.setFileId(fileId);
+        state.setFileName(fileName);
+        state.setLastEditTime(lastEditTime);
+        state.setContentHash(contentHash);
+        return state;
+    }
+}
@@ -0,0 +1,84 @@
+package com.itdl.util.tunnel;
+
+import com.aliyun.odps.Odps;
+import com.aliyun.odps.account.AliyunAccount;
+import com.aliyun.odps.data.Record;
+import com.itdl.fake.FakeCloudServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TableTunnelDownloaderTest {
+    private static final int ROWS = 2500;
+    private static final String TABLE = "ods_fake_00001";
+
+    private FakeCloudServer server;
+    private TableTunnelDownloader downloader;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        final FakeCloudServer.Config config = new FakeCloudServer.Config();
+        config.setServerThreads(8);
+        config.setTables(5);
+        config.setColumns(3);
+        config.setResultRows(ROWS);
+        config.setApiLatencyMillis(0L);
+        server = new FakeCloudServer(config).start();
+        final Odps odps = new Odps(new AliyunAccount("fake", "fake"));
+        odps.setEndpoint(server.getOdpsEndpoint());
+        odps.setDefaultProject("demo");
+        downloader = new TableTunnelDownloader(odps);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void orderedDownloadDeliversRecordsInOrder() {
+        final List<Long> starts = new ArrayList<>();
+        final List<Long> ids = new ArrayList<>();
+        final long count = downloader.download(TABLE, null, 3, true, (start, records) -> {
+            starts.add(start);
+            for (Record record : records) {
+                ids.add(record.getBigint(0));
+            }
+        });
+
+        assertEquals(ROWS, count);
+        // 每个线程约834条 不足区间下限1000条时按1000条切分
+        assertEquals(Arrays.asList(0L, 1000L, 2000L), starts);
+        assertEquals(ROWS, ids.size());
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(Long.valueOf(i), ids.get(i));
+        }
+    }
+
+    @Test
+    void batchRecordsCapsEveryBatch() {
+        final DownloadOption option = new DownloadOption();
+        option.setThreads(4);
+        option.setBatchRecords(300L);
+        option.setMaxInFlightBatches(2);
+        final TreeSet<Long> starts = new TreeSet<>();
+        final long[] rows = new long[1];
+        downloader.download(TABLE, option, (start, records) -> {
+            assertTrue(records.size() <= 300);
+            assertEquals(start, records.get(0).getBigint(0).longValue());
+            starts.add(start);
+            rows[0] += records.size();
+        });
+
+        assertEquals(ROWS, rows[0]);
+        assertEquals(9, starts.size());
+        assertEquals(Long.valueOf(2400L), starts.last());
+    }
+}